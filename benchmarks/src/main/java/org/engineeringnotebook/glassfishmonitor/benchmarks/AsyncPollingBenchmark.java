@@ -0,0 +1,241 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import org.engineeringnotebook.glassfishmonitor.async.AsyncHttpTransport;
+import org.engineeringnotebook.glassfishmonitor.async.AsyncPollingScheduler;
+import org.engineeringnotebook.glassfishmonitor.async.AsyncResourceMonitor;
+import org.engineeringnotebook.glassfishmonitor.async.AsyncStatusMonitor;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
+import org.engineeringnotebook.glassfishmonitor.scheduler.PollingScheduler;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.util.HttpTransport;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the blocking monitors (PollingScheduler over the pooled
+ * HttpTransport) with the async monitors (AsyncPollingScheduler over the
+ * AsyncHttpTransport).  Both get the same number of threads and poll real
+ * HTTP against a local stub DAS that answers list-clusters after
+ * latencyMillis.
+ *
+ * The "polls" secondary result is the number of completed polls per second.
+ * The in-flight count and the mean poll latency are printed at the end of
+ * each iteration.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AsyncPollingBenchmark {
+
+    @Param({"100", "500"})
+    public int monitors;
+
+    @Param({"BLOCKING", "ASYNC"})
+    public String mode;
+
+    @Param({"4"})
+    public int threads;
+
+    @Param({"50"})
+    public long latencyMillis;
+
+    @Param({"250"})
+    public long pollingRate;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final AtomicLong completedPolls = new AtomicLong();
+    private final AtomicLong pollNanos = new AtomicLong();
+    private PollingScheduler scheduler;
+    private HttpTransport transport;
+    private AsyncPollingScheduler asyncScheduler;
+    private AsyncHttpTransport asyncTransport;
+
+    /**
+     * Counts its completed polls and their latency
+     */
+    private class TimedMonitor extends ClusterListMonitor {
+        TimedMonitor(String baseURL) {
+            super(baseURL);
+        }
+
+        public void run() {
+            long start = System.nanoTime();
+            super.run();
+            pollNanos.addAndGet(System.nanoTime() - start);
+            completedPolls.incrementAndGet();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PollCounters {
+        public long polls;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        startServer(ParserBenchmark.loadFixture("list-clusters.xml"));
+        String baseURL = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        if("ASYNC".equals(mode)) {
+            asyncTransport = new AsyncHttpTransport(threads, 5000, 10000, false);
+            asyncScheduler = new AsyncPollingScheduler(0.1);
+            for(int i = 0; i < monitors; i++) {
+                AsyncResourceMonitor monitor = AsyncResourceMonitor.forClusterList(asyncTransport, baseURL, ParserType.STAX);
+                monitor.setPollingRate(pollingRate);
+                asyncScheduler.register(new TimedAsyncMonitor(monitor));
+            }
+            asyncScheduler.start();
+        }
+        else {
+            transport = new HttpTransport(threads, threads, 5000, 10000, false);
+            scheduler = new PollingScheduler(threads, 0.1);
+            for(int i = 0; i < monitors; i++) {
+                TimedMonitor monitor = new TimedMonitor(baseURL);
+                monitor.setClient(transport.getClient());
+                monitor.setParserType(ParserType.STAX);
+                monitor.setPollingRate(pollingRate);
+                scheduler.register(monitor);
+            }
+            scheduler.start();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long polls = completedPolls.get();
+        int inFlight = asyncTransport != null ? asyncTransport.getInFlightCount() : -1;
+        System.out.printf("%n[%s x %d] polls in flight = %d, mean poll latency = %.1f ms%n",
+                mode, monitors, inFlight, polls == 0 ? 0.0 : pollNanos.get() / 1e6 / polls);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(scheduler != null)
+            scheduler.stop();
+        if(transport != null)
+            transport.shutdown();
+        if(asyncScheduler != null)
+            asyncScheduler.stop();
+        if(asyncTransport != null)
+            asyncTransport.shutdown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    /**
+     * Samples the poll completion counter over a 100 ms window
+     */
+    @Benchmark
+    public void pollWindow(PollCounters counters) throws InterruptedException {
+        long before = completedPolls.get();
+        Thread.sleep(100);
+        counters.polls += completedPolls.get() - before;
+    }
+
+    /**
+     * The stub DAS holds each request for latencyMillis on its own thread,
+     * so the server never limits how many requests overlap
+     */
+    private void startServer(String body) throws IOException {
+        final byte[] bytes = body.getBytes("UTF-8");
+        serverThreads = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(serverThreads);
+        server.createContext("/management/domain/clusters/list-clusters", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch(InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/xml");
+                exchange.sendResponseHeaders(200, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Counts the completed polls and their latency of an async monitor
+     */
+    private class TimedAsyncMonitor implements AsyncStatusMonitor {
+        private final AsyncResourceMonitor monitor;
+
+        TimedAsyncMonitor(AsyncResourceMonitor monitor) {
+            this.monitor = monitor;
+        }
+
+        public CompletableFuture<ArrayList<Status>> poll() {
+            final long start = System.nanoTime();
+            return monitor.poll().whenComplete(new BiConsumer<ArrayList<Status>, Throwable>() {
+                public void accept(ArrayList<Status> statusList, Throwable t) {
+                    pollNanos.addAndGet(System.nanoTime() - start);
+                    completedPolls.incrementAndGet();
+                }
+            });
+        }
+
+        public CompletableFuture<ArrayList<Status>> queryGFStatusAsync() {
+            return monitor.queryGFStatusAsync();
+        }
+
+        public void setPollingRate(long milliseconds) {
+            monitor.setPollingRate(milliseconds);
+        }
+
+        public long getPollingRate() {
+            return monitor.getPollingRate();
+        }
+    }
+}
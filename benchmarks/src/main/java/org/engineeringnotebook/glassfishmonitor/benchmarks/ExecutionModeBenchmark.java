@@ -0,0 +1,144 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.benchmarks;
+
+import com.sun.jersey.api.client.Client;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.engineeringnotebook.glassfishmonitor.scheduler.ExecutionMode;
+import org.engineeringnotebook.glassfishmonitor.scheduler.PollingScheduler;
+import org.engineeringnotebook.glassfishmonitor.status.AbstractStatusMonitor;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the PLATFORM and VIRTUAL execution modes of the PollingScheduler
+ * with 1k and 10k simulated cluster monitors, each of which blocks for the
+ * simulated DAS latency on every poll.
+ *
+ * The "polls" secondary result is the number of completed poll cycles per
+ * second.  Thread count and heap use are printed at the end of each iteration;
+ * run with -prof gc for allocation rates.  VIRTUAL falls back to PLATFORM on
+ * JDKs without virtual threads, so run this on JDK 21+ to compare the two.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    @Param({"1000", "10000"})
+    public int clusters;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public String mode;
+
+    @Param({"4"})
+    public int pollingThreads;
+
+    @Param({"20"})
+    public long latencyMillis;
+
+    @Param({"1000"})
+    public long pollingRate;
+
+    private final AtomicLong completedPolls = new AtomicLong();
+    private PollingScheduler scheduler;
+
+    /**
+     * Stands in for a ClusterListMonitor whose GET takes latencyMillis
+     */
+    private class SimulatedMonitor extends AbstractStatusMonitor {
+        protected String queryResponse(Client client) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch(InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            completedPolls.incrementAndGet();
+            return "";
+        }
+
+        protected ArrayList<Status> parseResponse(String response) {
+            return new ArrayList<Status>();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PollCounters {
+        public long polls;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = new PollingScheduler(pollingThreads, 0.1, ExecutionMode.valueOf(mode));
+        //never used for a request, but the monitors only poll with a client set
+        Client client = Client.create();
+        for(int i = 0; i < clusters; i++) {
+            SimulatedMonitor monitor = new SimulatedMonitor();
+            monitor.setClient(client);
+            monitor.setPollingRate(pollingRate);
+            scheduler.register(monitor);
+        }
+        scheduler.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.out.printf("%n[%s x %d] effective mode = %s, live threads = %d, peak threads = %d, heap used = %d KB, non-heap used = %d KB%n",
+                mode, clusters, scheduler.getExecutionMode(), threads.getThreadCount(), threads.getPeakThreadCount(),
+                memory.getHeapMemoryUsage().getUsed() / 1024, memory.getNonHeapMemoryUsage().getUsed() / 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.stop();
+    }
+
+    /**
+     * Samples the poll completion counter over a 100 ms window
+     */
+    @Benchmark
+    public void pollWindow(PollCounters counters) throws InterruptedException {
+        long before = completedPolls.get();
+        Thread.sleep(100);
+        counters.polls += completedPolls.get() - before;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.engineeringnotebook.glassfishmonitor.SimulatedDomain;
+import org.engineeringnotebook.glassfishmonitor.client.MonitoringClient;
+import org.engineeringnotebook.glassfishmonitor.util.PropertiesMap;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The whole MonitoringClient against a SimulatedDomain of 1k or more
+ * clusters, with instance churn and exponentially distributed DAS latency.
+ *
+ * The "requests" secondary result is the number of REST requests the client
+ * completes per second.  The number of clusters polled so far and the
+ * injected failures are printed at the end of each iteration.  The client
+ * logs at WARNING, so the result measures polling rather than console output.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class MonitoringClientBenchmark {
+
+    @Param({"1000", "5000"})
+    public int clusters;
+
+    @Param({"3"})
+    public int instancesPerCluster;
+
+    @Param({"10"})
+    public long meanLatencyMillis;
+
+    @Param({"20"})
+    public double churnPerSecond;
+
+    @Param({"0.0", "0.05"})
+    public double failureRate;
+
+    @Param({"16"})
+    public int pollingThreads;
+
+    private SimulatedDomain domain;
+    private MonitoringClient client;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class RequestCounters {
+        public long requests;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Logger.getLogger("org.engineeringnotebook.glassfishmonitor").setLevel(java.util.logging.Level.WARNING);
+
+        domain = new SimulatedDomain(clusters, instancesPerCluster).start();
+        domain.setLatency(SimulatedDomain.exponential(meanLatencyMillis));
+        domain.setChurnRate(churnPerSecond);
+        domain.setFailureRate(failureRate);
+
+        PropertiesMap properties = new PropertiesMap();
+        properties.setPollingRate(5000);
+        properties.setResponseWaitTime(30000);
+        properties.setPollingThreads(pollingThreads);
+        properties.setPollingJitter(0.1);
+        properties.setExecutionMode("platform");
+        properties.setParserType("stax");
+        properties.setIndentLevel(4);
+        properties.setMaxConnections(pollingThreads * 2);
+        properties.setMaxConnectionsPerRoute(pollingThreads);
+        properties.setConnectTimeout(5000);
+        properties.setReadTimeout(10000);
+        properties.setMaxPollsPerDomain(pollingThreads);
+        properties.addDomain("simulated", domain.getBaseURL());
+
+        client = new MonitoringClient();
+        client.start(properties);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.printf("%n[%d clusters] clusters polled = %d, requests = %d, injected failures = %d%n",
+                clusters, domain.getQueriedClusterCount(), domain.getRequestCount(), domain.getFailureCount());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.stop();
+        domain.stop();
+    }
+
+    /**
+     * Samples the simulated domain's request counter over a 100 ms window
+     */
+    @Benchmark
+    public void requestWindow(RequestCounters counters) throws InterruptedException {
+        long before = domain.getRequestCount();
+        Thread.sleep(100);
+        counters.requests += domain.getRequestCount() - before;
+    }
+}
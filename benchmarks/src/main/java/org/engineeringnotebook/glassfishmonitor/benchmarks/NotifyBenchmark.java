@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.engineeringnotebook.glassfishmonitor.DeltaObserver;
+import org.engineeringnotebook.glassfishmonitor.Observer;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListStaxStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusDelta;
+import org.engineeringnotebook.glassfishmonitor.status.StatusPublisher;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of handing one poll's status to 1, 10 or 100 observers through
+ * StatusPublisher, the same path every monitor uses.  Each call publishes
+ * the other of two snapshots whose uptimes differ, so a delta is computed
+ * every time, as it is for a steady domain.
+ *
+ * SNAPSHOT observers read every status in the snapshot; DELTA observers
+ * read the changes.  Both hand what they read to a Blackhole.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotifyBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int observers;
+
+    @Param({"10", "1000", "10000"})
+    public int instances;
+
+    @Param({"SNAPSHOT", "DELTA"})
+    public String observerType;
+
+    private StatusPublisher publisher;
+    private StatusSnapshot[] snapshots;
+    private long sequence = 0;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        InstanceListStaxStatusHandler handler = new InstanceListStaxStatusHandler();
+        snapshots = new StatusSnapshot[2];
+        for(int i = 0; i < snapshots.length; i++)
+            snapshots[i] = new StatusSnapshot(handler.parseXMLData(ScaledResponses.listInstances(instances, false, i)), i, 0);
+
+        publisher = new StatusPublisher();
+        for(int i = 0; i < observers; i++) {
+            if("DELTA".equals(observerType)) {
+                publisher.addObserver(new DeltaObserver() {
+                    public void update(StatusSnapshot snapshot) {
+                        blackhole.consume(snapshot);
+                    }
+
+                    public void updateDelta(StatusDelta delta) {
+                        blackhole.consume(delta.getStateChanged().size());
+                        for(Status status : delta.getUptimeChanged())
+                            blackhole.consume(status);
+                    }
+
+                    public void setStatusWaitTime(long milliseconds) {
+                    }
+                });
+            }
+            else {
+                publisher.addObserver(new Observer() {
+                    public void update(StatusSnapshot snapshot) {
+                        for(Status status : snapshot.getStatusList())
+                            blackhole.consume(status.getState());
+                    }
+
+                    public void setStatusWaitTime(long milliseconds) {
+                    }
+                });
+            }
+        }
+    }
+
+    @Benchmark
+    public void publish() {
+        publisher.publish(snapshots[(int)(sequence++ & 1)], false);
+    }
+}
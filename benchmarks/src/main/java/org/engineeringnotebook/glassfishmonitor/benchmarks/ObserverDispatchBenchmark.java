@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.engineeringnotebook.glassfishmonitor.DeltaObserver;
+import org.engineeringnotebook.glassfishmonitor.Observer;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListStaxStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.status.ObserverDispatcher;
+import org.engineeringnotebook.glassfishmonitor.status.OverflowPolicy;
+import org.engineeringnotebook.glassfishmonitor.status.QueuedObserver;
+import org.engineeringnotebook.glassfishmonitor.status.StatusDelta;
+import org.engineeringnotebook.glassfishmonitor.status.StatusPublisher;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time the polling thread spends publishing one poll's status when one of 
+ * ten DeltaObservers takes a millisecond per update, e.g. a GUI repaint.
+ * SYNC calls the observers on the publishing thread, as a monitor does 
+ * without an ObserverDispatcher; the other modes queue each observer with 
+ * the named OverflowPolicy.  BLOCK is left out, since it deliberately slows
+ * the publisher to the slow observer's pace.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObserverDispatchBenchmark {
+    private static final int OBSERVERS = 10;
+
+    @Param({"SYNC", "DROP_OLDEST", "LATEST"})
+    public String dispatch;
+
+    @Param({"1000"})
+    public int instances;
+
+    private StatusPublisher publisher;
+    private ObserverDispatcher dispatcher;
+    private StatusSnapshot[] snapshots;
+    private long sequence = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InstanceListStaxStatusHandler handler = new InstanceListStaxStatusHandler();
+        snapshots = new StatusSnapshot[2];
+        for(int i = 0; i < snapshots.length; i++)
+            snapshots[i] = new StatusSnapshot(handler.parseXMLData(ScaledResponses.listInstances(instances, false, i)), i, 0);
+
+        publisher = new StatusPublisher();
+        if(!"SYNC".equals(dispatch))
+            dispatcher = new ObserverDispatcher(2, 16, OverflowPolicy.valueOf(dispatch));
+        for(int i = 0; i < OBSERVERS; i++) {
+            Observer observer = new CountingObserver(i == 0 ? 1000000 : 0);
+            publisher.addObserver(dispatcher != null ? dispatcher.queue(observer) : observer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(dispatcher != null) {
+            for(QueuedObserver queued : dispatcher.getQueuedObservers())
+                System.out.println(queued);
+            dispatcher.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void publish() {
+        publisher.publish(snapshots[(int)(sequence++ & 1)], false);
+    }
+
+    private static class CountingObserver implements DeltaObserver {
+        private final long delayNanos;
+        private long changes;
+
+        CountingObserver(long delayNanos) {
+            this.delayNanos = delayNanos;
+        }
+
+        public void updateDelta(StatusDelta delta) {
+            changes += delta.getUptimeChanged().size();
+            if(delayNanos > 0)
+                LockSupport.parkNanos(delayNanos);
+        }
+
+        public void update(StatusSnapshot snapshot) {
+        }
+
+        public void setStatusWaitTime(long milliseconds) {
+        }
+
+        public String toString() {
+            return "changes=" + changes;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListJsonStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListStaxStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListJsonStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListStaxStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parse throughput of the XML-DOM, XML-StAX and JSON status handlers on
+ * list-clusters and list-instances responses of 10 to 10,000 entries, built
+ * by ScaledResponses in the layout of the recorded fixtures.  The response
+ * size of each representation is printed at setup.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"list-clusters", "list-instances"})
+    public String resource;
+
+    @Param({"DOM", "STAX", "JSON"})
+    public String parser;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int entries;
+
+    private StatusHandler handler;
+    private String response;
+
+    @Setup
+    public void setUp() throws IOException {
+        ParserType type = ParserType.valueOf(parser);
+        boolean clusters = resource.equals("list-clusters");
+        if(type == ParserType.JSON)
+            handler = clusters ? new ClusterListJsonStatusHandler() : new InstanceListJsonStatusHandler();
+        else if(type == ParserType.STAX)
+            handler = clusters ? new ClusterListStaxStatusHandler() : new InstanceListStaxStatusHandler();
+        else
+            handler = clusters ? new ClusterListStatusHandler() : new InstanceListStatusHandler();
+
+        boolean json = type == ParserType.JSON;
+        response = clusters ? ScaledResponses.listClusters(entries, json) : ScaledResponses.listInstances(entries, json, 0);
+        ArrayList<Status> parsed = handler.parseXMLData(response);
+        if(parsed == null || parsed.size() != entries)
+            throw new IllegalStateException(parser + " parsed " + (parsed == null ? 0 : parsed.size()) + " of " + entries + " entries");
+        System.out.printf("%n[%s %s x %d] response size = %d bytes%n", parser, resource, entries, response.getBytes("UTF-8").length);
+    }
+
+    @Benchmark
+    public ArrayList<Status> parse() {
+        return handler.parseXMLData(response);
+    }
+
+    static String loadFixture(String name) throws IOException {
+        InputStream is = ParserBenchmark.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+        if(is == null)
+            throw new IOException("No fixture named " + name);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while((n = is.read(buffer)) > 0)
+            out.write(buffer, 0, n);
+        is.close();
+        return new String(out.toByteArray(), "UTF-8");
+    }
+}
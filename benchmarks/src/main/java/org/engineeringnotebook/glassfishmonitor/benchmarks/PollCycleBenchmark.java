@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.engineeringnotebook.glassfishmonitor.Observer;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListMonitor;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
+import org.engineeringnotebook.glassfishmonitor.util.HttpTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * End-to-end cost of one InstanceListMonitor poll cycle (GET, digest, parse,
+ * delta and notify) against a local stub DAS.  The stub alternates between
+ * two generations of the list-instances response so every poll is parsed;
+ * with changing=false it always answers the same body, which measures the
+ * unchanged-response path instead.  With stream=true the monitor parses
+ * the response as it is read instead of reading it into a String first; run
+ * with -prof gc to compare the allocation per poll.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PollCycleBenchmark {
+    private static final String CLUSTER = "c0";
+
+    @Param({"10", "1000", "10000"})
+    public int instances;
+
+    @Param({"DOM", "STAX", "JSON"})
+    public String parser;
+
+    @Param({"true", "false"})
+    public boolean changing;
+
+    @Param({"false", "true"})
+    public boolean stream;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private HttpTransport transport;
+    private InstanceListMonitor monitor;
+
+    @Setup(Level.Trial)
+    public void setUp(final Blackhole blackhole) throws IOException {
+        ParserType type = ParserType.valueOf(parser);
+        boolean json = type == ParserType.JSON;
+        startServer(ScaledResponses.listInstances(instances, json, 0).getBytes("UTF-8"),
+                ScaledResponses.listInstances(instances, json, 1).getBytes("UTF-8"));
+
+        transport = new HttpTransport(1, 1, 5000, 10000, false);
+        monitor = new InstanceListMonitor(CLUSTER, "http://127.0.0.1:" + server.getAddress().getPort());
+        monitor.setClient(transport.getClient());
+        monitor.setParserType(type);
+        monitor.setStreamResponses(stream);
+        monitor.setPollingRate(0);
+        monitor.addObserver(new Observer() {
+            public void update(StatusSnapshot snapshot) {
+                blackhole.consume(snapshot);
+            }
+
+            public void setStatusWaitTime(long milliseconds) {
+            }
+        });
+
+        monitor.run();
+        if(monitor.getStatusList() == null || monitor.getStatusList().size() != instances)
+            throw new IllegalStateException("The first poll did not return " + instances + " instances");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        transport.shutdown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public void poll() {
+        monitor.run();
+    }
+
+    /**
+     * Without TCP_NODELAY the JDK server's small writes wait on delayed ACKs,
+     * which would add a fixed ~40 ms to some response sizes
+     */
+    private void startServer(final byte[] first, final byte[] second) throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        final AtomicLong requests = new AtomicLong();
+        serverThreads = Executors.newSingleThreadExecutor();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverThreads);
+        server.createContext("/management/domain/clusters/cluster/" + CLUSTER + "/list-instances", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] bytes = changing && (requests.getAndIncrement() & 1) == 1 ? second : first;
+                exchange.getResponseHeaders().set("Content-Type", "JSON".equals(parser) ? "application/json" : "application/xml");
+                exchange.sendResponseHeaders(200, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+        server.start();
+    }
+}
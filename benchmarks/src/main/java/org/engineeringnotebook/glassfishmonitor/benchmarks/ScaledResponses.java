@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.benchmarks;
+
+/**
+ * Builds list-clusters and list-instances responses of any size in the same
+ * layout as the recorded fixtures (src/test/resources/fixtures), cycling
+ * through the states the recordings contain.  Entry i is named "c{i}" or
+ * "in{i}".
+ *
+ * The generation is added to every uptime, so two generations of the same
+ * size differ only the way consecutive polls of a steady domain do.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public final class ScaledResponses {
+    private static final String[] CLUSTER_STATES = {"RUNNING", "NOT_RUNNING", "PARTIALLY_RUNNING"};
+    private static final String[] INSTANCE_STATES = {"RUNNING", "NOT_RUNNING", "REQUIRES_RESTART"};
+
+    private ScaledResponses() {
+    }
+
+    /**
+     * 
+     * @param clusters The number of clusters
+     * @param json true for the application/json representation, false for XML
+     * @return The response body
+     */
+    public static String listClusters(int clusters, boolean json) {
+        StringBuilder body = new StringBuilder(64 * clusters + 512);
+        if(json) {
+            body.append("{\"message\":\"\",\"exit_code\":\"SUCCESS\",\"command\":\"list-clusters AdminCommand\",\"properties\":{");
+            for(int i = 0; i < clusters; i++) {
+                if(i > 0)
+                    body.append(',');
+                body.append("\"c").append(i).append("\":\"").append(CLUSTER_STATES[i % CLUSTER_STATES.length]).append('"');
+            }
+            body.append("},\"extraProperties\":{\"childResources\":{}}}");
+            return body.toString();
+        }
+
+        body.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<map>\n");
+        body.append("    <entry key=\"exit_code\" value=\"SUCCESS\"/>\n");
+        body.append("    <entry key=\"command\" value=\"list-clusters AdminCommand\"/>\n");
+        body.append("    <entry key=\"properties\">\n        <map>\n");
+        for(int i = 0; i < clusters; i++) {
+            body.append("            <entry key=\"c").append(i).append("\" value=\"")
+                .append(CLUSTER_STATES[i % CLUSTER_STATES.length]).append("\"/>\n");
+        }
+        body.append("        </map>\n    </entry>\n</map>\n");
+        return body.toString();
+    }
+
+    /**
+     * 
+     * @param instances The number of instances
+     * @param json true for the application/json representation, false for XML
+     * @param generation Added to every uptime
+     * @return The response body
+     */
+    public static String listInstances(int instances, boolean json, long generation) {
+        StringBuilder body = new StringBuilder(160 * instances + 512);
+        if(json) {
+            body.append("{\"message\":\"\",\"exit_code\":\"SUCCESS\",\"command\":\"list-instances AdminCommand\",\"extraProperties\":{\"instanceList\":[");
+            for(int i = 0; i < instances; i++) {
+                if(i > 0)
+                    body.append(',');
+                body.append("{\"status\":\"").append(INSTANCE_STATES[i % INSTANCE_STATES.length])
+                    .append("\",\"name\":\"in").append(i)
+                    .append("\",\"uptime\":").append(uptime(i, generation)).append('}');
+            }
+            body.append("]}}");
+            return body.toString();
+        }
+
+        body.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<map>\n");
+        body.append("    <entry key=\"exit_code\" value=\"SUCCESS\"/>\n");
+        body.append("    <entry key=\"command\" value=\"list-instances AdminCommand\"/>\n");
+        body.append("    <entry key=\"extraProperties\">\n        <map>\n            <entry key=\"instanceList\">\n                <list>\n");
+        for(int i = 0; i < instances; i++) {
+            body.append("                    <map>\n");
+            body.append("                        <entry key=\"status\" value=\"").append(INSTANCE_STATES[i % INSTANCE_STATES.length]).append("\"/>\n");
+            body.append("                        <entry key=\"name\" value=\"in").append(i).append("\"/>\n");
+            body.append("                        <entry key=\"uptime\">\n                            <number>")
+                .append(uptime(i, generation)).append("</number>\n                        </entry>\n");
+            body.append("                    </map>\n");
+        }
+        body.append("                </list>\n            </entry>\n        </map>\n    </entry>\n</map>\n");
+        return body.toString();
+    }
+
+    //instances that are not running report no uptime growth
+    private static long uptime(int instance, long generation) {
+        return instance % INSTANCE_STATES.length == 1 ? 0 : 3600125L + instance + generation;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceStatus;
+import org.engineeringnotebook.glassfishmonitor.status.NameRegistry;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusLog;
+import org.engineeringnotebook.glassfishmonitor.status.StatusState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of an observer logging every instance of one poll, the old way
+ * (getStatusString() concatenation, an Object[] per call, MessageFormat in
+ * the handler) against StatusLog.  The handler formats each record the way
+ * a real one would, then discards it.
+ *
+ * Run with -prof gc to see the allocation per poll:
+ *
+ *   java -jar target/benchmarks.jar StatusLogBenchmark -prof gc
+ *
+ * With level=FINE the logger is at INFO, so the records are dropped; this
+ * shows the cost of a disabled level, such as the uptime-only changes.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusLogBenchmark {
+    private static final Logger logger = Logger.getLogger(StatusLogBenchmark.class.getName());
+
+    @Param({"1000"})
+    public int instances;
+
+    @Param({"INFO", "FINE"})
+    public String level;
+
+    private Level logLevel;
+    private ArrayList<Status> statusList;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        logLevel = Level.parse(level);
+        logger.setUseParentHandlers(false);
+        for(Handler handler : logger.getHandlers())
+            logger.removeHandler(handler);
+        logger.setLevel(Level.INFO);
+        logger.addHandler(new Handler() {
+            private final SimpleFormatter formatter = new SimpleFormatter();
+
+            public void publish(LogRecord record) {
+                blackhole.consume(formatter.formatMessage(record));
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        });
+
+        NameRegistry registry = new NameRegistry();
+        String clusterName = registry.intern("cluster1");
+        statusList = new ArrayList<Status>(instances);
+        for(int i = 0; i < instances; i++)
+            statusList.add(new InstanceStatus(registry.intern("in" + i), StatusState.RUNNING, 3600125L + i, clusterName));
+    }
+
+    @Benchmark
+    public void concatenated() {
+        for(Status status : statusList)
+            logger.log(logLevel, "InstanceList Status Listener: {0}", new Object[]{status.getStatusString()});
+    }
+
+    @Benchmark
+    public void appender() {
+        for(Status status : statusList)
+            StatusLog.log(logger, logLevel, "InstanceList Status Listener: ", status);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor;
+
+import org.engineeringnotebook.glassfishmonitor.status.StatusDelta;
+
+/**
+ * An Observer that wants to be told what changed rather than handed the 
+ * full status list on every poll.  Monitors call updateDelta() instead of 
+ * update() for observers implementing this interface, once per successful 
+ * poll, with an empty delta when nothing changed.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public interface DeltaObserver extends Observer {
+    
+    public void updateDelta(StatusDelta delta);
+    
+}
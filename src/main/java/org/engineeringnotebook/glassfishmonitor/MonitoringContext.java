@@ -0,0 +1,226 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor;
+
+import com.sun.jersey.api.client.Client;
+import org.engineeringnotebook.glassfishmonitor.scheduler.Bulkhead;
+import org.engineeringnotebook.glassfishmonitor.scheduler.CircuitBreaker;
+import org.engineeringnotebook.glassfishmonitor.scheduler.PollingScheduler;
+import org.engineeringnotebook.glassfishmonitor.scheduler.StalenessDetector;
+import org.engineeringnotebook.glassfishmonitor.status.AdaptivePollingRate;
+import org.engineeringnotebook.glassfishmonitor.status.ObserverDispatcher;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
+import org.engineeringnotebook.glassfishmonitor.util.HttpTransport;
+import org.engineeringnotebook.glassfishmonitor.util.ResponseArchiveWriter;
+
+/**
+ * The services shared by every monitor and observer watching one GF domain.
+ * Observers that start monitors of their own (e.g. the
+ * ClusterListStatusObserver starting an InstanceListMonitor for each cluster)
+ * take what they need from here rather than creating threads or clients
+ * themselves.
+ *
+ * When several domains are monitored each has its own context; the client,
+ * scheduler, detector, archive and observer dispatcher are shared, while the
+ * base URL, domain name and bulkhead are the domain's own.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class MonitoringContext {
+    private final Client client;
+    private final String baseURL;
+    private final PollingScheduler pollingScheduler;
+    private final StalenessDetector stalenessDetector;
+    private ParserType parserType = ParserType.DOM;
+    private boolean streamResponses = false;
+    private ResponseArchiveWriter responseArchive = null;
+    private HttpTransport transport = null;
+    private String domainName = null;
+    private Bulkhead bulkhead = null;
+    private CircuitBreaker circuitBreaker = null;
+    private ObserverDispatcher observerDispatcher = null;
+    private long pollingRate = 5000;
+    private boolean adaptivePolling = false;
+    private long minPollingRate;
+    private long maxPollingRate;
+    
+    /**
+     * 
+     * @param client The Jersey rest client
+     * @param baseURL The URL for the GF server, which will be used to construct restful resources
+     * @param pollingScheduler The scheduler that runs every monitor's poll cycle
+     * @param stalenessDetector The detector that watches every observer's update deadline
+     */
+    public MonitoringContext(Client client, String baseURL, PollingScheduler pollingScheduler, StalenessDetector stalenessDetector) {
+        this.client = client;
+        this.baseURL = baseURL;
+        this.pollingScheduler = pollingScheduler;
+        this.stalenessDetector = stalenessDetector;
+    }
+    
+    public Client getClient() {
+        return this.client;
+    }
+    
+    public String getBaseURL() {
+        return this.baseURL;
+    }
+    
+    public PollingScheduler getPollingScheduler() {
+        return this.pollingScheduler;
+    }
+    
+    public StalenessDetector getStalenessDetector() {
+        return this.stalenessDetector;
+    }
+    
+    /**
+     * 
+     * @param parserType The parser the monitors should use for GF responses
+     */
+    public void setParserType(ParserType parserType) {
+        this.parserType = parserType;
+    }
+    
+    public ParserType getParserType() {
+        return this.parserType;
+    }
+    
+    /**
+     * 
+     * @param streamResponses true if the monitors should parse responses as they are read
+     */
+    public void setStreamResponses(boolean streamResponses) {
+        this.streamResponses = streamResponses;
+    }
+    
+    public boolean isStreamResponses() {
+        return this.streamResponses;
+    }
+    
+    /**
+     * 
+     * @param responseArchive The writer the monitors hand raw responses to, or null to not archive them
+     */
+    public void setResponseArchive(ResponseArchiveWriter responseArchive) {
+        this.responseArchive = responseArchive;
+    }
+    
+    public ResponseArchiveWriter getResponseArchive() {
+        return this.responseArchive;
+    }
+    
+    /**
+     * 
+     * @param transport The connection pool behind the client, for its metrics
+     */
+    public void setTransport(HttpTransport transport) {
+        this.transport = transport;
+    }
+    
+    public HttpTransport getTransport() {
+        return this.transport;
+    }
+    
+    /**
+     * 
+     * @param domainName The name the domain's monitors archive and log under, or null for a single domain
+     */
+    public void setDomainName(String domainName) {
+        this.domainName = domainName;
+    }
+    
+    public String getDomainName() {
+        return this.domainName;
+    }
+    
+    /**
+     * 
+     * @param bulkhead Limits the concurrent poll cycles of the domain's monitors, or null for no limit
+     */
+    public void setBulkhead(Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+    
+    public Bulkhead getBulkhead() {
+        return this.bulkhead;
+    }
+    
+    /**
+     * 
+     * @param circuitBreaker Stops the domain's monitors from polling its DAS 
+     *                       while it is failing, or null to always poll
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+    
+    public CircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+    
+    /**
+     * 
+     * @param observerDispatcher Delivers status to the domain's observers off 
+     *                           the polling threads, or null to deliver on them
+     */
+    public void setObserverDispatcher(ObserverDispatcher observerDispatcher) {
+        this.observerDispatcher = observerDispatcher;
+    }
+    
+    public ObserverDispatcher getObserverDispatcher() {
+        return this.observerDispatcher;
+    }
+    
+    /**
+     * 
+     * @param pollingRate The rate, in milliseconds, at which the domain's 
+     *                    monitors poll, or start polling at if it is adaptive
+     */
+    public void setPollingRate(long pollingRate) {
+        this.pollingRate = pollingRate;
+    }
+    
+    public long getPollingRate() {
+        return this.pollingRate;
+    }
+    
+    /**
+     * Lets the domain's monitors poll faster while their status is changing
+     * and slower while it is stable or the DAS is slow
+     * 
+     * @param minPollingRate The shortest interval between polls, in milliseconds
+     * @param maxPollingRate The longest interval between polls, in milliseconds
+     */
+    public void setAdaptivePolling(long minPollingRate, long maxPollingRate) {
+        this.adaptivePolling = true;
+        this.minPollingRate = minPollingRate;
+        this.maxPollingRate = maxPollingRate;
+    }
+    
+    public boolean isAdaptivePolling() {
+        return this.adaptivePolling;
+    }
+    
+    /**
+     * 
+     * @return A new AdaptivePollingRate for one of the domain's monitors, or 
+     *         null if they poll at the fixed rate
+     */
+    public AdaptivePollingRate newAdaptivePollingRate() {
+        return adaptivePolling ? new AdaptivePollingRate(pollingRate, minPollingRate, maxPollingRate) : null;
+    }
+}
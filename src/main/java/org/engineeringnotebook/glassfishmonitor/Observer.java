@@ -15,8 +15,7 @@
  */
 package org.engineeringnotebook.glassfishmonitor;
 
-import org.engineeringnotebook.glassfishmonitor.status.Status;
-import java.util.ArrayList;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
 
 /**
  *
@@ -24,7 +23,8 @@ import java.util.ArrayList;
  */
 public interface Observer {
     
-    public void update(ArrayList<Status> statusList);
+    //snapshot is null when the poll failed
+    public void update(StatusSnapshot snapshot);
     public void setStatusWaitTime(long milliseconds);
     
 }
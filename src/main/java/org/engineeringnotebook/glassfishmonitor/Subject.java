@@ -15,8 +15,7 @@
  */
 package org.engineeringnotebook.glassfishmonitor;
 
-import java.util.ArrayList;
-import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
 
 /**
  *
@@ -25,5 +24,5 @@ import org.engineeringnotebook.glassfishmonitor.status.Status;
 public interface Subject {
     public void addObserver(Observer o);
     public void removeObserver(Observer o);
-    public void notifyObservers(ArrayList<Status> statusList);
+    public void notifyObservers(StatusSnapshot snapshot);
 }
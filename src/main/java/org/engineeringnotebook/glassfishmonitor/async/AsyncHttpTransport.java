@@ -0,0 +1,178 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.async;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A non-blocking HTTP client for the async monitors.  Requests are
+ * multiplexed by the JDK client's selector thread; only the completion of
+ * each response (decoding, parsing and notifying observers) runs on the
+ * fixed pool of worker threads, so the number of polls in flight is not
+ * limited by the number of threads.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class AsyncHttpTransport {
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final boolean gzip;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     *
+     * @param threads The number of threads that complete responses
+     * @param connectTimeout Milliseconds allowed to connect
+     * @param requestTimeout Milliseconds allowed for the response headers to arrive
+     * @param gzip true to ask for gzip-encoded responses
+     */
+    public AsyncHttpTransport(int threads, int connectTimeout, int requestTimeout, boolean gzip) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "async-http-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .executor(executor)
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeout);
+        this.gzip = gzip;
+    }
+
+    /**
+     * Sends a GET without waiting for the response.
+     *
+     * @param url The resource URL
+     * @param mediaType The media type to accept
+     * @param entityTag The ETag to send as If-None-Match, or null
+     * @return Completes with the response, its body decoded to text
+     */
+    public CompletableFuture<HttpResponse<String>> get(String url, String mediaType, String entityTag) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("Accept", mediaType)
+                .GET();
+        if(gzip)
+            request.header("Accept-Encoding", "gzip");
+        if(entityTag != null)
+            request.header("If-None-Match", entityTag);
+
+        inFlight.incrementAndGet();
+        return client.sendAsync(request.build(), new DecodingBodyHandler())
+                .whenComplete(new BiConsumer<HttpResponse<String>, Throwable>() {
+                    public void accept(HttpResponse<String> response, Throwable t) {
+                        inFlight.decrementAndGet();
+                        if(t == null)
+                            completed.incrementAndGet();
+                        else
+                            failed.incrementAndGet();
+                    }
+                });
+    }
+
+    /**
+     * Stops the worker threads.  Requests still in flight are abandoned.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     *
+     * @return The number of requests sent and not yet answered
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     *
+     * @return The number of requests answered
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     *
+     * @return The number of requests that failed or timed out
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Reads the body as UTF-8 text, unzipping it first if the server gzipped it
+     */
+    private static class DecodingBodyHandler implements HttpResponse.BodyHandler<String> {
+        public HttpResponse.BodySubscriber<String> apply(HttpResponse.ResponseInfo info) {
+            boolean gzipped = info.headers().firstValue("Content-Encoding").map(new Function<String, Boolean>() {
+                public Boolean apply(String encoding) {
+                    return "gzip".equalsIgnoreCase(encoding);
+                }
+            }).orElse(Boolean.FALSE);
+            if(!gzipped)
+                return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), new Function<byte[], String>() {
+                public String apply(byte[] body) {
+                    return gunzip(body);
+                }
+            });
+        }
+    }
+
+    private static String gunzip(byte[] body) {
+        try {
+            GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body));
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 4);
+            byte[] buffer = new byte[4096];
+            int n;
+            while((n = in.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+            in.close();
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch(IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.async;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+
+/**
+ * Starts the poll of every registered AsyncStatusMonitor at its polling rate
+ * from a single timer thread.  Starting a poll only sends the request, so the
+ * timer never waits on the network; the next poll of a monitor is scheduled
+ * when its previous one completes.  As with the PollingScheduler, the first
+ * poll is spread across one polling interval and every delay is jittered.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class AsyncPollingScheduler {
+    private static final Logger logger = Logger.getLogger(AsyncPollingScheduler.class.getName());
+    private final ScheduledThreadPoolExecutor timer;
+    private final ConcurrentHashMap<AsyncStatusMonitor, ScheduledPoll> polls = new ConcurrentHashMap<AsyncStatusMonitor, ScheduledPoll>();
+    private final Random random = new Random();
+    private final double jitter;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private volatile boolean started = false;
+
+    /**
+     *
+     * @param jitter The fraction of the polling rate by which each delay is randomly varied
+     */
+    public AsyncPollingScheduler(double jitter) {
+        this.jitter = Math.max(0.0, Math.min(jitter, 1.0));
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "async-poll-timer");
+            }
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    public synchronized void start() {
+        started = true;
+        for(ScheduledPoll poll : polls.values())
+            poll.schedule(initialDelay(poll.monitor.getPollingRate()));
+    }
+
+    /**
+     * Stops starting polls.  Polls in flight complete on the transport's threads.
+     */
+    public void stop() {
+        started = false;
+        for(ScheduledPoll poll : polls.values())
+            poll.cancel();
+        timer.shutdownNow();
+    }
+
+    /**
+     *
+     * @param monitor The monitor to poll at its configured polling rate
+     */
+    public synchronized void register(AsyncStatusMonitor monitor) {
+        ScheduledPoll poll = new ScheduledPoll(monitor);
+        if(polls.putIfAbsent(monitor, poll) == null && started)
+            poll.schedule(initialDelay(monitor.getPollingRate()));
+    }
+
+    /**
+     *
+     * @param monitor The monitor to stop polling.  A poll in flight is allowed to finish.
+     */
+    public void unregister(AsyncStatusMonitor monitor) {
+        ScheduledPoll poll = polls.remove(monitor);
+        if(poll != null)
+            poll.cancel();
+    }
+
+    public int getMonitorCount() {
+        return polls.size();
+    }
+
+    /**
+     *
+     * @return The number of polls started and not yet completed
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     *
+     * @return The number of polls completed, successfully or not
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    private long initialDelay(long pollingRate) {
+        return pollingRate <= 0 ? 0 : (long)(random.nextDouble() * pollingRate);
+    }
+
+    private long nextDelay(long pollingRate) {
+        if(pollingRate <= 0)
+            return 0;
+        double offset = (random.nextDouble() * 2.0 - 1.0) * jitter * pollingRate;
+        return Math.max(0, pollingRate + (long)offset);
+    }
+
+    private class ScheduledPoll implements Runnable, BiConsumer<ArrayList<Status>, Throwable> {
+        private final AsyncStatusMonitor monitor;
+        private volatile boolean cancelled = false;
+        private volatile ScheduledFuture<?> future;
+
+        ScheduledPoll(AsyncStatusMonitor monitor) {
+            this.monitor = monitor;
+        }
+
+        /**
+         * Timer callback: starts the poll and returns
+         */
+        public void run() {
+            if(cancelled)
+                return;
+            inFlight.incrementAndGet();
+            try {
+                monitor.poll().whenComplete(this);
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.INFO, "Poll failed to start for {0}: {1}", new Object[]{monitor, e});
+                accept(null, e);
+            }
+        }
+
+        /**
+         * Poll completion: schedules the next poll
+         */
+        public void accept(ArrayList<Status> statusList, Throwable t) {
+            inFlight.decrementAndGet();
+            completed.incrementAndGet();
+            schedule(nextDelay(monitor.getPollingRate()));
+        }
+
+        void schedule(long delay) {
+            if(cancelled || timer.isShutdown())
+                return;
+            try {
+                future = timer.schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e) {
+                //the scheduler is stopping
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> f = future;
+            if(f != null)
+                f.cancel(false);
+        }
+    }
+}
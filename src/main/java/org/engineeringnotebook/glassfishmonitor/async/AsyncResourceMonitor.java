@@ -0,0 +1,240 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.async;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.engineeringnotebook.glassfishmonitor.Observer;
+import org.engineeringnotebook.glassfishmonitor.Subject;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListMonitor;
+import org.engineeringnotebook.glassfishmonitor.status.ParseMetrics;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
+import org.engineeringnotebook.glassfishmonitor.status.StatusPublisher;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
+import org.engineeringnotebook.glassfishmonitor.util.ResponseDigest;
+
+/**
+ * Polls one GF resource (the cluster list, or one cluster's instance list)
+ * over the AsyncHttpTransport.  Behaves like the blocking monitors: the
+ * ETag and response digest of the last parsed response are used to skip
+ * unchanged responses, and observers receive the status list or its delta.
+ *
+ * A monitor expects one poll() at a time, which the AsyncPollingScheduler
+ * guarantees.  Observers are called on the transport's worker threads.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class AsyncResourceMonitor implements AsyncStatusMonitor, Subject {
+    private static final Logger logger = Logger.getLogger(AsyncResourceMonitor.class.getName());
+    private final AsyncHttpTransport transport;
+    private final String url;
+    private final ParserType parserType;
+    private final StatusHandler handler;
+    private final ParseMetrics parseMetrics;
+    private final boolean clusterList;
+    private final StatusPublisher publisher = new StatusPublisher();
+    private volatile long pollingRate;
+    private volatile StatusSnapshot snapshot;
+    private final AtomicLong sequence = new AtomicLong();
+    //the last successfully parsed list and the validators of the response it came from, replaced together
+    private volatile Baseline baseline;
+    private final AtomicLong parseCount = new AtomicLong();
+    private final AtomicLong skippedParseCount = new AtomicLong();
+
+    private AsyncResourceMonitor(AsyncHttpTransport transport, String url, ParserType parserType, boolean clusterList) {
+        this.transport = transport;
+        this.url = url;
+        this.parserType = parserType;
+        this.handler = clusterList ? ClusterListMonitor.createStatusHandler(parserType) : InstanceListMonitor.createStatusHandler(parserType);
+        this.parseMetrics = ParseMetrics.forResource(clusterList ? "list-clusters" : "list-instances");
+        this.clusterList = clusterList;
+    }
+
+    /**
+     *
+     * @param transport The shared async transport
+     * @param baseURL The server URL for the rest call
+     * @param parserType The parser used for the response
+     * @return A monitor for http://baseURL/management/domain/clusters/list-clusters
+     */
+    public static AsyncResourceMonitor forClusterList(AsyncHttpTransport transport, String baseURL, ParserType parserType) {
+        return new AsyncResourceMonitor(transport, baseURL + "/management/domain/clusters/list-clusters", parserType, true);
+    }
+
+    /**
+     *
+     * @param transport The shared async transport
+     * @param baseURL The server URL for the rest call
+     * @param clusterName The cluster whose instances are polled
+     * @param parserType The parser used for the response
+     * @return A monitor for http://baseURL/management/domain/clusters/cluster/{cluster-name}/list-instances
+     */
+    public static AsyncResourceMonitor forInstanceList(AsyncHttpTransport transport, String baseURL, String clusterName, ParserType parserType) {
+        return new AsyncResourceMonitor(transport, baseURL + "/management/domain/clusters/cluster/" + clusterName + "/list-instances", parserType, false);
+    }
+
+    public CompletableFuture<ArrayList<Status>> poll() {
+        return fetch().handle(new BiFunction<PollResult, Throwable, ArrayList<Status>>() {
+            public ArrayList<Status> apply(PollResult result, Throwable t) {
+                if(t != null) {
+                    logger.log(Level.INFO, "Poll of {0} failed: {1}", new Object[]{url, t});
+                    result = new PollResult(null, false);
+                }
+                StatusSnapshot published = null;
+                if(result.statusList != null) {
+                    published = new StatusSnapshot(result.statusList, sequence.incrementAndGet(), System.currentTimeMillis());
+                }
+                snapshot = published;
+                publisher.publish(published, result.unchanged);
+                return result.statusList;
+            }
+        });
+    }
+
+    public CompletableFuture<ArrayList<Status>> queryGFStatusAsync() {
+        return fetch().thenApply(new Function<PollResult, ArrayList<Status>>() {
+            public ArrayList<Status> apply(PollResult result) {
+                return result.statusList;
+            }
+        });
+    }
+
+    private CompletableFuture<PollResult> fetch() {
+        Baseline current = baseline;
+        String validator = current != null ? current.entityTag : null;
+        return transport.get(url, parserType.getMediaType(), validator).thenApply(new Function<HttpResponse<String>, PollResult>() {
+            public PollResult apply(HttpResponse<String> response) {
+                return handleResponse(response);
+            }
+        });
+    }
+
+    private PollResult handleResponse(HttpResponse<String> response) {
+        Baseline current = baseline;
+        if(response.statusCode() == 304 && current != null) {
+            skippedParseCount.incrementAndGet();
+            return new PollResult(current.statusList, true);
+        }
+        if(response.statusCode() != 200) {
+            logger.log(Level.INFO, "{0} Status =  {1}", new Object[]{url, response.statusCode()});
+            return new PollResult(null, false);
+        }
+
+        String body = response.body();
+        byte[] digest = ResponseDigest.digest(body);
+        if(current != null && Arrays.equals(digest, current.digest)) {
+            skippedParseCount.incrementAndGet();
+            return new PollResult(current.statusList, true);
+        }
+
+        parseCount.incrementAndGet();
+        long start = System.nanoTime();
+        ArrayList<Status> parsed = handler.parseXMLData(body);
+        parseMetrics.record(System.nanoTime() - start);
+        if(parsed != null)
+            baseline = new Baseline(parsed, digest, response.headers().firstValue("ETag").orElse(null));
+        else if(current != null)
+            //keep the list, but don't let the server tell us a response we couldn't use is still current
+            baseline = new Baseline(current.statusList, null, null);
+        return new PollResult(parsed, false);
+    }
+
+    /**
+     *
+     * @return The status from the most recent poll, read-only, or null if it failed
+     */
+    public List<Status> getStatusList() {
+        StatusSnapshot latest = snapshot;
+        return latest == null ? null : latest.getStatusList();
+    }
+
+    /**
+     *
+     * @return The snapshot published by the most recent poll, or null if it failed
+     */
+    public StatusSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     *
+     * @return The number of responses that were parsed
+     */
+    public long getParseCount() {
+        return parseCount.get();
+    }
+
+    /**
+     *
+     * @return The number of responses not parsed because they had not changed
+     */
+    public long getSkippedParseCount() {
+        return skippedParseCount.get();
+    }
+
+    public void setPollingRate(long milliseconds) {
+        this.pollingRate = milliseconds;
+    }
+
+    public long getPollingRate() {
+        return this.pollingRate;
+    }
+
+    public void addObserver(Observer obs) {
+        publisher.addObserver(obs);
+    }
+
+    public void removeObserver(Observer obs) {
+        publisher.removeObserver(obs);
+    }
+
+    public void notifyObservers(StatusSnapshot snapshot) {
+        publisher.notifyObservers(snapshot);
+    }
+
+    private static class Baseline {
+        final ArrayList<Status> statusList;
+        final byte[] digest;
+        final String entityTag;
+
+        Baseline(ArrayList<Status> statusList, byte[] digest, String entityTag) {
+            this.statusList = statusList;
+            this.digest = digest;
+            this.entityTag = entityTag;
+        }
+    }
+
+    private static class PollResult {
+        final ArrayList<Status> statusList;
+        final boolean unchanged;
+
+        PollResult(ArrayList<Status> statusList, boolean unchanged) {
+            this.statusList = statusList;
+            this.unchanged = unchanged;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.async;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+
+/**
+ * The non-blocking counterpart of StatusMonitor.  Nothing waits on the
+ * network: each call returns at once and the future completes when the
+ * response has arrived and been parsed.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public interface AsyncStatusMonitor {
+
+    /**
+     * Performs a single poll cycle: query the GF rest interface for status,
+     * then notify the observers.
+     *
+     * @return Completes with the status after the observers have been notified,
+     *         or with null if the poll failed
+     */
+    public CompletableFuture<ArrayList<Status>> poll();
+
+    /**
+     *
+     * @return Completes with the status reported by the GF server, or exceptionally if the request failed
+     */
+    public CompletableFuture<ArrayList<Status>> queryGFStatusAsync();
+
+    public void setPollingRate(long milliseconds);
+
+    public long getPollingRate();
+}
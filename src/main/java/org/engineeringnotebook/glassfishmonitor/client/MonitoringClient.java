@@ -15,27 +15,54 @@
  */
 package org.engineeringnotebook.glassfishmonitor.client;
 
+import java.util.ArrayList;
+import java.util.Map;
 import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
 import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListStatusObserver;
+import org.engineeringnotebook.glassfishmonitor.domain.DomainSnapshotMonitor;
 import com.sun.jersey.api.client.Client;
 import org.engineeringnotebook.glassfishmonitor.util.AdminConfiguration;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import org.engineeringnotebook.glassfishmonitor.util.StatusUtilities;
 import org.engineeringnotebook.glassfishmonitor.util.PropertiesMap;
+import org.engineeringnotebook.glassfishmonitor.util.ResponseArchiveWriter;
+import org.engineeringnotebook.glassfishmonitor.util.HttpTransport;
+import org.engineeringnotebook.glassfishmonitor.scheduler.Bulkhead;
+import org.engineeringnotebook.glassfishmonitor.scheduler.CircuitBreaker;
+import org.engineeringnotebook.glassfishmonitor.scheduler.StalenessDetector;
+import org.engineeringnotebook.glassfishmonitor.scheduler.PollingScheduler;
+import org.engineeringnotebook.glassfishmonitor.scheduler.ExecutionMode;
+import org.engineeringnotebook.glassfishmonitor.MonitoringContext;
+import org.engineeringnotebook.glassfishmonitor.status.ObserverDispatcher;
+import org.engineeringnotebook.glassfishmonitor.status.OverflowPolicy;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
 
 /**
  * This is a sample client.  The expectation is that developers using the
  * GlassFish Monitor API will create their own (graphical) client.
- * 
+ *
+ * Every configured domain is monitored by the one process.  The domains share
+ * the rest client, polling scheduler, observer dispatcher and archive; each
+ * gets its own MonitoringContext and a Bulkhead limiting how many of the
+ * shared polling threads its monitors may hold.
+ *
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
  *
  */
 public class MonitoringClient {
     private static final Logger logger = Logger.getLogger("org.engineeringnotebook.glassfishmonitor");
-    private static String baseURL = "http://localhost:4848";
     Client client = null;
     PropertiesMap propertiesMap;
+    PollingScheduler pollingScheduler;
+    HttpTransport transport;
+    StalenessDetector stalenessDetector;
+    ResponseArchiveWriter responseArchive;
+    ObserverDispatcher observerDispatcher;
+    ArrayList<MonitoringContext> contexts = new ArrayList<MonitoringContext>();
+    ArrayList<ClusterListMonitor> clusterListMonitors = new ArrayList<ClusterListMonitor>();
+    ArrayList<ClusterListStatusObserver> clusterObservers = new ArrayList<ClusterListStatusObserver>();
+    boolean stopped = false;
     
     public void MonitoringClient() {
       
@@ -48,47 +75,184 @@ public class MonitoringClient {
      * REST interface
      */ 
     private void initialize() {
+      StatusUtilities statusUtilities = new StatusUtilities();  
+      initialize(statusUtilities.readConfigurationProperties());
+    }
+    
+    /**
+     * Sets up the shared transport, scheduler and archive, and a context for 
+     * each domain in the properties
+     * 
+     * @param properties The configuration, as read from config.xml
+     */
+    private void initialize(PropertiesMap properties) {
       
       logger.log(Level.INFO, "Initializing Logging Threads...");
       
-      propertiesMap = new PropertiesMap();
-        
-      StatusUtilities statusUtilities = new StatusUtilities();  
-      propertiesMap = statusUtilities.readConfigurationProperties(); 
+      propertiesMap = properties;
       
-      logger.log(Level.INFO, "Polling Rate = {0}, baseURL = {1}, Response Wait Time = {2}", new Object[]{propertiesMap.getPollingRate(), propertiesMap.getbaseURL(), propertiesMap.getResponseWaitTime()});
+      logger.log(Level.INFO, "Polling Rate = {0}, Domains = {1}, Response Wait Time = {2}", new Object[]{propertiesMap.getPollingRate(), propertiesMap.getDomains().size(), propertiesMap.getResponseWaitTime()});
 
-      AdminConfiguration aConfig = new AdminConfiguration(baseURL);
-
-      client = Client.create();
-
-      //initialize the server output for pretty printing
-      aConfig.configureAdminServer(client);         
+      //every monitor shares one client backed by a pool of keep-alive connections
+      transport = new HttpTransport(propertiesMap.getMaxConnections(), propertiesMap.getMaxConnectionsPerRoute(),
+              propertiesMap.getConnectTimeout(), propertiesMap.getReadTimeout(), propertiesMap.isGzip());
+      client = transport.getClient();
+      
+      //one timer thread watches the update deadlines of every observer
+      stalenessDetector = new StalenessDetector();
+      
+      //a fixed pool of worker threads polls every monitor, or hands each poll to a virtual thread
+      ExecutionMode executionMode = ExecutionMode.fromString(propertiesMap.getExecutionMode());
+      pollingScheduler = new PollingScheduler(propertiesMap.getPollingThreads(), propertiesMap.getPollingJitter(), executionMode);
+      logger.log(Level.INFO, "Polling Threads = {0}, Execution Mode = {1}", new Object[]{propertiesMap.getPollingThreads(), pollingScheduler.getExecutionMode()});
+      
+      //however many polls are due, only so many admin REST calls are made at once
+      if(propertiesMap.getMaxConcurrentRequests() > 0)
+        pollingScheduler.setGlobalBulkhead(new Bulkhead("all domains", propertiesMap.getMaxConcurrentRequests()));
+      
+      //raw responses are written to disk off the polling threads
+      if(propertiesMap.isArchiveResponses()) {
+        responseArchive = new ResponseArchiveWriter(propertiesMap.getArchiveDirectory(), 
+                propertiesMap.getArchiveQueueSize(), propertiesMap.getArchiveSampleRate(), 
+                propertiesMap.getArchiveMaxBytes(), propertiesMap.getArchiveMaxAge(), propertiesMap.getArchiveMaxFiles());
+        responseArchive.start();
+      }
+      
+      //observers are updated on their own threads so a slow one cannot hold up polling
+      if(propertiesMap.getObserverThreads() > 0) {
+        observerDispatcher = new ObserverDispatcher(propertiesMap.getObserverThreads(), 
+                propertiesMap.getObserverQueueSize(), OverflowPolicy.fromString(propertiesMap.getObserverOverflow()));
+        logger.log(Level.INFO, "Observer Threads = {0}, Queue Size = {1}, Overflow = {2}", new Object[]{propertiesMap.getObserverThreads(), 
+                propertiesMap.getObserverQueueSize(), OverflowPolicy.fromString(propertiesMap.getObserverOverflow())});
+      }
+      
+      for(Map.Entry<String, String> domain : propertiesMap.getDomains().entrySet()) {
+        String domainName = domain.getKey();
+        String baseURL = domain.getValue();
+        logger.log(Level.INFO, "Domain = {0}, baseURL = {1}", new Object[]{domainName, baseURL});
+        
+        MonitoringContext context = new MonitoringContext(client, baseURL, pollingScheduler, stalenessDetector);
+        context.setParserType(ParserType.fromString(propertiesMap.getParserType()));
+        context.setStreamResponses(propertiesMap.isStreamResponses());
+        context.setTransport(transport);
+        context.setResponseArchive(responseArchive);
+        context.setObserverDispatcher(observerDispatcher);
+        context.setPollingRate(propertiesMap.getPollingRate());
+        if(propertiesMap.isAdaptivePolling())
+          context.setAdaptivePolling(propertiesMap.getMinPollingRate(), propertiesMap.getMaxPollingRate());
+        context.setDomainName(domainName);
+        context.setBulkhead(new Bulkhead(domainName != null ? domainName : baseURL, propertiesMap.getMaxPollsPerDomain()));
+        if(propertiesMap.getCircuitFailures() > 0)
+          context.setCircuitBreaker(new CircuitBreaker(domainName != null ? domainName : baseURL, propertiesMap.getCircuitFailures(), 
+                  propertiesMap.getCircuitBackoff(), propertiesMap.getCircuitMaxBackoff()));
+        contexts.add(context);
+        
+        //initialize the server output indentation; a DAS that is down now is still monitored
+        try {
+          new AdminConfiguration(baseURL, propertiesMap.getIndentLevel()).configureAdminServer(client);
+        }
+        catch (RuntimeException e) {
+          logger.log(Level.INFO, "Unable to configure the admin server at {0}: {1}", new Object[]{baseURL, e});
+        }
+      }
 
     }
     
     /**
-     * Set up two threads - a monitor thread to monitor the cluster and the 
-     * second to listen for status from the monitor thread
+     * Set up a cluster list monitor for each domain, then start the polling 
+     * scheduler
      */     
     private void getClusterStatus() {
+        for(MonitoringContext context : contexts)
+            startClusterListMonitor(context);
+        
+        pollingScheduler.start();
+    }
+    
+    /**
+     * Set up a monitor for the domain's cluster list and an observer to 
+     * listen for status from the monitor
+     * 
+     * @param context The domain to monitor
+     */     
+    private void startClusterListMonitor(MonitoringContext context) {
 
-        logger.log(Level.INFO, "Starting Cluster Status Threads...");
+        logger.log(Level.INFO, "Starting Cluster Status Monitor for {0}...", new Object[]{context.getBaseURL()});
         
-        //Start a cluster list monitor thread
-        ClusterListMonitor clusterListMonitor = new ClusterListMonitor(propertiesMap.getbaseURL());
+        //Create the cluster list monitor, which may also gather every cluster's instances
+        DomainSnapshotMonitor snapshotMonitor = null;
+        ClusterListMonitor clusterListMonitor;
+        if(propertiesMap.isDomainSnapshot()) {
+            snapshotMonitor = new DomainSnapshotMonitor(context.getBaseURL());
+            clusterListMonitor = snapshotMonitor;
+        }
+        else {
+            clusterListMonitor = new ClusterListMonitor(context.getBaseURL());
+        }
         clusterListMonitor.setClient(client);
-        clusterListMonitor.setPollingRate(propertiesMap.getPollingRate());
-        (new Thread(clusterListMonitor)).start();
+        clusterListMonitor.setPollingRate(context.getPollingRate());
+        clusterListMonitor.setAdaptivePollingRate(context.newAdaptivePollingRate());
+        clusterListMonitor.setParserType(context.getParserType());
+        clusterListMonitor.setStreamResponses(context.isStreamResponses());
+        clusterListMonitor.setResponseArchive(context.getResponseArchive());
+        clusterListMonitor.setDomainName(context.getDomainName());
         
-        //Start a cluster status listener thread
-        ClusterListStatusObserver csObserver = new ClusterListStatusObserver(client, propertiesMap.getResponseWaitTime(), propertiesMap.getbaseURL());
+        //Register a cluster status observer
+        ClusterListStatusObserver csObserver = new ClusterListStatusObserver(context, propertiesMap.getResponseWaitTime());
+        csObserver.setDomainSnapshotMonitor(snapshotMonitor);
         csObserver.registerObserver(clusterListMonitor);
-        (new Thread(csObserver)).start();
+        clusterListMonitors.add(clusterListMonitor);
+        clusterObservers.add(csObserver);
+        
+        context.getPollingScheduler().register(clusterListMonitor, context.getBulkhead(), context.getCircuitBreaker());
+    }
+    
+    /**
+     * Starts monitoring the domains in the given configuration instead of
+     * config.xml, e.g. against a simulated domain in a test
+     * 
+     * @param properties The configuration
+     */
+    public void start(PropertiesMap properties) {
+        initialize(properties);
+        getClusterStatus();
+    }
+    
+    /**
+     * Stops polling, retires every monitor and observer, and releases the 
+     * shared threads and connections.  Calling it again does nothing.
+     */
+    public synchronized void stop() {
+        if(stopped)
+            return;
+        stopped = true;
+        logger.log(Level.INFO, "Stopping...");
+        if(pollingScheduler != null)
+            pollingScheduler.stop();
+        for(ClusterListStatusObserver csObserver : clusterObservers)
+            csObserver.close();
+        for(ClusterListMonitor clusterListMonitor : clusterListMonitors)
+            clusterListMonitor.close();
+        if(stalenessDetector != null)
+            stalenessDetector.shutdown();
+        if(observerDispatcher != null) {
+            observerDispatcher.logMetrics(Level.FINE);
+            observerDispatcher.shutdown();
+        }
+        if(responseArchive != null)
+            responseArchive.stop();
+        if(transport != null)
+            transport.shutdown();
     }
     
     public static void main(String[] args) {
-        MonitoringClient mClient = new MonitoringClient();
+        final MonitoringClient mClient = new MonitoringClient();
+        //the polling threads keep the JVM alive; stop cleanly on Ctrl-C or SIGTERM
+        Runtime.getRuntime().addShutdownHook(new Thread("monitoring-client-shutdown") {
+            public void run() {
+                mClient.stop();
+            }
+        });
         mClient.initialize();
         mClient.getClusterStatus();
 
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.cluster;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.engineeringnotebook.glassfishmonitor.status.NameRegistry;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
+
+/**
+ * Streams the cluster status out of the GF server's application/json 
+ * response to list-clusters, e.g.
+ * 
+ * {"exit_code":"SUCCESS", ..., "properties":{"c1":"RUNNING","c2":"NOT_RUNNING"}}
+ * 
+ * Produces the same result as the XML handlers: one ClusterStatus for every 
+ * member of the "properties" object.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class ClusterListJsonStatusHandler implements StatusHandler {
+    private static final Logger logger = Logger.getLogger(ClusterListJsonStatusHandler.class.getName());
+    //names seen by the monitor this handler parses for
+    private final NameRegistry names = new NameRegistry();
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    
+    /**
+     * 
+     * @param jsonData The json data received from the GF server
+     * @return The status for each cluster, or null if the response has no properties object
+     */
+    public ArrayList<Status> parseXMLData(String jsonData) {
+        return parse(jsonData, null);
+    }
+    
+    /**
+     * 
+     * @param jsonData The response stream received from the GF server
+     * @return The status for each cluster, or null if the response has no properties object
+     */
+    public ArrayList<Status> parseStream(InputStream jsonData) {
+        return parse(null, jsonData);
+    }
+    
+    private ArrayList<Status> parse(String text, InputStream stream) {
+        ArrayList<Status> clusterList = null;
+        JsonParser parser = null;
+        
+        try {
+            parser = text != null ? jsonFactory.createJsonParser(text) : jsonFactory.createJsonParser(stream);
+            clusterList = parseReport(parser);
+        }catch(IOException ioe) {
+            logger.log(Level.INFO, "Unable to parse list-clusters response: {0}", new Object[]{ioe.getMessage()});
+        }finally {
+            close(parser);
+        }
+        
+        return clusterList;
+    }
+    
+    private ArrayList<Status> parseReport(JsonParser parser) throws IOException {
+        if(parser.nextToken() != JsonToken.START_OBJECT)
+            return null;
+        
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if("properties".equals(field) && value == JsonToken.START_OBJECT)
+                return parseProperties(parser);
+            parser.skipChildren();
+        }
+        
+        return null;
+    }
+    
+    private ArrayList<Status> parseProperties(JsonParser parser) throws IOException {
+        ArrayList<Status> clusterList = new ArrayList<Status>();
+        
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = names.intern(parser.getCurrentName());
+            String state = null;
+            JsonToken value = parser.nextToken();
+            if(value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY)
+                parser.skipChildren();
+            else if(value != JsonToken.VALUE_NULL)
+                state = parser.getText();
+            ClusterStatus cStatus = new ClusterStatus(name, state);
+            if(logger.isLoggable(Level.FINEST))
+                logger.log(Level.FINEST, "Key = {0}, Value = {1}", new Object[]{cStatus.getClusterName(), cStatus.getClusterStatus()});
+            clusterList.add(cStatus);
+        }
+        
+        return clusterList;
+    }
+    
+    private void close(JsonParser parser) {
+        if(parser != null) {
+            try {
+                parser.close();
+            }catch(IOException ioe) {
+                logger.log(Level.FINEST, "Error closing parser: {0}", new Object[]{ioe.getMessage()});
+            }
+        }
+    }
+}
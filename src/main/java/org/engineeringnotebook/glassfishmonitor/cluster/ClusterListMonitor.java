@@ -18,32 +18,29 @@ package org.engineeringnotebook.glassfishmonitor.cluster;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
+import java.io.InputStream;
 import java.util.ArrayList;
-import org.engineeringnotebook.glassfishmonitor.status.StatusMonitor;
 import java.util.logging.Logger;
 import java.util.logging.Level;
-import org.engineeringnotebook.glassfishmonitor.Subject;
-import org.engineeringnotebook.glassfishmonitor.Observer;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.Iterator;
+import org.engineeringnotebook.glassfishmonitor.status.AbstractStatusMonitor;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
 import org.engineeringnotebook.glassfishmonitor.status.Status;
-import org.engineeringnotebook.glassfishmonitor.util.StatusUtilities;
+import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
 
 /**
  * Monitors the status of the GF clusters.
  * 
- * Implements the StatusMonitor interface, as all monitors must.
- * Implements the Subject interface to participate in the (GoF) Observer pattern.
+ * Extends AbstractStatusMonitor, which provides the StatusMonitor poll cycle 
+ * and the Subject side of the (GoF) Observer pattern.
  * 
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
  */
-public class ClusterListMonitor implements StatusMonitor, Subject, Runnable {
+public class ClusterListMonitor extends AbstractStatusMonitor {
     private static final Logger logger = Logger.getLogger(ClusterListMonitor.class.getName());
-    private static String restURL;
-    private Client restClient = null;
-    private long pollingRate;
-    private CopyOnWriteArrayList<Observer> observerList = new CopyOnWriteArrayList();
-    private ArrayList<Status> clusterStatusList;
+    private final String restURL;
+    private volatile ParserType parserType = ParserType.DOM;
+    //handlers keep no per-parse state, so one serves every poll
+    private volatile StatusHandler handler = createStatusHandler(ParserType.DOM);
     
     /**
      * 
@@ -54,125 +51,81 @@ public class ClusterListMonitor implements StatusMonitor, Subject, Runnable {
     }
     
     /**
-     * ToDo: probably need to provide an exit condition for the thread loop, 
-     * rather than an infinite loop
-     */
-    public void run() {
-         while(true) {
-             //query the GF rest interface for the cluster status
-             clusterStatusList = this.queryGFStatus();
-             //notify the observers of the new status
-             notifyObservers(clusterStatusList);
-             //sleeping for the user-specified polling rate
-             try {
-                Thread.sleep(pollingRate);
-             } catch(InterruptedException ie) {
-                 logger.log(Level.INFO, "Cluster Monitor Thread Problem: {0}", new Object[]{ie});
-             }
-         }
-    }
-    
-    /**
-     * Send the latest status to all observers
      * 
-     * @param statusList 
+     * @param parserType The parser used for the list-clusters response
      */
-    public void notifyObservers(ArrayList<Status> statusList) {
-        for (Iterator<Observer> i=observerList.iterator(); i.hasNext(); ) {
-            Observer o = i.next();
-            try {
-                o.update(statusList);
-            }
-            catch (RuntimeException e) {
-                logger.log(Level.INFO, "Unexpected exception in listener  {0}", new Object[]{e});
-                i.remove();
-            }
-        }
+    public void setParserType(ParserType parserType) {
+        this.handler = createStatusHandler(parserType);
+        this.parserType = parserType;
     }
     
     /**
      * 
-     * @param obs The observer to add
+     * @return The parser used for the list-clusters response
      */
-    public void addObserver(Observer obs) {
-        observerList.add(obs);        
-    }
-    
-    /**
-     * 
-     * @param obs The observer to remove 
-     */
-    public void removeObserver(Observer obs) {
-        observerList.remove(obs);        
+    public ParserType getParserType() {
+        return this.parserType;
     }
     
     /**
+     * Performs the GET operation on http://baseURL/management/domain/clusters/list-clusters
      * 
      * @param client The Jersey rest client
-     */
-    public void setClient(Client client) {
-        this.restClient = client;
-    } 
-    
-    /**
      * 
-     * @param milliseconds The rate at which the GF server will be queried
+     * @return The response text, or null if it has not changed since the last poll
      */
-    public void setPollingRate(long milliseconds) {
-        this.pollingRate = milliseconds;    
+    protected String queryResponse(Client client) {
+        ClientResponse response = get(client);
+        if(response == null)
+            return null;
+        
+        String textEntity = response.getEntity(String.class);
+        if(textEntity != null) {
+          logger.log(Level.FINEST, "list-clusters Response =  {0}", new Object[]{textEntity});
+          archiveResponse(parserType == ParserType.JSON ? "cluster-status.json" : "cluster-status.xml", textEntity);
+        }
+        else 
+          logger.log(Level.FINEST, "list-clusters Response =  No Clusters");
+        
+        return textEntity;
     }
     
     /**
-     * Allows observers to query the current status
+     * Performs the same GET as queryResponse() but leaves the body unread,
+     * copying it to the archive as it is parsed
      * 
-     * @return The current cluster status
-     */
-    public ArrayList<Status> getStatusList() {
-        return this.clusterStatusList;
-    }
-    
-    /**
-     * Poll the server for status and parse the XML response
+     * @param client The Jersey rest client
      * 
-     * @return The status reported by the GF server
+     * @return The response stream, or null if it has not changed since the last poll
      */
-    public ArrayList<Status> queryGFStatus() {
-        ArrayList<Status> statusList = null;
+    protected InputStream queryStream(Client client) {
+        ClientResponse response = get(client);
+        if(response == null)
+            return null;
         
-        if(restClient != null) {
-            String response = queryStatusOfClusters(restClient);
-            if(response != null)
-              statusList = parseClusterStatusResponse(response);
-        }
-        
-        return statusList;
+        return archiveStream(parserType == ParserType.JSON ? "cluster-status.json" : "cluster-status.xml", response.getEntityInputStream());
     }
- 
+    
     /**
-     * Performs the GET operation on http://baseURL/management/domain/clusters/list-clusters
      * 
-     * @param client The Jersey rest client
-     * 
-     * @return The XML text
+     * @return The 200 response, or null if it was 304 or an error
      */
-    private String queryStatusOfClusters(Client client) {
+    private ClientResponse get(Client client) {
         
         //Construct the resource and perform the GET operation
         WebResource webResource = client.resource(restURL);
-        ClientResponse response = webResource.accept("application/xml").get(ClientResponse.class);
+        ClientResponse response = conditionalGet(webResource.accept(parserType.getMediaType()));
         
         int status = response.getStatus();
         logger.log(Level.FINEST, "list-clusters Status =  {0}", new Object[]{status});
-        
-        String textEntity = response.getEntity(String.class);
-        if(textEntity != null) {
-          logger.log(Level.FINEST, "list-clusters Response =  {0}", new Object[]{textEntity});
-          StatusUtilities.writeResponseToFile(textEntity, "cluster-status.xml");
+        if(status == ClientResponse.Status.NOT_MODIFIED.getStatusCode())
+            return null;
+        if(status != ClientResponse.Status.OK.getStatusCode()) {
+            logger.log(Level.INFO, "list-clusters returned HTTP {0} from {1}", new Object[]{status, restURL});
+            response.close();
+            return null;
         }
-        else 
-          logger.log(Level.FINEST, "list-clusters Response =  No Clusters");
-        
-        return textEntity;
+        return response;
     }
     
     /**
@@ -183,14 +136,41 @@ public class ClusterListMonitor implements StatusMonitor, Subject, Runnable {
      * 
      * @return A list of status objects, one for each cluster
      */
-    private ArrayList<Status> parseClusterStatusResponse(String xmlData) {
+    protected ArrayList<Status> parseResponse(String xmlData) {
         ArrayList<Status> clusterStatusList = null;
         
-        ClusterListStatusHandler handler = new ClusterListStatusHandler();
-        
         clusterStatusList = handler.parseXMLData(xmlData);
         
         return clusterStatusList;
     } 
     
+    /**
+     * Parses the response as it is read from the connection
+     * 
+     * @param response The response stream
+     * 
+     * @return A list of status objects, one for each cluster
+     */
+    protected ArrayList<Status> parseResponse(InputStream response) {
+        return handler.parseStream(response);
+    }
+    
+    protected String getResourceName() {
+        return "list-clusters";
+    }
+    
+    /**
+     * 
+     * @param parserType The parser to use
+     * @return A handler for list-clusters responses
+     */
+    public static StatusHandler createStatusHandler(ParserType parserType) {
+        if(parserType == ParserType.JSON)
+            return new ClusterListJsonStatusHandler();
+        else if(parserType == ParserType.STAX)
+            return new ClusterListStaxStatusHandler();
+        else
+            return new ClusterListStatusHandler();
+    }
+    
 }
@@ -15,22 +15,20 @@
  */
 package org.engineeringnotebook.glassfishmonitor.cluster;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
+import java.io.InputStream;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Attr;
-import org.xml.sax.InputSource;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.logging.Logger;
 import java.util.logging.Level;
+import org.engineeringnotebook.glassfishmonitor.status.NameRegistry;
 import org.engineeringnotebook.glassfishmonitor.status.Status;
 import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
+import org.engineeringnotebook.glassfishmonitor.util.DocumentBuilders;
 
 /**
  *
@@ -41,6 +39,8 @@ import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
  */
 public class ClusterListStatusHandler implements StatusHandler {
     private static final Logger logger = Logger.getLogger(ClusterListStatusHandler.class.getName());
+    //names seen by the monitor this handler parses for
+    private final NameRegistry names = new NameRegistry();
     
     /**
      * 
@@ -51,29 +51,47 @@ public class ClusterListStatusHandler implements StatusHandler {
         ArrayList<Status> clusterStatusList = null;
         
         Document dom = createDOM(xmlData);
-        clusterStatusList = parseDOM(dom);
+        if(dom != null)
+            clusterStatusList = parseDOM(dom);
         
         return clusterStatusList; 
     }
     
+    /**
+     * 
+     * @param xmlData The response stream received from the GF server
+     * @return The status for each cluster
+     */
+    public ArrayList<Status> parseStream(InputStream xmlData) {
+        Document dom = createDOM(xmlData);
+        return dom != null ? parseDOM(dom) : null;
+    }
+    
     private Document createDOM(String xmlData){
-        //get the factory
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         Document dom = null;
 
         try {
-            //Factory returns an instance of document builder
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            InputSource is = new InputSource(new StringReader(xmlData));
-
             //Creat DOM representation of the XML data
-            dom = db.parse(is);
-        }catch(ParserConfigurationException pce) {
-            pce.printStackTrace();
+            dom = DocumentBuilders.parse(xmlData);
+        }catch(SAXException se) {
+            logger.log(Level.INFO, "Unable to parse response: {0}", new Object[]{se.getMessage()});
+        }catch(IOException ioe) {
+            logger.log(Level.INFO, "Unable to parse response: {0}", new Object[]{ioe.getMessage()});
+        }
+        
+        return dom;
+    }
+    
+    private Document createDOM(InputStream xmlData){
+        Document dom = null;
+
+        try {
+            //the builder reads the stream as it parses
+            dom = DocumentBuilders.parse(xmlData);
         }catch(SAXException se) {
-            se.printStackTrace();
+            logger.log(Level.INFO, "Unable to parse response: {0}", new Object[]{se.getMessage()});
         }catch(IOException ioe) {
-            ioe.printStackTrace();
+            logger.log(Level.INFO, "Unable to parse response: {0}", new Object[]{ioe.getMessage()});
         }
         
         return dom;
@@ -141,19 +159,20 @@ public class ClusterListStatusHandler implements StatusHandler {
     
     private ClusterStatus processEntryEntity(Element entry) {
         
-        ClusterStatus cStatus = new ClusterStatus();
+        String cName = null;
+        String cStatus = null;
         if(entry.hasAttribute("key")) {
             Attr attr = entry.getAttributeNode("key");
             logger.log(Level.FINEST, "Key = {0}", attr.getValue());
-            cStatus.setClusterName(attr.getValue());
+            cName = attr.getValue();
         }
         if(entry.hasAttribute("value")) {
             Attr attr = entry.getAttributeNode("value");
             logger.log(Level.FINEST, "Value = {0}", attr.getValue());
-            cStatus.setClusterStatus(attr.getValue());
+            cStatus = attr.getValue();
         }  
         
-        return cStatus;
+        return new ClusterStatus(names.intern(cName), cStatus);
     }
     
 }
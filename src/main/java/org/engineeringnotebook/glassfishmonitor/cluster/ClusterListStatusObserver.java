@@ -15,99 +15,148 @@
  */
 package org.engineeringnotebook.glassfishmonitor.cluster;
 
+import org.engineeringnotebook.glassfishmonitor.DeltaObserver;
 import org.engineeringnotebook.glassfishmonitor.Observer;
+import org.engineeringnotebook.glassfishmonitor.status.ObserverDispatcher;
+import org.engineeringnotebook.glassfishmonitor.status.QueuedObserver;
 import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusDelta;
+import org.engineeringnotebook.glassfishmonitor.status.StatusLog;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
 import org.engineeringnotebook.glassfishmonitor.Subject;
 import org.engineeringnotebook.glassfishmonitor.instance.InstanceListMonitor;
 import org.engineeringnotebook.glassfishmonitor.instance.InstanceListStatusObserver;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.logging.Logger;
 import java.util.logging.Level;
-import java.util.Date;
-import com.sun.jersey.api.client.Client;
+import org.engineeringnotebook.glassfishmonitor.MonitoringContext;
+import org.engineeringnotebook.glassfishmonitor.domain.DomainSnapshotMonitor;
+import org.engineeringnotebook.glassfishmonitor.scheduler.StaleListener;
+import org.engineeringnotebook.glassfishmonitor.scheduler.StalenessDetector;
 
 /**
  * This class implements the observer portion of the (GoF) Observer pattern and 
  * listens for updates from the ClusterListMonitor (subject).
- * The listener will wait a specific amount of time for an update from the 
- * monitor.  If it doesn't receive an update, the thread will terminate.  
+ * The listener expects an update from the monitor within a specific amount
+ * of time.  The deadline is watched by the shared StalenessDetector, which
+ * reports through statusStale() if no update arrives.
  * 
  * The ClusterListStatusListener starts an InstanceListMonitor and an
- * InstanceListStatusListener for each cluster's instance list. 
+ * InstanceListStatusListener for each cluster's instance list.  When the 
+ * clusters are polled by a DomainSnapshotMonitor, which already gathers the 
+ * instances, only the InstanceListStatusListener is created.
+ * 
+ * As a DeltaObserver it is only told about clusters that were added, removed
+ * or changed state; an unchanged cluster list costs nothing.
+ * 
+ * When a cluster is no longer reported, its InstanceListMonitor is taken off
+ * the scheduler and its InstanceListStatusListener is closed, so the 
+ * monitors and observers follow the clusters that actually exist.  close()
+ * retires them all.
  * 
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
  */
-public class ClusterListStatusObserver implements Observer, Runnable {
+public class ClusterListStatusObserver implements DeltaObserver, StaleListener {
     private static final Logger logger = Logger.getLogger(ClusterListStatusObserver.class.getName());
-    private long lastUpdateTime;
-    private Date date;
+    private final MonitoringContext context;
+    private StalenessDetector.Deadline deadline;
     //milliseconds
     private long statusWaitTime;
-    private ArrayList<String> clusterNames = new ArrayList();
-    private ArrayList<InstanceListMonitor> ilMonitorList = new ArrayList();
-    private ArrayList<InstanceListStatusObserver> instanceStatusListenerList = new ArrayList();
-    private Client restClient;
-    private String baseURL;
+    //by cluster name, guarded by this
+    private LinkedHashMap<String, InstanceListMonitor> ilMonitors = new LinkedHashMap<String, InstanceListMonitor>();
+    private LinkedHashMap<String, InstanceListStatusObserver> instanceStatusListeners = new LinkedHashMap<String, InstanceListStatusObserver>();
+    private DomainSnapshotMonitor snapshotMonitor = null;
+    private Subject subject;
+    private Observer registered;
+    private boolean closed = false;
     
     /**
      * 
-     * @param client The Jersey rest client
-     * @param milliseconds The time the thread will wait for the monitor to provide a response
-     * @param baseURL The URL for the GF server, which will be used to construct restful resources
+     * @param context The rest client, base URL, scheduler and staleness detector for the domain
+     * @param statusWaitTime The time the observer will wait for the monitor to provide a response
      */
-    public ClusterListStatusObserver(Client client, long statusWaitTime, String baseURL) {
-        this.restClient = client;
+    public ClusterListStatusObserver(MonitoringContext context, long statusWaitTime) {
+        this.context = context;
         this.statusWaitTime = statusWaitTime;
-        this.baseURL = baseURL;
-        date = new Date();
-        lastUpdateTime = date.getTime();
     }
     
-    public void run() {
-        long currentTime;
-        long timeSinceLastStatusUpdate;
-        
-         while(true) {
-             currentTime = date.getTime(); 
-             timeSinceLastStatusUpdate = currentTime - this.lastUpdateTime;
-             if(timeSinceLastStatusUpdate > this.statusWaitTime) {
-                 logger.log(Level.INFO, "Configured server wait time '{0}' exceeds blocking time '{1}'", new Object[]{this.lastUpdateTime, timeSinceLastStatusUpdate});
-                 break;
-             }
-         }
+    /**
+     * Called by the StalenessDetector when the monitor has not provided an
+     * update within the status wait time
+     * 
+     * @param millisSinceLastUpdate 
+     */
+    public void statusStale(long millisSinceLastUpdate) {
+        logger.log(Level.INFO, "No cluster status received from {2} for {0} msecs, configured wait time is {1} msecs", new Object[]{millisSinceLastUpdate, this.statusWaitTime, context.getBaseURL()});
+    }
+    
+    /**
+     * 
+     * @param snapshotMonitor The monitor that publishes the instances of each cluster, 
+     *                        or null to start an InstanceListMonitor per cluster
+     */
+    public void setDomainSnapshotMonitor(DomainSnapshotMonitor snapshotMonitor) {
+        this.snapshotMonitor = snapshotMonitor;
     }
     
     public void setStatusWaitTime(long statusWaitTime) {
       this.statusWaitTime = statusWaitTime;
+      if(deadline != null)
+        deadline.setWaitTime(statusWaitTime);
     }
     
     /**
      * Called by the ClusterListMonitor (subject) to provide the status update 
      * for the list of clusters.
      * 
-     * @param statusList The status of all clusters
+     * @param snapshot The status of all clusters
      */
-    public void update(ArrayList<Status> statusList) { 
-      if(statusList != null) {
-        for(Iterator<Status> i=statusList.iterator(); i.hasNext(); ) {
-          Status status = i.next();
+    public synchronized void update(StatusSnapshot snapshot) { 
+      if(snapshot != null) {
+        HashSet<String> reported = new HashSet<String>();
+        for(Status status : snapshot.getStatusList()) {
+          reported.add(status.getName());
           updateClusterList(status);
-          try {
-            updateStatus(status);
-          }
-          catch (RuntimeException e) {
-            i.remove();
-            logger.log(Level.INFO, "Removing Cluster Status From List");
-          }
+          updateStatus(status);
         } 
+        for(String clusterName : new ArrayList<String>(instanceStatusListeners.keySet())) {
+          if(!reported.contains(clusterName)) {
+            logger.log(Level.INFO, "Cluster no longer reported: {0}", new Object[]{clusterName});
+            stopInstanceListMonitor(clusterName);
+          }
+        }
       }
       else {
         logger.log(Level.INFO, "Cluster Status List Is Empty");
       }
-      lastUpdateTime = date.getTime();
+      if(deadline != null)
+        deadline.rearm();
     }
     
+    /**
+     * Called by the ClusterListMonitor (subject) after each successful poll
+     * with the changes since the previous poll.
+     * 
+     * @param delta The changes to the cluster list
+     */
+    public synchronized void updateDelta(StatusDelta delta) {
+        if(deadline != null)
+            deadline.rearm();
+        
+        for(Status status : delta.getAdded()) {
+            updateClusterList(status);
+            updateStatus(status);
+        }
+        for(Status status : delta.getStateChanged())
+            updateStatus(status);
+        for(Status status : delta.getRemoved()) {
+            logger.log(Level.INFO, "Cluster no longer reported: {0}", new Object[]{status.getName()});
+            stopInstanceListMonitor(status.getName());
+        }
+    }
     
     /**
      * Since it is possible for clusters to be added at any point, this method
@@ -118,8 +167,7 @@ public class ClusterListStatusObserver implements Observer, Runnable {
      */
     private void updateClusterList(Status clusterStatus) {
 
-        if(!clusterNames.contains(((ClusterStatus)clusterStatus).getClusterName())) {
-            clusterNames.add(((ClusterStatus)clusterStatus).getClusterName());
+        if(!closed && !instanceStatusListeners.containsKey(((ClusterStatus)clusterStatus).getClusterName())) {
             startInstanceListMonitor(((ClusterStatus)clusterStatus).getClusterName());
         }
        
@@ -132,17 +180,49 @@ public class ClusterListStatusObserver implements Observer, Runnable {
      * @param clusterName The cluster that with instances to be monitored
      */
     private void startInstanceListMonitor(String clusterName) {
-        InstanceListMonitor ilMonitor = new InstanceListMonitor(clusterName, baseURL);
+        if(snapshotMonitor != null) {
+            InstanceListStatusObserver ilsListener = new InstanceListStatusObserver(10000, context.getStalenessDetector());
+            ilsListener.registerListener(snapshotMonitor.getInstanceSubject(clusterName), context.getObserverDispatcher());
+            this.instanceStatusListeners.put(clusterName, ilsListener);
+            return;
+        }
+        
+        InstanceListMonitor ilMonitor = new InstanceListMonitor(clusterName, context.getBaseURL());
+        
+        ilMonitor.setClient(context.getClient());
+        ilMonitor.setParserType(context.getParserType());
+        ilMonitor.setStreamResponses(context.isStreamResponses());
+        ilMonitor.setResponseArchive(context.getResponseArchive());
+        ilMonitor.setDomainName(context.getDomainName());
+        ilMonitor.setPollingRate(context.getPollingRate());
+        ilMonitor.setAdaptivePollingRate(context.newAdaptivePollingRate());
+        this.ilMonitors.put(clusterName, ilMonitor);
         
-        ilMonitor.setClient(restClient);
-        ilMonitor.setPollingRate(5000);   
-        this.ilMonitorList.add(ilMonitor);
-        (new Thread(ilMonitor)).start();    
+        InstanceListStatusObserver ilsListener = new InstanceListStatusObserver(10000, context.getStalenessDetector());
+        ilsListener.registerListener(ilMonitor, context.getObserverDispatcher());
+        this.instanceStatusListeners.put(clusterName, ilsListener);
         
-        InstanceListStatusObserver ilsListener = new InstanceListStatusObserver(10000);
-        ilsListener.registerListener(ilMonitor);
-        this.instanceStatusListenerList.add(ilsListener);        
-        (new Thread(ilsListener)).start();
+        context.getPollingScheduler().register(ilMonitor, context.getBulkhead(), context.getCircuitBreaker());
+    }
+    
+    /**
+     * Retires the monitor and listener of a cluster that has been deleted.  A
+     * poll of the cluster already running is allowed to finish, but nothing 
+     * hears about it.
+     * 
+     * @param clusterName The cluster that is no longer reported
+     */
+    private void stopInstanceListMonitor(String clusterName) {
+        InstanceListMonitor ilMonitor = ilMonitors.remove(clusterName);
+        if(ilMonitor != null) {
+            context.getPollingScheduler().unregister(ilMonitor);
+            ilMonitor.close();
+        }
+        InstanceListStatusObserver ilsListener = instanceStatusListeners.remove(clusterName);
+        if(ilsListener != null)
+            ilsListener.close();
+        if(snapshotMonitor != null)
+            snapshotMonitor.removeInstanceSubject(clusterName);
     }
     
      /**
@@ -153,7 +233,7 @@ public class ClusterListStatusObserver implements Observer, Runnable {
      */
     private void updateStatus(Status status) {
       try {
-            logger.log(Level.INFO, "Cluster Status Listener: {0}", new Object[]{status.getStatusString()});
+            StatusLog.log(logger, Level.INFO, "Cluster Status Listener: ", status);
           }
           catch (RuntimeException e) {
             logger.log(Level.INFO, "Unexpected exception in listener  {0}", new Object[]{e});
@@ -161,12 +241,45 @@ public class ClusterListStatusObserver implements Observer, Runnable {
     }
     
     /**
-     * Registers this Observer with the Subject
+     * Registers this Observer with the Subject and starts watching for 
+     * updates.  If the context has an ObserverDispatcher the updates are 
+     * queued and delivered off the polling thread.
      * 
      * @param subject 
      */
-    public void registerObserver(Subject subject) {
-        subject.addObserver(this);
+    public synchronized void registerObserver(Subject subject) {
+        ObserverDispatcher dispatcher = context.getObserverDispatcher();
+        this.subject = subject;
+        this.registered = dispatcher != null ? dispatcher.queue(this) : this;
+        subject.addObserver(registered);
+        if(deadline == null)
+            deadline = context.getStalenessDetector().register(statusWaitTime, this);
+    }
+    
+    /**
+     * Stops listening to the cluster list and retires the monitor and 
+     * listener of every cluster
+     */
+    public synchronized void close() {
+        closed = true;
+        for(String clusterName : new ArrayList<String>(instanceStatusListeners.keySet()))
+            stopInstanceListMonitor(clusterName);
+        if(subject != null) {
+            subject.removeObserver(registered);
+            subject = null;
+        }
+        if(registered instanceof QueuedObserver)
+            context.getObserverDispatcher().release((QueuedObserver)registered);
+        if(deadline != null)
+            deadline.cancel();
+    }
+    
+    /**
+     * 
+     * @return The clusters whose instances are being watched
+     */
+    public synchronized List<String> getClusterNames() {
+        return new ArrayList<String>(instanceStatusListeners.keySet());
     }
     
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.cluster;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.engineeringnotebook.glassfishmonitor.status.NameRegistry;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
+
+/**
+ * Uses a StAX parser to extract the cluster status from the GF server's XML 
+ * response in a single pass, without building a DOM.
+ * 
+ * Produces the same result as ClusterListStatusHandler: one ClusterStatus for
+ * every entry inside the map of the "properties" entry.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class ClusterListStaxStatusHandler implements StatusHandler {
+    private static final Logger logger = Logger.getLogger(ClusterListStaxStatusHandler.class.getName());
+    //names seen by the monitor this handler parses for
+    private final NameRegistry names = new NameRegistry();
+    private static final XMLInputFactory inputFactory = createInputFactory();
+    
+    /**
+     * 
+     * @param xmlData The xml data received from the GF server
+     * @return The status for each cluster, or null if the response has no properties entry
+     */
+    public ArrayList<Status> parseXMLData(String xmlData) {
+        return parse(new StringReader(xmlData), null);
+    }
+    
+    /**
+     * 
+     * @param xmlData The response stream received from the GF server
+     * @return The status for each cluster, or null if the response has no properties entry
+     */
+    public ArrayList<Status> parseStream(InputStream xmlData) {
+        return parse(null, xmlData);
+    }
+    
+    private ArrayList<Status> parse(Reader text, InputStream stream) {
+        ArrayList<Status> clusterList = null;
+        XMLStreamReader reader = null;
+        
+        try {
+            reader = text != null ? inputFactory.createXMLStreamReader(text) : inputFactory.createXMLStreamReader(stream);
+            clusterList = parseStream(reader);
+        }catch(XMLStreamException xse) {
+            logger.log(Level.INFO, "Unable to parse list-clusters response: {0}", new Object[]{xse.getMessage()});
+        }finally {
+            close(reader);
+        }
+        
+        return clusterList;
+    }
+    
+    /**
+     * Skips forward to the first "properties" entry, then reads every entry 
+     * inside its first map.
+     * 
+     * @param reader
+     * @return
+     * @throws XMLStreamException 
+     */
+    private ArrayList<Status> parseStream(XMLStreamReader reader) throws XMLStreamException {
+        int propertiesDepth = -1;
+        int mapDepth = -1;
+        int depth = 0;
+        ArrayList<Status> clusterList = null;
+        
+        while(reader.hasNext()) {
+            int event = reader.next();
+            if(event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String name = reader.getLocalName();
+                if(propertiesDepth < 0) {
+                    if("entry".equals(name) && "properties".equals(reader.getAttributeValue(null, "key")))
+                        propertiesDepth = depth;
+                }
+                else if(mapDepth < 0) {
+                    if("map".equals(name)) {
+                        mapDepth = depth;
+                        clusterList = new ArrayList<Status>();
+                    }
+                }
+                else if("entry".equals(name)) {
+                    clusterList.add(processEntry(reader));
+                }
+            }
+            else if(event == XMLStreamConstants.END_ELEMENT) {
+                if(depth == mapDepth || depth == propertiesDepth)
+                    break;
+                depth--;
+            }
+        }
+        
+        return clusterList;
+    }
+    
+    private ClusterStatus processEntry(XMLStreamReader reader) {
+        String key = reader.getAttributeValue(null, "key");
+        String value = reader.getAttributeValue(null, "value");
+        if(logger.isLoggable(Level.FINEST))
+            logger.log(Level.FINEST, "Key = {0}, Value = {1}", new Object[]{key, value});
+        
+        return new ClusterStatus(names.intern(key), value);
+    }
+    
+    private void close(XMLStreamReader reader) {
+        if(reader != null) {
+            try {
+                reader.close();
+            }catch(XMLStreamException xse) {
+                logger.log(Level.FINEST, "Error closing reader: {0}", new Object[]{xse.getMessage()});
+            }
+        }
+    }
+    
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+}
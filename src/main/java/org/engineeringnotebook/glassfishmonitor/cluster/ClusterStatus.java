@@ -17,57 +17,73 @@
 
 package org.engineeringnotebook.glassfishmonitor.cluster;
 
-import java.util.ArrayList;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusState;
 
 /**
  *
- * Holds the status of an single cluster, including a list of the instances 
- * that are part of the cluster.  
+ * Holds the status of an single cluster.  Parsers take the name from their
+ * monitor's NameRegistry, so every poll of the same cluster shares one
+ * String.  A state the monitor does not know is UNKNOWN, but the text the
+ * GF server sent for it is kept.  A status is immutable once created.
  * 
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
- *  
+ * 
  */
 public class ClusterStatus implements Status{
     private static final Logger logger = Logger.getLogger(ClusterStatus.class.getName());
-    private String clusterName = null;
-    private String clusterStatus = null;
-    private ArrayList<String> instanceList = new ArrayList();
+    private final String clusterName;
+    private final StatusState clusterStatus;
+    //the reported text of an UNKNOWN state, otherwise null
+    private final String stateText;
     
-   
-    public void setClusterName(String cName) {
+    /**
+     * 
+     * @param cName The cluster name, or null if not reported
+     * @param state The state reported by the GF server
+     */
+    public ClusterStatus(String cName, StatusState state) {
         this.clusterName = cName;
+        this.clusterStatus = state == null ? StatusState.UNKNOWN : state;
+        this.stateText = null;
     }
     
-    public void setClusterStatus(String cStatus) {
-        this.clusterStatus = cStatus;
+    /**
+     * 
+     * @param cName The cluster name, or null if not reported
+     * @param cStatus The state as text from the response, or null if not reported
+     */
+    public ClusterStatus(String cName, String cStatus) {
+        this.clusterName = cName;
+        this.clusterStatus = StatusState.fromString(cStatus);
+        this.stateText = this.clusterStatus == StatusState.UNKNOWN ? cStatus : null;
     }
     
     public String getClusterName() {
         return this.clusterName;
     }
     
-    public String getClusterStatus() {
+    public StatusState getClusterStatus() {
         return this.clusterStatus;
     }
     
     /**
-     * Add the name of one of the instances that belongs to this cluster
      * 
-     * @param instanceName The name of the instance
+     * @return The state as the GF server reported it: the name of a known 
+     *         state, the text of an unknown one, or null if none was reported
      */
-    public void addInstance(String instanceName) {
-        instanceList.add(instanceName);
+    public String getStateText() {
+        return this.clusterStatus != StatusState.UNKNOWN ? this.clusterStatus.name() : this.stateText;
     }
     
-    /**
-     * 
-     * @return The set of instances that belong to this cluster
-     */
-    public ArrayList<String> getInstanceList() {
-        return instanceList;
+    public String getName() {
+        return this.clusterName;
+    }
+    
+    public StatusState getState() {
+        return this.clusterStatus;
     }
     
     /**
@@ -76,10 +92,49 @@ public class ClusterStatus implements Status{
      * @return A string representation of the cluster status
      */
     public String getStatusString() {  
+        String state = appendState(new StringBuilder()).toString();
+        if(logger.isLoggable(Level.FINEST))
+            logger.log(Level.FINEST, "Cluster Name = {0},  -- Status =  {1}", new Object[]{this.clusterName, state});
         
-        logger.log(Level.FINEST, "Cluster Name = {0},  -- Status =  {1}", new Object[]{this.clusterName, this.clusterStatus});
-        
-        return("Cluster Name = " + this.clusterName + " -- Status = " + this.clusterStatus);
+        return("Cluster Name = " + this.clusterName + " -- Status = " + state);
+    }
+    
+    /**
+     * Appends "cluster=NAME state=STATE"; an unknown state is written as
+     * UNKNOWN(text)
+     * 
+     * @param line The line being built
+     * @return The same builder
+     */
+    public StringBuilder appendTo(StringBuilder line) {
+        return appendState(line.append("cluster=").append(this.clusterName)
+                   .append(" state="));
+    }
+    
+    private StringBuilder appendState(StringBuilder line) {
+        line.append(this.clusterStatus.name());
+        if(this.stateText != null)
+            line.append('(').append(this.stateText).append(')');
+        return line;
+    }
+    
+    public boolean equals(Object obj) {
+        if(this == obj)
+            return true;
+        if(!(obj instanceof ClusterStatus))
+            return false;
+        ClusterStatus other = (ClusterStatus)obj;
+        return same(clusterName, other.clusterName) && clusterStatus == other.clusterStatus
+                && same(stateText, other.stateText);
+    }
+    
+    public int hashCode() {
+        return 31 * (clusterName == null ? 0 : clusterName.hashCode()) + clusterStatus.ordinal();
+    }
+    
+    //names from the same registry are usually the same String
+    private static boolean same(String a, String b) {
+        return a == b || (a != null && a.equals(b));
     }
     
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+
+/**
+ * The cluster list and the instances of every cluster, as gathered in a
+ * single poll cycle of the DomainSnapshotMonitor.  Read-only, like the
+ * StatusSnapshots published from it.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class DomainSnapshot {
+    private final List<Status> clusters;
+    private final Map<String, List<Status>> instances;
+    private final long timestamp;
+
+    /**
+     *
+     * @param clusters The status of every cluster
+     * @param instances The status of the instances, keyed by cluster name
+     * @param timestamp The time the snapshot was taken
+     */
+    public DomainSnapshot(List<Status> clusters, Map<String, ArrayList<Status>> instances, long timestamp) {
+        this.clusters = Collections.unmodifiableList(clusters);
+        LinkedHashMap<String, List<Status>> readOnly = new LinkedHashMap<String, List<Status>>();
+        for(Map.Entry<String, ArrayList<Status>> entry : instances.entrySet())
+            readOnly.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        this.instances = Collections.unmodifiableMap(readOnly);
+        this.timestamp = timestamp;
+    }
+
+    /**
+     *
+     * @return The status of every cluster
+     */
+    public List<Status> getClusters() {
+        return clusters;
+    }
+
+    /**
+     *
+     * @return The names of the clusters whose instances are in the snapshot
+     */
+    public Set<String> getClusterNames() {
+        return instances.keySet();
+    }
+
+    /**
+     *
+     * @param clusterName A cluster name
+     * @return The status of the cluster's instances, or null if the cluster is not in the snapshot
+     */
+    public List<Status> getInstances(String clusterName) {
+        return instances.get(clusterName);
+    }
+
+    /**
+     *
+     * @return The time, in milliseconds since the epoch, the snapshot was taken
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.domain;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.engineeringnotebook.glassfishmonitor.Subject;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListMonitor;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceStatus;
+import org.engineeringnotebook.glassfishmonitor.status.AdaptivePollingRate;
+import org.engineeringnotebook.glassfishmonitor.status.ParseMetrics;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
+import org.engineeringnotebook.glassfishmonitor.status.StatusDelta;
+import org.engineeringnotebook.glassfishmonitor.status.StatusPublisher;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
+import org.engineeringnotebook.glassfishmonitor.util.ResponseDigest;
+import org.engineeringnotebook.glassfishmonitor.util.ResponseStreams;
+
+/**
+ * Polls the cluster list and the instances of every cluster together, so a
+ * domain with N clusters costs two GETs per cycle instead of 1 + N.
+ *
+ * Each cycle fetches list-clusters, then the domain-wide list-instances, and
+ * groups the instances by the cluster the DAS reports for them.  Only when
+ * both have been fetched are the cluster observers notified (as with a
+ * ClusterListMonitor) and then each cluster's instance observers, so every
+ * observer sees the same snapshot.  Instance observers register with the
+ * Subject returned by getInstanceSubject() instead of with their own
+ * InstanceListMonitor.
+ *
+ * If the DAS does not report cluster membership in the domain-wide response,
+ * the monitor falls back to one list-instances GET per cluster, made one
+ * after the other within the cycle over the shared client.  The domain-wide
+ * request is tried again every 100 cycles.
+ *
+ * Each list-instances GET is conditional on the last response from that URL,
+ * and a response identical to it is not parsed again.  When responses are
+ * streamed, the instance responses are streamed too.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class DomainSnapshotMonitor extends ClusterListMonitor {
+    private static final Logger logger = Logger.getLogger(DomainSnapshotMonitor.class.getName());
+    //cycles of per-cluster requests before the domain-wide request is tried again
+    private static final int PER_CLUSTER_CYCLES = 100;
+    private final String instancesURL;
+    private final String clusterURL;
+    private final ConcurrentHashMap<String, StatusPublisher> instancePublishers = new ConcurrentHashMap<String, StatusPublisher>();
+    private final AtomicLong instanceRequestCount = new AtomicLong();
+    private final ParseMetrics instanceParseMetrics = ParseMetrics.forResource("list-instances");
+    private volatile StatusHandler instanceHandler = InstanceListMonitor.createStatusHandler(ParserType.DOM);
+    private volatile DomainSnapshot domainSnapshot;
+    private DomainSnapshot pendingSnapshot;
+    private boolean instancesUnchanged;
+    private boolean perClusterRequests = false;
+    private int perClusterCycles;
+    private int perClusterRetry = PER_CLUSTER_CYCLES;
+    //the last parsed list from each list-instances URL
+    private final HashMap<String, InstanceBaseline> instanceBaselines = new HashMap<String, InstanceBaseline>();
+    private boolean fetchUnchanged;
+
+    /**
+     *
+     * @param baseURL The server URL for the rest calls
+     */
+    public DomainSnapshotMonitor(String baseURL) {
+        super(baseURL);
+        this.instancesURL = baseURL + "/management/domain/list-instances";
+        this.clusterURL = baseURL + "/management/domain/clusters/cluster/";
+    }
+
+    /**
+     *
+     * @param parserType The parser used for the list-clusters and list-instances responses
+     */
+    public void setParserType(ParserType parserType) {
+        this.instanceHandler = InstanceListMonitor.createStatusHandler(parserType);
+        super.setParserType(parserType);
+    }
+
+    /**
+     * Instance observers for a cluster register with this Subject.  It may be
+     * requested before the cluster appears in the domain.  An observer added
+     * after a poll is sent that poll's instance list straight away.
+     *
+     * @param clusterName A cluster name
+     * @return The Subject that publishes the status of the cluster's instances
+     */
+    public Subject getInstanceSubject(String clusterName) {
+        StatusPublisher publisher = instancePublishers.get(clusterName);
+        if(publisher == null) {
+            instancePublishers.putIfAbsent(clusterName, new StatusPublisher(true));
+            publisher = instancePublishers.get(clusterName);
+        }
+        return publisher;
+    }
+
+    /**
+     * Stops publishing the instances of a cluster that has been deleted.
+     * Observers still registered with its Subject hear nothing more.
+     *
+     * @param clusterName A cluster name
+     */
+    public void removeInstanceSubject(String clusterName) {
+        instancePublishers.remove(clusterName);
+    }
+
+    /**
+     *
+     * @return The most recent complete snapshot, or null if there has not been one
+     */
+    public DomainSnapshot getDomainSnapshot() {
+        return domainSnapshot;
+    }
+
+    /**
+     *
+     * @return The number of list-instances GETs made so far
+     */
+    public long getInstanceRequestCount() {
+        return instanceRequestCount.get();
+    }
+
+    /**
+     *
+     * @param cycles Cycles of per-cluster requests before the domain-wide
+     *               request is tried again
+     */
+    void setPerClusterRetry(int cycles) {
+        this.perClusterRetry = cycles;
+    }
+
+    /**
+     * Polls the domain, then notifies the cluster observers and the instance
+     * observers of each cluster.
+     */
+    public void run() {
+        cycleLock.lock();
+        try {
+            pendingSnapshot = null;
+            super.run();
+            if(pendingSnapshot != null) {
+                domainSnapshot = pendingSnapshot;
+                publishInstances(pendingSnapshot, getSnapshot().getSequence());
+            }
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+
+    /**
+     * Queries the cluster list and, if that succeeds, the instances of every
+     * cluster.  Returns the cluster list; the instances are published by run().
+     *
+     * @return The status of every cluster
+     */
+    public ArrayList<Status> queryGFStatus() {
+        cycleLock.lock();
+        try {
+            ArrayList<Status> clusterList = super.queryGFStatus();
+            if(clusterList == null || restClient == null)
+                return clusterList;
+
+            Map<String, ArrayList<Status>> instances = queryInstances(restClient, clusterList);
+            if(instances != null)
+                pendingSnapshot = new DomainSnapshot(clusterList, instances, System.currentTimeMillis());
+            else
+                logger.log(Level.INFO, "Instance status unavailable, cluster status published without it");
+
+            return clusterList;
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+
+    /**
+     * Each cluster's instances are published with the sequence number of the
+     * cluster snapshot from the same cycle
+     */
+    private void publishInstances(DomainSnapshot domainSnapshot, long sequence) {
+        boolean active = false;
+        for(Map.Entry<String, StatusPublisher> entry : instancePublishers.entrySet()) {
+            List<Status> instanceList = domainSnapshot.getInstances(entry.getKey());
+            if(instanceList == null)
+                instanceList = new ArrayList<Status>();
+            StatusDelta delta = entry.getValue().publish(new StatusSnapshot(instanceList, sequence, domainSnapshot.getTimestamp()), instancesUnchanged);
+            active |= AdaptivePollingRate.isActive(delta);
+        }
+        //an instance change may not show in the cluster list
+        AdaptivePollingRate adaptive = getAdaptivePollingRate();
+        if(active && adaptive != null)
+            adaptive.recordChange();
+    }
+
+    /**
+     *
+     * @return The instances of each cluster, or null if they could not be retrieved
+     */
+    private Map<String, ArrayList<Status>> queryInstances(Client client, ArrayList<Status> clusterList) {
+        instancesUnchanged = false;
+        LinkedHashMap<String, ArrayList<Status>> instances = new LinkedHashMap<String, ArrayList<Status>>();
+        for(Status cluster : clusterList)
+            instances.put(cluster.getName(), new ArrayList<Status>());
+
+        if(perClusterRequests) {
+            if(--perClusterCycles <= 0) {
+                //the DAS may have been upgraded, or the clusters changed; try the domain-wide request again
+                perClusterRequests = false;
+            }
+            else {
+                return queryEachCluster(client, instances);
+            }
+        }
+
+        String fileName = getParserType() == ParserType.JSON ? "domain-instance-status.json" : "domain-instance-status.xml";
+        ArrayList<Status> instanceList = fetchInstances(client, instancesURL, fileName, null);
+        if(instanceList == null)
+            return null;
+        instancesUnchanged = fetchUnchanged;
+
+        boolean membershipReported = instanceList.isEmpty();
+        for(Status status : instanceList) {
+            String clusterName = ((InstanceStatus)status).getClusterName();
+            if(clusterName != null) {
+                membershipReported = true;
+                ArrayList<Status> clusterInstances = instances.get(clusterName);
+                if(clusterInstances != null)
+                    clusterInstances.add(status);
+            }
+        }
+
+        if(!membershipReported && !instances.isEmpty()) {
+            logger.log(Level.INFO, "list-instances does not report cluster membership, querying each cluster instead");
+            perClusterRequests = true;
+            perClusterCycles = perClusterRetry;
+            return queryEachCluster(client, instances);
+        }
+        instanceBaselines.keySet().retainAll(Collections.singleton(instancesURL));
+        return instances;
+    }
+
+    /**
+     * GET http://baseURL/management/domain/clusters/cluster/{cluster-name}/list-instances
+     * for each cluster in turn
+     */
+    private Map<String, ArrayList<Status>> queryEachCluster(Client client, LinkedHashMap<String, ArrayList<Status>> instances) {
+        boolean unchanged = true;
+        HashSet<String> urls = new HashSet<String>();
+        for(Map.Entry<String, ArrayList<Status>> entry : instances.entrySet()) {
+            String clusterName = entry.getKey();
+            String fileName = clusterName + (getParserType() == ParserType.JSON ? "-instance-status.json" : "-instance-status.xml");
+            String url = clusterURL + clusterName + "/list-instances";
+            ArrayList<Status> instanceList = fetchInstances(client, url, fileName, clusterName);
+            if(instanceList == null)
+                return null;
+            unchanged &= fetchUnchanged;
+            urls.add(url);
+            entry.getValue().addAll(instanceList);
+        }
+        //forget the responses of deleted clusters
+        instanceBaselines.keySet().retainAll(urls);
+        instancesUnchanged = unchanged;
+        return instances;
+    }
+
+    /**
+     * GETs one list-instances resource, with the validators of the last
+     * response from it that parsed.  A 304, or a response identical to that
+     * one, returns the list parsed from it again, and sets fetchUnchanged.
+     *
+     * @param clusterName The cluster every instance in the response belongs
+     *                    to, or null if the response says
+     * @return The instances, or null if they could not be retrieved
+     */
+    private ArrayList<Status> fetchInstances(Client client, String url, String fileName, String clusterName) {
+        fetchUnchanged = false;
+        InstanceBaseline baseline = instanceBaselines.get(url);
+        ClientResponse response = request(client, url, baseline);
+        if(response == null)
+            return null;
+        if(response.getStatus() == ClientResponse.Status.NOT_MODIFIED.getStatusCode()) {
+            response.close();
+            fetchUnchanged = true;
+            return baseline.instanceList;
+        }
+
+        String entityTag = response.getHeaders().getFirst("ETag");
+        String lastModified = response.getHeaders().getFirst("Last-Modified");
+        ArrayList<Status> instanceList;
+        byte[] digest;
+        if(isStreamResponses()) {
+            //digested as it is parsed, so an unchanged response is only recognised afterwards
+            DigestInputStream digesting = ResponseDigest.digesting(archiveStream(fileName, response.getEntityInputStream()));
+            instanceList = parseInstances(digesting);
+            digest = digesting.getMessageDigest().digest();
+            if(instanceList != null && baseline != null && Arrays.equals(digest, baseline.digest)) {
+                fetchUnchanged = true;
+                return baseline.instanceList;
+            }
+        }
+        else {
+            String textEntity = response.getEntity(String.class);
+            if(textEntity == null)
+                return null;
+            archiveResponse(fileName, textEntity);
+            digest = ResponseDigest.digest(textEntity);
+            if(baseline != null && Arrays.equals(digest, baseline.digest)) {
+                fetchUnchanged = true;
+                return baseline.instanceList;
+            }
+            instanceList = parseInstances(textEntity);
+        }
+
+        if(instanceList == null) {
+            //don't let the server tell us a response we couldn't use is still current
+            instanceBaselines.remove(url);
+            return null;
+        }
+        if(clusterName != null) {
+            ArrayList<Status> named = new ArrayList<Status>(instanceList.size());
+            for(Status status : instanceList)
+                named.add(((InstanceStatus)status).withClusterName(clusterName));
+            instanceList = named;
+        }
+        instanceBaselines.put(url, new InstanceBaseline(instanceList, digest, entityTag, lastModified));
+        return instanceList;
+    }
+
+    private ArrayList<Status> parseInstances(String response) {
+        long start = System.nanoTime();
+        ArrayList<Status> instanceList = instanceHandler.parseXMLData(response);
+        instanceParseMetrics.record(System.nanoTime() - start);
+        return instanceList;
+    }
+
+    /**
+     * Reads the whole response, then closes the stream
+     */
+    private ArrayList<Status> parseInstances(InputStream response) {
+        long start = System.nanoTime();
+        ArrayList<Status> instanceList;
+        try {
+            instanceList = instanceHandler.parseStream(ResponseStreams.keepOpen(response));
+            ResponseStreams.drain(response);
+        } catch(IOException ioe) {
+            logger.log(Level.INFO, "Unable to read list-instances response: {0}", new Object[]{ioe.getMessage()});
+            recordServerFailure();
+            instanceList = null;
+        } finally {
+            ResponseStreams.close(response);
+        }
+        instanceParseMetrics.record(System.nanoTime() - start);
+        return instanceList;
+    }
+
+    /**
+     *
+     * @param baseline The last response from the URL that parsed, or null
+     * @return The 200 or 304 response, or null if there was an error
+     */
+    private ClientResponse request(Client client, String url, InstanceBaseline baseline) {
+        instanceRequestCount.incrementAndGet();
+        WebResource.Builder request = client.resource(url).accept(getParserType().getMediaType());
+        if(baseline != null) {
+            if(baseline.entityTag != null)
+                request = request.header("If-None-Match", baseline.entityTag);
+            if(baseline.lastModified != null)
+                request = request.header("If-Modified-Since", baseline.lastModified);
+        }
+        ClientResponse response = request.get(ClientResponse.class);
+
+        int status = response.getStatus();
+        logger.log(Level.FINEST, "{0} Status =  {1}", new Object[]{url, status});
+        if(status == ClientResponse.Status.NOT_MODIFIED.getStatusCode() && baseline != null)
+            return response;
+        if(status != ClientResponse.Status.OK.getStatusCode()) {
+            if(status >= 500)
+                recordServerFailure();
+            response.close();
+            return null;
+        }
+        return response;
+    }
+
+    /**
+     * The last list parsed from one list-instances URL and the validators of
+     * the response it came from
+     */
+    private static class InstanceBaseline {
+        final ArrayList<Status> instanceList;
+        final byte[] digest;
+        final String entityTag;
+        final String lastModified;
+
+        InstanceBaseline(ArrayList<Status> instanceList, byte[] digest, String entityTag, String lastModified) {
+            this.instanceList = instanceList;
+            this.digest = digest;
+            this.entityTag = entityTag;
+            this.lastModified = lastModified;
+        }
+    }
+}
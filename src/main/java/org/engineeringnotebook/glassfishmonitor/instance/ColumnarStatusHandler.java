@@ -0,0 +1,44 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.instance;
+
+import java.io.InputStream;
+import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
+
+/**
+ * A list-instances handler that can parse into a reusable InstanceColumns
+ * buffer instead of building a new status list.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public interface ColumnarStatusHandler extends StatusHandler {
+
+    /**
+     * 
+     * @param data The response body
+     * @param columns Cleared, then filled with one row per instance
+     * @return false if the response has no instance list
+     */
+    public boolean parseInto(String data, InstanceColumns columns);
+    
+    /**
+     * 
+     * @param data The response stream, which the caller closes
+     * @param columns Cleared, then filled with one row per instance
+     * @return false if the response has no instance list
+     */
+    public boolean parseInto(InputStream data, InstanceColumns columns);
+}
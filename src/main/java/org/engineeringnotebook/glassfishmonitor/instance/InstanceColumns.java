@@ -0,0 +1,174 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.instance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.engineeringnotebook.glassfishmonitor.status.NameRegistry;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusState;
+
+/**
+ * A reusable, column-per-field buffer for one list-instances response.  The
+ * streaming handlers parse into it without creating an object per instance;
+ * toStatusList() then turns the rows into InstanceStatus objects, reusing
+ * those from the previous poll that have not changed.  Statuses are
+ * immutable, so the same object can safely appear in both snapshots.
+ * 
+ * A monitor keeps one buffer and clears it before each parse, so a steady
+ * poll reuses the same arrays.  The names in it are ids from the buffer's
+ * NameRegistry.  Not thread safe.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class InstanceColumns {
+    private final NameRegistry names;
+    private int[] nameIds;
+    private StatusState[] states;
+    //the reported text of UNKNOWN states
+    private String[] stateTexts;
+    private long[] uptimes;
+    private int[] clusterIds;
+    private int size = 0;
+    
+    public InstanceColumns() {
+        this(16);
+    }
+    
+    /**
+     * 
+     * @param capacity The number of instances expected
+     */
+    public InstanceColumns(int capacity) {
+        this(capacity, new NameRegistry());
+    }
+    
+    /**
+     * 
+     * @param capacity The number of instances expected
+     * @param names The registry to look names up in, e.g. one shared by the
+     *              buffers a handler creates for the same monitor
+     */
+    public InstanceColumns(int capacity, NameRegistry names) {
+        this.names = names;
+        capacity = Math.max(capacity, 1);
+        nameIds = new int[capacity];
+        states = new StatusState[capacity];
+        stateTexts = new String[capacity];
+        uptimes = new long[capacity];
+        clusterIds = new int[capacity];
+    }
+    
+    /**
+     * 
+     * @return The registry the ids added to this buffer come from
+     */
+    public NameRegistry getNames() {
+        return names;
+    }
+    
+    public void clear() {
+        Arrays.fill(stateTexts, 0, size, null);
+        size = 0;
+    }
+    
+    /**
+     * 
+     * @param nameId The getNames() id of the instance name, or -1
+     * @param state The reported state
+     * @param stateText The reported text of an UNKNOWN state, otherwise null
+     * @param uptime The uptime in milliseconds, or InstanceStatus.NO_UPTIME
+     * @param clusterId The getNames() id of the cluster name, or -1
+     */
+    public void add(int nameId, StatusState state, String stateText, long uptime, int clusterId) {
+        if(size == nameIds.length)
+            grow();
+        nameIds[size] = nameId;
+        states[size] = state;
+        stateTexts[size] = stateText;
+        uptimes[size] = uptime;
+        clusterIds[size] = clusterId;
+        size++;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public int getNameId(int row) {
+        return nameIds[row];
+    }
+    
+    public StatusState getState(int row) {
+        return states[row];
+    }
+    
+    public long getUptime(int row) {
+        return uptimes[row];
+    }
+    
+    public int getClusterId(int row) {
+        return clusterIds[row];
+    }
+    
+    /**
+     * Instances usually come back in the same order, so a row is compared
+     * with the status at the same position in the previous list.
+     * 
+     * @param previous The status list from the previous poll, or null
+     * @return One status per row; unchanged ones are the previous poll's objects
+     */
+    public ArrayList<Status> toStatusList(List<Status> previous) {
+        ArrayList<Status> statusList = new ArrayList<Status>(size);
+        int reusable = previous == null ? 0 : previous.size();
+        for(int row = 0; row < size; row++) {
+            Status old = row < reusable ? previous.get(row) : null;
+            if(old instanceof InstanceStatus && matches((InstanceStatus)old, row))
+                statusList.add(old);
+            else
+                statusList.add(new InstanceStatus(name(nameIds[row]), states[row], stateTexts[row], uptimes[row], name(clusterIds[row])));
+        }
+        return statusList;
+    }
+    
+    private boolean matches(InstanceStatus status, int row) {
+        StatusState state = states[row] == null ? StatusState.UNKNOWN : states[row];
+        if(status.getState() != state || status.getInstanceUptime() != uptimes[row])
+            return false;
+        if(state == StatusState.UNKNOWN && !same(status.getStateText(), stateTexts[row]))
+            return false;
+        return same(status.getName(), name(nameIds[row])) && same(status.getClusterName(), name(clusterIds[row]));
+    }
+    
+    //names from the same registry are usually the same String
+    private static boolean same(String a, String b) {
+        return a == b || (a != null && a.equals(b));
+    }
+    
+    private String name(int id) {
+        return id < 0 ? null : names.name(id);
+    }
+    
+    private void grow() {
+        int capacity = nameIds.length * 2;
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        states = Arrays.copyOf(states, capacity);
+        stateTexts = Arrays.copyOf(stateTexts, capacity);
+        uptimes = Arrays.copyOf(uptimes, capacity);
+        clusterIds = Arrays.copyOf(clusterIds, capacity);
+    }
+}
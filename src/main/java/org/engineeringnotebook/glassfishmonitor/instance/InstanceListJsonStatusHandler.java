@@ -0,0 +1,196 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.instance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.engineeringnotebook.glassfishmonitor.status.NameRegistry;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusState;
+
+/**
+ * Streams the instance status out of the GF server's application/json 
+ * response to list-instances, e.g.
+ * 
+ * {..., "extraProperties":{"instanceList":[{"status":"RUNNING","name":"in1","uptime":3600125}]}}
+ * 
+ * Produces the same result as the XML handlers: one InstanceStatus for every
+ * object in the "instanceList" array.  Names and states are read straight
+ * from the parser's buffer, so parseInto() creates no Strings for instances
+ * it has seen before.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class InstanceListJsonStatusHandler implements ColumnarStatusHandler {
+    private static final Logger logger = Logger.getLogger(InstanceListJsonStatusHandler.class.getName());
+    //names seen by the monitor this handler parses for
+    private final NameRegistry names = new NameRegistry();
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    
+    /**
+     * 
+     * @param jsonData The json data received from the GF server
+     * @return The status for each instance, or null if the response has no instance list
+     */
+    public ArrayList<Status> parseXMLData(String jsonData) {
+        InstanceColumns columns = new InstanceColumns(16, names);
+        return parseInto(jsonData, columns) ? columns.toStatusList(null) : null;
+    }
+    
+    /**
+     * 
+     * @param jsonData The json data received from the GF server
+     * @param columns Cleared, then filled with one row per instance
+     * @return false if the response has no instance list
+     */
+    public boolean parseInto(String jsonData, InstanceColumns columns) {
+        return parse(jsonData, null, columns);
+    }
+    
+    /**
+     * 
+     * @param jsonData The response stream received from the GF server
+     * @return The status for each instance, or null if the response has no instance list
+     */
+    public ArrayList<Status> parseStream(InputStream jsonData) {
+        InstanceColumns columns = new InstanceColumns(16, names);
+        return parseInto(jsonData, columns) ? columns.toStatusList(null) : null;
+    }
+    
+    /**
+     * 
+     * @param jsonData The response stream received from the GF server
+     * @param columns Cleared, then filled with one row per instance
+     * @return false if the response has no instance list
+     */
+    public boolean parseInto(InputStream jsonData, InstanceColumns columns) {
+        return parse(null, jsonData, columns);
+    }
+    
+    private boolean parse(String text, InputStream stream, InstanceColumns columns) {
+        columns.clear();
+        JsonParser parser = null;
+        
+        try {
+            parser = text != null ? jsonFactory.createJsonParser(text) : jsonFactory.createJsonParser(stream);
+            return parseReport(parser, columns);
+        }catch(IOException ioe) {
+            logger.log(Level.INFO, "Unable to parse list-instances response: {0}", new Object[]{ioe.getMessage()});
+        }finally {
+            close(parser);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Scans forward, at any depth, for the instanceList array
+     * 
+     * @param parser
+     * @param columns
+     * @return
+     * @throws IOException 
+     */
+    private boolean parseReport(JsonParser parser, InstanceColumns columns) throws IOException {
+        JsonToken token;
+        while((token = parser.nextToken()) != null) {
+            if(token == JsonToken.FIELD_NAME && "instanceList".equals(parser.getCurrentName())) {
+                if(parser.nextToken() == JsonToken.START_ARRAY) {
+                    parseInstanceList(parser, columns);
+                    return true;
+                }
+                parser.skipChildren();
+            }
+        }
+        
+        return false;
+    }
+    
+    private void parseInstanceList(JsonParser parser, InstanceColumns columns) throws IOException {
+        JsonToken token;
+        
+        while((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if(token == JsonToken.START_OBJECT)
+                parseInstance(parser, columns);
+            else
+                parser.skipChildren();
+        }
+    }
+    
+    /**
+     * Field names are canonicalized by the parser, so comparing them does 
+     * not allocate
+     */
+    private void parseInstance(JsonParser parser, InstanceColumns columns) throws IOException {
+        NameRegistry names = columns.getNames();
+        int nameId = -1;
+        StatusState state = StatusState.UNKNOWN;
+        String stateText = null;
+        long uptime = InstanceStatus.NO_UPTIME;
+        int clusterId = -1;
+        
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if(value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            if(value == JsonToken.VALUE_NULL)
+                continue;
+            
+            if(logger.isLoggable(Level.FINEST))
+                logger.log(Level.FINEST, "Key = {0}, Value = {1}", new Object[]{key, parser.getText()});
+            if("status".equals(key)) {
+                state = StatusState.fromChars(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                stateText = state == StatusState.UNKNOWN ? parser.getText() : null;
+            }
+            else if("name".equals(key))
+                nameId = names.id(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            else if("uptime".equals(key))
+                uptime = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : parseUptime(parser.getText());
+            else if("cluster".equals(key))
+                clusterId = names.id(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        
+        columns.add(nameId, state, stateText, uptime, clusterId);
+    }
+    
+    private long parseUptime(String uptime) {
+        try {
+            return Long.parseLong(uptime.trim());
+        }catch(NumberFormatException nfe) {
+            logger.log(Level.INFO, "Unexpected uptime: {0}", new Object[]{uptime});
+            return InstanceStatus.NO_UPTIME;
+        }
+    }
+    
+    private void close(JsonParser parser) {
+        if(parser != null) {
+            try {
+                parser.close();
+            }catch(IOException ioe) {
+                logger.log(Level.FINEST, "Error closing parser: {0}", new Object[]{ioe.getMessage()});
+            }
+        }
+    }
+}
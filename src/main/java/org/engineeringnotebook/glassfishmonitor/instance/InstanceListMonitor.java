@@ -18,33 +18,32 @@ package org.engineeringnotebook.glassfishmonitor.instance;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
+import java.io.InputStream;
 import java.util.ArrayList;
-import org.engineeringnotebook.glassfishmonitor.status.StatusMonitor;
 import java.util.logging.Logger;
 import java.util.logging.Level;
-import org.engineeringnotebook.glassfishmonitor.Subject;
-import org.engineeringnotebook.glassfishmonitor.Observer;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.Iterator;
+import org.engineeringnotebook.glassfishmonitor.status.AbstractStatusMonitor;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
 import org.engineeringnotebook.glassfishmonitor.status.Status;
-import org.engineeringnotebook.glassfishmonitor.util.StatusUtilities;
+import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
 
 /**
  * Monitors the status of a set of instances associated with a cluster.
  * 
- * Implements the StatusMonitor interface, as all monitors must.
- * Implements the Subject interface to participate in the (GoF) Observer pattern.
+ * Extends AbstractStatusMonitor, which provides the StatusMonitor poll cycle 
+ * and the Subject side of the (GoF) Observer pattern.
  *
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
  */
-public class InstanceListMonitor implements StatusMonitor, Subject, Runnable {
+public class InstanceListMonitor extends AbstractStatusMonitor {
     private static final Logger logger = Logger.getLogger(InstanceListMonitor.class.getName());
-    private static String restURL;
-    private Client restClient = null;
-    private long pollingRate;
-    private String clusterName;
-    private CopyOnWriteArrayList<Observer> observerList = new CopyOnWriteArrayList();
-    private ArrayList<Status> instanceListStatus;
+    private final String restURL;
+    private final String clusterName;
+    private volatile ParserType parserType = ParserType.DOM;
+    private volatile StatusHandler handler = createStatusHandler(ParserType.DOM);
+    //reused by every parse; parses are serialized by the poll cycle
+    private final InstanceColumns columns = new InstanceColumns();
+    
     /**
      * 
      * @param clusterName The name of the cluster associated with these instances
@@ -53,136 +52,141 @@ public class InstanceListMonitor implements StatusMonitor, Subject, Runnable {
     public InstanceListMonitor(String clusterName, String baseURL) {
         this.clusterName = clusterName;
         this.restURL = baseURL + "/management/domain/clusters/cluster/";
-        this.instanceListStatus = null;
     }
     
-    public void run() {
-         
-      while(true) {
-         instanceListStatus = this.queryGFStatus();
-         notifyObservers(instanceListStatus);
-         logger.log(Level.INFO, "Sleeping for {0} msecs", new Object[]{pollingRate});
-         try {
-            Thread.sleep(pollingRate);
-         } catch(InterruptedException ie) {
-             System.out.println(ie);
-         }
-      }
-    }
-
-    /**
-     * Send the latest status to all observers
-     * 
-     * @param statusList 
-     */    
-    public void notifyObservers(ArrayList<Status> statusList) {
-        for (Iterator<Observer> i=observerList.iterator(); i.hasNext(); ) {
-            Observer o = i.next();
-            try {
-                o.update(statusList);
-            }
-            catch (RuntimeException e) {
-                logger.log(Level.INFO, "Unexpected exception in listener  {0}", new Object[]{e});
-                i.remove();
-            }
-        }
-    }
-   
     /**
      * 
-     * @param obs The observer to add
-     */    
-    public void addObserver(Observer obs) {
-        observerList.add(obs);        
+     * @param parserType The parser used for the list-instances response
+     */
+    public void setParserType(ParserType parserType) {
+        this.handler = createStatusHandler(parserType);
+        this.parserType = parserType;
     }
- 
+    
     /**
      * 
-     * @param obs The observer to remove 
-     */    
-    public void removeObserver(Observer obs) {
-        observerList.remove(obs);        
+     * @return The name of the cluster associated with these instances
+     */
+    public String getClusterName() {
+        return this.clusterName;
     }
     
     /**
+     * Performs the GET operation on http://baseURL/management/domain/clusters/cluster/{cluster-name}/list-instances
      * 
      * @param client The Jersey rest client
-     */    
-    public void setClient(Client client) {
-        this.restClient = client;
-    } 
-    
-    /**
      * 
-     * @param milliseconds The rate at which the GF server will be queried
+     * @return The XML text
      */    
-    public void setPollingRate(long milliseconds) {
-        this.pollingRate = milliseconds;
+    protected String queryResponse(Client client) {
+        ClientResponse response = get(client);
+        if(response == null)
+            return null;
+        
+        String textEntity = response.getEntity(String.class);
+
+        logger.log(Level.FINEST, "list-instances Response =  {0}", new Object[]{textEntity});
+        archiveResponse(archiveFileName(), textEntity);
         
+        return textEntity;
     }
     
     /**
+     * Performs the same GET as queryResponse() but leaves the body unread,
+     * copying it to the archive as it is parsed
      * 
-     * @return The status reported by the GF server
-     */    
-    public ArrayList<Status> queryGFStatus() {
-        ArrayList<Status> statusList = null;
-        
-        if(restClient != null) {
-            String response = getInstanceListStatus(restClient);
-            statusList = parseInstanceResponse(response);
-        }
+     * @param client The Jersey rest client
+     * 
+     * @return The response stream, or null if it has not changed since the last poll
+     */
+    protected InputStream queryStream(Client client) {
+        ClientResponse response = get(client);
+        if(response == null)
+            return null;
         
-        return statusList;
+        return archiveStream(archiveFileName(), response.getEntityInputStream());
     }
-
+    
     /**
-     * Performs the GET operation on http://baseURL/management/domain/clusters/cluster/{cluster-name}/list-instances
-     * 
-     * @param client The Jersey rest client
      * 
-     * @return The XML text
-     */    
-    private String getInstanceListStatus(Client client) {
-        
+     * @return The 200 response, or null if it was 304 or an error
+     */
+    private ClientResponse get(Client client) {
         
         WebResource webResource = client.resource(restURL + this.clusterName + "/list-instances");
         
-        ClientResponse response = webResource.accept("application/xml").get(ClientResponse.class);
+        ClientResponse response = conditionalGet(webResource.accept(parserType.getMediaType()));
         
         int status = response.getStatus();
         logger.log(Level.FINEST, "list-instances Status =  {0}", new Object[]{status});
-        String textEntity = response.getEntity(String.class);
-
-        logger.log(Level.FINEST, "list-instances Response =  {0}", new Object[]{textEntity});
-        StatusUtilities.writeResponseToFile(textEntity, this.clusterName + "-instance-status.xml");
-        
-        return textEntity;
+        if(status == ClientResponse.Status.NOT_MODIFIED.getStatusCode())
+            return null;
+        if(status != ClientResponse.Status.OK.getStatusCode()) {
+            logger.log(Level.INFO, "list-instances returned HTTP {0} from {1}", new Object[]{status, restURL + this.clusterName});
+            response.close();
+            return null;
+        }
+        return response;
+    }
+    
+    private String archiveFileName() {
+        return this.clusterName + (parserType == ParserType.JSON ? "-instance-status.json" : "-instance-status.xml");
     }
     
     /**
      * Parses the XML response received from the GF server and returns the
-     * instance list status
+     * instance list status.  The streaming parsers fill the monitor's column
+     * buffer, and the list they return holds the previous poll's status
+     * objects for the instances that did not change; the DOM parser builds
+     * every status anew.
      * 
      * @param xmlData XML data received from the rest GET
      * 
      * @return A list of status objects, one for each instance
      */    
-    private ArrayList<Status> parseInstanceResponse(String xmlData) {
-        ArrayList<Status> statusList = null;
-        
-        InstanceListStatusHandler handler = new InstanceListStatusHandler();
+    protected ArrayList<Status> parseResponse(String xmlData) {
+        StatusHandler current = this.handler;
+        if(!(current instanceof ColumnarStatusHandler))
+            return current.parseXMLData(xmlData);
         
-        statusList = handler.parseXMLData(xmlData);
+        if(!((ColumnarStatusHandler)current).parseInto(xmlData, columns))
+            return null;
+        return columns.toStatusList(getStatusList());
+    }
+    
+    /**
+     * Parses the response as it is read from the connection, into the same
+     * column buffer as parseResponse(String)
+     * 
+     * @param response The response stream
+     * 
+     * @return A list of status objects, one for each instance
+     */
+    protected ArrayList<Status> parseResponse(InputStream response) {
+        StatusHandler current = this.handler;
+        if(!(current instanceof ColumnarStatusHandler))
+            return current.parseStream(response);
         
-        return statusList;
-    }   
-
+        if(!((ColumnarStatusHandler)current).parseInto(response, columns))
+            return null;
+        return columns.toStatusList(getStatusList());
+    }
+    
+    protected String getResourceName() {
+        return "list-instances";
+    }
+    
     /**
      * 
-     * @return The current instance list status
+     * @param parserType The parser to use
+     * @return A handler for list-instances responses
      */
-    public ArrayList<Status> getStatusList() {
-        return this.instanceListStatus;
-    }  
+    public static StatusHandler createStatusHandler(ParserType parserType) {
+        if(parserType == ParserType.JSON)
+            return new InstanceListJsonStatusHandler();
+        else if(parserType == ParserType.STAX)
+            return new InstanceListStaxStatusHandler();
+        else
+            return new InstanceListStatusHandler();
+    }
 }
@@ -16,21 +16,21 @@
 
 package org.engineeringnotebook.glassfishmonitor.instance;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
+import java.io.InputStream;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Attr;
-import org.xml.sax.InputSource;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.logging.Logger;
 import java.util.logging.Level;
+import org.w3c.dom.Node;
 import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusHandler;
+import org.engineeringnotebook.glassfishmonitor.status.NameRegistry;
+import org.engineeringnotebook.glassfishmonitor.util.DocumentBuilders;
 
 /**
  * Uses a DOM parser to extract meaningful status information from the GF
@@ -38,44 +38,61 @@ import org.engineeringnotebook.glassfishmonitor.status.Status;
  * 
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
  */
-public class InstanceListStatusHandler {
+public class InstanceListStatusHandler implements StatusHandler {
     
     private static final Logger logger = Logger.getLogger(InstanceListStatusHandler.class.getName());
+    //names seen by the monitor this handler parses for
+    private final NameRegistry names = new NameRegistry();
     
     /**
      * 
      * @param xmlData The xml data received from the GF server
-     * @return The status for each cluster
+     * @return The status for each instance
      */    
     public ArrayList<Status> parseXMLData(String xmlData) {
         ArrayList<Status> instanceList = null;
         Document dom = createDOM(xmlData);
-        instanceList = parseDOM(dom);
+        if(dom != null)
+            instanceList = parseDOM(dom);
         
         return instanceList;   
     }
     
+    /**
+     * 
+     * @param xmlData The response stream received from the GF server
+     * @return The status for each instance
+     */
+    public ArrayList<Status> parseStream(InputStream xmlData) {
+        Document dom = createDOM(xmlData);
+        return dom != null ? parseDOM(dom) : null;
+    }
+    
     private Document createDOM(String xmlData){
-        //get the factory
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         Document dom = null;
 
         try {
-
-                //Factory returns an instance of document builder
-                DocumentBuilder db = dbf.newDocumentBuilder();
-                InputSource is = new InputSource(new StringReader(xmlData));
+            //Creat DOM representation of the XML data
+            dom = DocumentBuilders.parse(xmlData);
+        }catch(SAXException se) {
+            logger.log(Level.INFO, "Unable to parse response: {0}", new Object[]{se.getMessage()});
+        }catch(IOException ioe) {
+            logger.log(Level.INFO, "Unable to parse response: {0}", new Object[]{ioe.getMessage()});
+        }
         
-                //Creat DOM representation of the XML data
-                dom = db.parse(is);
-
+        return dom;
+    }
+    
+    private Document createDOM(InputStream xmlData){
+        Document dom = null;
 
-        }catch(ParserConfigurationException pce) {
-            pce.printStackTrace();
+        try {
+            //the builder reads the stream as it parses
+            dom = DocumentBuilders.parse(xmlData);
         }catch(SAXException se) {
-            se.printStackTrace();
+            logger.log(Level.INFO, "Unable to parse response: {0}", new Object[]{se.getMessage()});
         }catch(IOException ioe) {
-            ioe.printStackTrace();
+            logger.log(Level.INFO, "Unable to parse response: {0}", new Object[]{ioe.getMessage()});
         }
         
         return dom;
@@ -107,78 +124,82 @@ public class InstanceListStatusHandler {
         return instanceList;
     }
     
-    private ArrayList<Status> getInstances(Element entry) {
-        ArrayList<Status> instanceList = null;
-        NodeList nl = entry.getElementsByTagName("map");
-        if(nl != null && nl.getLength() > 0) {
-            for(int i = 0 ; i < nl.getLength();i++) {
-                Element map = (Element)nl.item(i);
-                instanceList = processMapEntity(map);
-                break;
+    /**
+     * Each map directly inside the list describes one instance
+     * 
+     * @param list The list element
+     * @return An ArrayList of status objects for the instances
+     */
+    private ArrayList<Status> getInstances(Element list) {
+        ArrayList<Status> instanceList = new ArrayList();
+        NodeList nl = list.getChildNodes();
+        for(int i = 0 ; i < nl.getLength();i++) {
+            Node node = nl.item(i);
+            if(node.getNodeType() == Node.ELEMENT_NODE && "map".equals(node.getNodeName())) {
+                instanceList.add(processMapEntity((Element)node));
             }
         }
         return instanceList;
     }
     
-    private ArrayList<Status> processMapEntity(Element map) {
-        ArrayList<Status> instanceList = new ArrayList();
-        InstanceStatus iStatus = new InstanceStatus(); 
-        instanceList.add(iStatus);
+    private InstanceStatus processMapEntity(Element map) {
+        String name = null;
+        String state = null;
+        String uptime = null;
+        String cluster = null;
         NodeList nl = map.getElementsByTagName("entry");
         if(nl != null && nl.getLength() > 0) {
             for(int i = 0 ; i < nl.getLength();i++) {  
                 Element entry = (Element)nl.item(i);
-                processEntryEntity(entry, iStatus); 
+                if(!entry.hasAttribute("key"))
+                    continue;
+                Attr keyAttr = entry.getAttributeNode("key");
+                logger.log(Level.FINEST, "Key = {0}", new Object[]{keyAttr.getValue()});
+                if("status".equals(keyAttr.getValue())) {
+                    state = processEntryValue(entry);
+                }
+                else if("name".equals(keyAttr.getValue())) {
+                    name = processEntryValue(entry);
+                }
+                else if("uptime".equals(keyAttr.getValue())) {
+                    uptime = processInstanceUptime(entry);
+                }
+                else if("cluster".equals(keyAttr.getValue())) {
+                    cluster = processEntryValue(entry);
+                }
             }
         }
         
-        return instanceList;
+        return new InstanceStatus(names.intern(name), state, InstanceStatus.parseUptime(uptime), names.intern(cluster));
     }
     
-    private InstanceStatus processEntryEntity(Element entry, InstanceStatus iStatus) {
-        
-        if(entry.hasAttribute("key")) {
-            Attr keyAttr = entry.getAttributeNode("key");
-            logger.log(Level.FINEST, "Key = {0}", new Object[]{keyAttr.getValue()});
-            if("status".equals(keyAttr.getValue())) {
-                processInstanceStatus(entry, iStatus);
-            }
-            else if("name".equals(keyAttr.getValue())) {
-                processInstanceName(entry, iStatus);
-            }
-            else if("uptime".equals(keyAttr.getValue())) {
-                processInstanceUptime(entry, iStatus);
-            }
-        }
-
-        return iStatus;
-    }
-    
-    private void processInstanceStatus(Element entry, InstanceStatus iStatus) {
-        if(entry.hasAttribute("value")) {
-            Attr valueAttr = entry.getAttributeNode("value");
-            logger.log(Level.FINEST, "Value = {0}", new Object[]{valueAttr.getValue()});
-            iStatus.setInstanceStatus(valueAttr.getValue());
-        }                   
-    }
-
-    private void processInstanceName(Element entry, InstanceStatus iStatus) {
+    /**
+     * 
+     * @return The value attribute of the entry, or null if it has none
+     */
+    private String processEntryValue(Element entry) {
         if(entry.hasAttribute("value")) {
             Attr valueAttr = entry.getAttributeNode("value");
             logger.log(Level.FINEST, "Value = {0}", new Object[]{valueAttr.getValue()});
-            iStatus.setInstanceName(valueAttr.getValue());
-        }                   
+            return valueAttr.getValue();
+        }
+        return null;
     }
 
-    private void processInstanceUptime(Element entry, InstanceStatus iStatus) {
-        
+    /**
+     * 
+     * @return The text of the last number element of the entry, or null if it has none
+     */
+    private String processInstanceUptime(Element entry) {
+        String uptime = null;
         NodeList nl = entry.getElementsByTagName("number");
         if(nl != null && nl.getLength() > 0) {
             for(int i = 0 ; i < nl.getLength();i++) {  
                 Element number = (Element)nl.item(i);
                 logger.log(Level.FINEST, "Value = {0}", new Object[]{number.getTextContent()});
-                iStatus.setInstanceUptime(number.getTextContent());                 
+                uptime = number.getTextContent();
             }
         }              
+        return uptime;
     }
 }
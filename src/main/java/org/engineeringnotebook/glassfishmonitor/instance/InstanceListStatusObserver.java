@@ -15,83 +15,155 @@
  */
 package org.engineeringnotebook.glassfishmonitor.instance;
 
+import org.engineeringnotebook.glassfishmonitor.DeltaObserver;
 import org.engineeringnotebook.glassfishmonitor.Observer;
+import org.engineeringnotebook.glassfishmonitor.status.ObserverDispatcher;
+import org.engineeringnotebook.glassfishmonitor.status.QueuedObserver;
 import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusDelta;
+import org.engineeringnotebook.glassfishmonitor.status.StatusLog;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
 import org.engineeringnotebook.glassfishmonitor.Subject;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.logging.Logger;
 import java.util.logging.Level;
-import java.util.Date;
+import org.engineeringnotebook.glassfishmonitor.scheduler.StaleListener;
+import org.engineeringnotebook.glassfishmonitor.scheduler.StalenessDetector;
 
 /**
  * This class implements the observer portion of the (GoF) Observer pattern and 
  * listens for updates from the InstanceListMonitor (subject).
- * The listener will wait a specific amount of time for an update from the 
- * monitor.  If it doesn't receive an update, the thread will terminate.  
+ * The listener expects an update from the monitor within a specific amount
+ * of time.  The deadline is watched by the shared StalenessDetector, which
+ * reports through statusStale() if no update arrives.
+ * 
+ * Only instances that were added, removed or changed state are logged at INFO; 
+ * uptime-only changes are logged at FINE.  Status lines are written through
+ * StatusLog in its key=value format.
  * 
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
  */
-public class InstanceListStatusObserver implements Observer, Runnable {
+public class InstanceListStatusObserver implements DeltaObserver, StaleListener {
     private static final Logger logger = Logger.getLogger(InstanceListStatusObserver.class.getName());
-    private long lastUpdateTime;
-    private Date date;
+    private static final String LISTENER = "InstanceList Status Listener: ";
+    private final StalenessDetector stalenessDetector;
+    private StalenessDetector.Deadline deadline;
     private long statusWaitTime;
+    //what registerListener() registered with, so close() can undo it
+    private Subject subject;
+    private Observer registered;
+    private ObserverDispatcher dispatcher;
  
     /**
-     * @param milliseconds The time the thread will wait for the monitor to provide a response
+     * @param milliseconds The time the observer will wait for the monitor to provide a response
+     * @param stalenessDetector The shared detector that watches for missing updates
      */    
-    public InstanceListStatusObserver(long milliseconds) {
+    public InstanceListStatusObserver(long milliseconds, StalenessDetector stalenessDetector) {
         this.statusWaitTime = milliseconds;
-        date = new Date();
-        lastUpdateTime = date.getTime();
+        this.stalenessDetector = stalenessDetector;
     }
     
-    public void run() {
-        long currentTime;
-        long timeSinceLastStatusUpdate;
-        
-         while(true) {
-             currentTime = date.getTime(); 
-             timeSinceLastStatusUpdate = currentTime - this.lastUpdateTime;
-             if(timeSinceLastStatusUpdate > this.statusWaitTime) {
-                 logger.log(Level.INFO, "Configured server wait time '{0}' exceeds blocking time '{1}'", new Object[]{this.lastUpdateTime, timeSinceLastStatusUpdate});
-                 break;
-             }
-         }
+    /**
+     * Called by the StalenessDetector when the monitor has not provided an
+     * update within the status wait time
+     * 
+     * @param millisSinceLastUpdate 
+     */
+    public void statusStale(long millisSinceLastUpdate) {
+        logger.log(Level.INFO, "No instance status received for {0} msecs, configured wait time is {1} msecs", new Object[]{millisSinceLastUpdate, this.statusWaitTime});
     }
     
     public void setStatusWaitTime(long milliseconds) {
       this.statusWaitTime = milliseconds;
+      if(deadline != null)
+        deadline.setWaitTime(milliseconds);
     }
     
    /**
      * Called by the InstanceListMonitor (subject) to provide the status update for 
      * the set of instances.
      * 
-     * @param statusList The status of all instances
+     * @param snapshot The status of all instances
    */   
-    public void update(ArrayList<Status> statusList) {
-        for (Iterator<Status> i=statusList.iterator(); i.hasNext(); ) {
-            Status o = i.next();
+    public void update(StatusSnapshot snapshot) {
+        if(deadline != null)
+            deadline.rearm();
+        if(snapshot == null) {
+            logger.log(Level.INFO, "Instance Status List Is Empty");
+            return;
+        }
+        for (Status o : snapshot.getStatusList()) {
             try {
-                logger.log(Level.INFO, "InstanceList Status Listener: {0}", new Object[]{o.getStatusString()});
-                lastUpdateTime = date.getTime();
+                StatusLog.log(logger, Level.INFO, LISTENER, o);
             }
             catch (RuntimeException e) {
                 logger.log(Level.INFO, "Unexpected exception in listener  {0}", new Object[]{e});
-                i.remove();
             }
         }  
     }
+    
+    /**
+     * Called by the InstanceListMonitor (subject) after each successful poll
+     * with the changes since the previous poll.
+     * 
+     * @param delta The changes to the instance list
+     */
+    public void updateDelta(StatusDelta delta) {
+        if(deadline != null)
+            deadline.rearm();
+        
+        for(Status status : delta.getAdded())
+            StatusLog.log(logger, Level.INFO, LISTENER, status);
+        for(Status status : delta.getStateChanged())
+            StatusLog.log(logger, Level.INFO, LISTENER, status);
+        for(Status status : delta.getRemoved())
+            logger.log(Level.INFO, "Instance no longer reported: {0}", new Object[]{status.getName()});
+        if(logger.isLoggable(Level.FINE)) {
+            for(Status status : delta.getUptimeChanged())
+                StatusLog.log(logger, Level.FINE, LISTENER, status);
+        }
+    }
 
     /**
-     * Registers this Observer with the Subject
+     * Registers this Observer with the Subject and starts watching for updates
      * 
      * @param subject 
      */    
     public void registerListener(Subject subject) {
-        subject.addObserver(this);
+        registerListener(subject, null);
+    }
+    
+    /**
+     * Registers this Observer with the Subject through a queue, so that it is
+     * updated off the polling thread, and starts watching for updates
+     * 
+     * @param subject 
+     * @param dispatcher Queues the updates, or null to be updated on the polling thread
+     */    
+    public synchronized void registerListener(Subject subject, ObserverDispatcher dispatcher) {
+        this.subject = subject;
+        this.dispatcher = dispatcher;
+        this.registered = dispatcher != null ? dispatcher.queue(this) : this;
+        subject.addObserver(registered);
+        if(deadline == null)
+            deadline = stalenessDetector.register(statusWaitTime, this);
+    }
+    
+    /**
+     * Stops listening: unregisters from the Subject, discards any queued 
+     * updates and stops watching for missing ones
+     */
+    public synchronized void close() {
+        if(subject != null) {
+            subject.removeObserver(registered);
+            subject = null;
+        }
+        if(registered instanceof QueuedObserver) {
+            if(dispatcher != null)
+                dispatcher.release((QueuedObserver)registered);
+            registered = null;
+        }
+        if(deadline != null)
+            deadline.cancel();
     }
     
 }
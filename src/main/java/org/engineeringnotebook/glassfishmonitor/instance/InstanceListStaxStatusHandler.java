@@ -0,0 +1,260 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.instance;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.engineeringnotebook.glassfishmonitor.status.NameRegistry;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusState;
+
+/**
+ * Uses a StAX parser to extract the instance status from the GF server's XML
+ * response in a single pass, without building a DOM.
+ * 
+ * Produces the same result as InstanceListStatusHandler: one InstanceStatus 
+ * for every map in the instance list.  The uptime is read from the parser's
+ * text buffer rather than as a String.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class InstanceListStaxStatusHandler implements ColumnarStatusHandler {
+    private static final Logger logger = Logger.getLogger(InstanceListStaxStatusHandler.class.getName());
+    //names seen by the monitor this handler parses for
+    private final NameRegistry names = new NameRegistry();
+    private static final XMLInputFactory inputFactory = createInputFactory();
+    
+    /**
+     * 
+     * @param xmlData The xml data received from the GF server
+     * @return The status for each instance, or null if the response has no list
+     */
+    public ArrayList<Status> parseXMLData(String xmlData) {
+        InstanceColumns columns = new InstanceColumns(16, names);
+        return parseInto(xmlData, columns) ? columns.toStatusList(null) : null;
+    }
+    
+    /**
+     * 
+     * @param xmlData The xml data received from the GF server
+     * @param columns Cleared, then filled with one row per instance
+     * @return false if the response has no list
+     */
+    public boolean parseInto(String xmlData, InstanceColumns columns) {
+        return parse(new StringReader(xmlData), null, columns);
+    }
+    
+    /**
+     * 
+     * @param xmlData The response stream received from the GF server
+     * @return The status for each instance, or null if the response has no list
+     */
+    public ArrayList<Status> parseStream(InputStream xmlData) {
+        InstanceColumns columns = new InstanceColumns(16, names);
+        return parseInto(xmlData, columns) ? columns.toStatusList(null) : null;
+    }
+    
+    /**
+     * 
+     * @param xmlData The response stream received from the GF server
+     * @param columns Cleared, then filled with one row per instance
+     * @return false if the response has no list
+     */
+    public boolean parseInto(InputStream xmlData, InstanceColumns columns) {
+        return parse(null, xmlData, columns);
+    }
+    
+    private boolean parse(Reader text, InputStream stream, InstanceColumns columns) {
+        columns.clear();
+        XMLStreamReader reader = null;
+        
+        try {
+            reader = text != null ? inputFactory.createXMLStreamReader(text) : inputFactory.createXMLStreamReader(stream);
+            return parseStream(reader, columns);
+        }catch(XMLStreamException xse) {
+            logger.log(Level.INFO, "Unable to parse list-instances response: {0}", new Object[]{xse.getMessage()});
+        }finally {
+            close(reader);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Each map directly inside a list is one instance.  As with the DOM 
+     * handler, if the response holds more than one list the last one wins.
+     * 
+     * @param reader
+     * @param columns
+     * @return
+     * @throws XMLStreamException 
+     */
+    private boolean parseStream(XMLStreamReader reader, InstanceColumns columns) throws XMLStreamException {
+        boolean found = false;
+        Row current = new Row();
+        int depth = 0;
+        int listDepth = -1;
+        int mapDepth = -1;
+        int uptimeDepth = -1;
+        int numberDepth = -1;
+        
+        while(reader.hasNext()) {
+            int event = reader.next();
+            if(event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String name = reader.getLocalName();
+                if(listDepth < 0) {
+                    if("list".equals(name)) {
+                        listDepth = depth;
+                        columns.clear();
+                    }
+                }
+                else if(mapDepth < 0) {
+                    if("map".equals(name) && depth == listDepth + 1) {
+                        mapDepth = depth;
+                        current.reset();
+                    }
+                }
+                else if("entry".equals(name)) {
+                    uptimeDepth = processEntry(reader, current, columns.getNames()) ? depth : -1;
+                }
+                else if("number".equals(name) && uptimeDepth > 0) {
+                    numberDepth = depth;
+                    current.uptime = 0;
+                    current.digits = 0;
+                }
+            }
+            else if(event == XMLStreamConstants.CHARACTERS && numberDepth > 0) {
+                current.appendDigits(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+            else if(event == XMLStreamConstants.END_ELEMENT) {
+                if(depth == numberDepth) {
+                    numberDepth = -1;
+                    if(current.digits == 0)
+                        current.uptime = InstanceStatus.NO_UPTIME;
+                    if(logger.isLoggable(Level.FINEST))
+                        logger.log(Level.FINEST, "Value = {0}", new Object[]{current.uptime});
+                }
+                else if(depth == uptimeDepth) {
+                    uptimeDepth = -1;
+                }
+                else if(depth == mapDepth) {
+                    mapDepth = -1;
+                    columns.add(current.nameId, current.state, current.stateText, current.uptime, current.clusterId);
+                }
+                else if(depth == listDepth) {
+                    listDepth = -1;
+                    found = true;
+                }
+                depth--;
+            }
+        }
+        
+        return found;
+    }
+    
+    /**
+     * 
+     * @param reader Positioned on an entry start tag
+     * @param row The instance the entry belongs to
+     * @param names The registry of the buffer being parsed into
+     * @return true if this is the uptime entry, whose value is in a nested number element
+     */
+    private boolean processEntry(XMLStreamReader reader, Row row, NameRegistry names) {
+        String key = reader.getAttributeValue(null, "key");
+        if(logger.isLoggable(Level.FINEST))
+            logger.log(Level.FINEST, "Key = {0}", new Object[]{key});
+        if("status".equals(key)) {
+            String value = reader.getAttributeValue(null, "value");
+            if(value != null) {
+                row.state = StatusState.fromString(value);
+                row.stateText = row.state == StatusState.UNKNOWN ? value : null;
+            }
+        }
+        else if("name".equals(key)) {
+            String value = reader.getAttributeValue(null, "value");
+            if(value != null)
+                row.nameId = names.id(value);
+        }
+        else if("cluster".equals(key)) {
+            String value = reader.getAttributeValue(null, "value");
+            if(value != null)
+                row.clusterId = names.id(value);
+        }
+        else if("uptime".equals(key)) {
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * The fields of the instance being read
+     */
+    private static final class Row {
+        int nameId;
+        StatusState state;
+        String stateText;
+        long uptime;
+        int digits;
+        int clusterId;
+        
+        void reset() {
+            nameId = -1;
+            state = StatusState.UNKNOWN;
+            stateText = null;
+            uptime = InstanceStatus.NO_UPTIME;
+            clusterId = -1;
+        }
+        
+        /**
+         * The number may arrive in more than one CHARACTERS event
+         */
+        void appendDigits(char[] text, int start, int length) {
+            for(int i = start; i < start + length; i++) {
+                char c = text[i];
+                if(c >= '0' && c <= '9') {
+                    uptime = uptime * 10 + (c - '0');
+                    digits++;
+                }
+            }
+        }
+    }
+    
+    private void close(XMLStreamReader reader) {
+        if(reader != null) {
+            try {
+                reader.close();
+            }catch(XMLStreamException xse) {
+                logger.log(Level.FINEST, "Error closing reader: {0}", new Object[]{xse.getMessage()});
+            }
+        }
+    }
+    
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+}
@@ -19,41 +19,127 @@ package org.engineeringnotebook.glassfishmonitor.instance;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusState;
 
 /**
+ * The status of one instance.  Parsers take names from their monitor's
+ * NameRegistry, so the same instance reported by every poll shares one
+ * String, and the state and uptime are held as an enum and a long rather
+ * than as response text.  A state the monitor does not know is UNKNOWN,
+ * but the text the GF server sent for it is kept.  A status is immutable
+ * once created, so a published snapshot can be read by any number of
+ * observers.
  *
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
  */
 public class InstanceStatus implements Status {
   private static final Logger logger = Logger.getLogger(InstanceStatus.class.getName());
-  private String instanceName = null;
-  private String instanceStatus = null;
-  private String instanceUptime = null;
+  //the uptime when the response did not report one
+  public static final long NO_UPTIME = -1L;
+  private final String instanceName;
+  private final StatusState instanceStatus;
+  //the reported text of an UNKNOWN state, otherwise null
+  private final String stateText;
+  private final long instanceUptime;
+  private final String clusterName;
 
-
-  public void setInstanceName(String cName) {
-      this.instanceName = cName;
+  /**
+   * 
+   * @param instanceName The instance name, or null if not reported
+   * @param state The state reported by the GF server
+   * @param uptime The uptime in milliseconds, or NO_UPTIME
+   * @param clusterName The cluster the instance belongs to, or null if the response did not say
+   */
+  public InstanceStatus(String instanceName, StatusState state, long uptime, String clusterName) {
+      this(instanceName, state, null, uptime, clusterName);
   }
 
-  public void setInstanceStatus(String cStatus) {
-      this.instanceStatus = cStatus;
+  /**
+   * 
+   * @param instanceName The instance name, or null if not reported
+   * @param state The state as text from the response, or null if not reported
+   * @param uptime The uptime in milliseconds, or NO_UPTIME
+   * @param clusterName The cluster the instance belongs to, or null if the response did not say
+   */
+  public InstanceStatus(String instanceName, String state, long uptime, String clusterName) {
+      this(instanceName, StatusState.fromString(state), state, uptime, clusterName);
   }
 
-  public void setInstanceUptime(String uptime) {
+  /**
+   * 
+   * @param stateText The state as text from the response; only kept if the state is UNKNOWN
+   */
+  InstanceStatus(String instanceName, StatusState state, String stateText, long uptime, String clusterName) {
+      this.instanceName = instanceName;
+      this.instanceStatus = state == null ? StatusState.UNKNOWN : state;
+      this.stateText = this.instanceStatus == StatusState.UNKNOWN ? stateText : null;
       this.instanceUptime = uptime;
+      this.clusterName = clusterName;
+  }
+
+  /**
+   * 
+   * @param clusterName The cluster the instance belongs to
+   * @return A copy of this status that names its cluster
+   */
+  public InstanceStatus withClusterName(String clusterName) {
+      return new InstanceStatus(this.instanceName, this.instanceStatus, this.stateText, this.instanceUptime, clusterName);
+  }
+
+  /**
+   * 
+   * @param uptime The uptime in milliseconds, as text from the response
+   * @return The uptime, or NO_UPTIME if it is missing or not a number
+   */
+  public static long parseUptime(String uptime) {
+      try {
+          return uptime == null ? NO_UPTIME : Long.parseLong(uptime.trim());
+      }catch(NumberFormatException nfe) {
+          logger.log(Level.INFO, "Unexpected uptime: {0}", new Object[]{uptime});
+          return NO_UPTIME;
+      }
   }
 
   public String getInstanceName() {
       return this.instanceName;
   }
 
-  public String getInstanceStatus() {
+  public StatusState getInstanceStatus() {
       return this.instanceStatus;
   }
 
-  public String getInstanceUptime() {
+  /**
+   * 
+   * @return The state as the GF server reported it: the name of a known 
+   *         state, the text of an unknown one, or null if none was reported
+   */
+  public String getStateText() {
+      return this.instanceStatus != StatusState.UNKNOWN ? this.instanceStatus.name() : this.stateText;
+  }
+
+  /**
+   * 
+   * @return The uptime in milliseconds, or NO_UPTIME if not reported
+   */
+  public long getInstanceUptime() {
       return this.instanceUptime;
   }
+  
+  /**
+   * 
+   * @return The cluster the instance belongs to, or null if the response did not say
+   */
+  public String getClusterName() {
+      return this.clusterName;
+  }
+  
+  public String getName() {
+      return this.instanceName;
+  }
+  
+  public StatusState getState() {
+      return this.instanceStatus;
+  }
     
  /**
  * Returns a human-readable status string for the instance
@@ -61,8 +147,57 @@ public class InstanceStatus implements Status {
  * @return A string representation of the instance status
  */   
   public String getStatusString() {  
-      logger.log(Level.FINEST, "Instance Name = {0},  -- Status =  {1}, -- Uptime = {2}", new Object[]{this.instanceName, this.instanceStatus, this.instanceUptime});
-      return("Instance Name = " + this.instanceName + " -- Status = " + this.instanceStatus + " -- Uptime = " + this.instanceUptime);
+      if(logger.isLoggable(Level.FINEST))
+          logger.log(Level.FINEST, "Instance Name = {0},  -- Status =  {1}, -- Uptime = {2}", new Object[]{this.instanceName, describeState(), this.instanceUptime});
+      return("Instance Name = " + this.instanceName + " -- Status = " + describeState() + " -- Uptime = " + this.instanceUptime);
+  }
+
+  /**
+   * Appends "instance=NAME state=STATE uptime=MILLIS", followed by 
+   * " cluster=NAME" when the cluster is known.  An unreported uptime is 
+   * written as -1, and an unknown state as UNKNOWN(text).
+   * 
+   * @param line The line being built
+   * @return The same builder
+   */
+  public StringBuilder appendTo(StringBuilder line) {
+      line.append("instance=").append(this.instanceName).append(" state=");
+      appendState(line)
+          .append(" uptime=").append(this.instanceUptime);
+      if(this.clusterName != null)
+          line.append(" cluster=").append(this.clusterName);
+      return line;
+  }
+
+  private String describeState() {
+      return appendState(new StringBuilder()).toString();
+  }
+
+  private StringBuilder appendState(StringBuilder line) {
+      line.append(this.instanceStatus.name());
+      if(this.stateText != null)
+          line.append('(').append(this.stateText).append(')');
+      return line;
+  }
+  
+  public boolean equals(Object obj) {
+      if(this == obj)
+          return true;
+      if(!(obj instanceof InstanceStatus))
+          return false;
+      InstanceStatus other = (InstanceStatus)obj;
+      return same(instanceName, other.instanceName) && instanceStatus == other.instanceStatus
+              && same(stateText, other.stateText) && instanceUptime == other.instanceUptime
+              && same(clusterName, other.clusterName);
+  }
+  
+  public int hashCode() {
+      return 31 * (instanceName == null ? 0 : instanceName.hashCode()) + instanceStatus.ordinal();
+  }
+
+  //names from the same registry are usually the same String
+  private static boolean same(String a, String b) {
+      return a == b || (a != null && a.equals(b));
   }
     
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many poll cycles of one group of monitors (typically every
+ * monitor of one GF domain) may run at once on the shared PollingScheduler.
+ * A cycle that finds its bulkhead full is skipped rather than queued, so a
+ * slow DAS can tie up at most maxConcurrent worker threads and the monitors
+ * of other domains keep their schedule.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class Bulkhead {
+    private final String name;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     *
+     * @param name The name of the group, for logging
+     * @param maxConcurrent The number of cycles of the group allowed to run at once
+     */
+    public Bulkhead(String name, int maxConcurrent) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent);
+    }
+
+    /**
+     * Never blocks.
+     *
+     * @return true if the cycle may run, in which case release() must follow
+     */
+    public boolean tryAcquire() {
+        if(permits.tryAcquire())
+            return true;
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getMaxConcurrent() {
+        return this.maxConcurrent;
+    }
+
+    /**
+     *
+     * @return The number of cycles of the group running now
+     */
+    public int getActiveCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     *
+     * @return The number of cycles skipped because the group was at its limit
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public String toString() {
+        return "Bulkhead[" + name + "]";
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Stops the monitors of one DAS from polling it while it is failing.  It is
+ * shared, like a Bulkhead, by every monitor of the domain.
+ *
+ * A cycle fails when the DAS could not be reached, timed out or answered
+ * with a server error.  A 404 or a response that would not parse comes from
+ * a DAS that is up, so it does not count against the breaker.
+ *
+ * While CLOSED every cycle runs.  After failureThreshold failed cycles in a
+ * row the breaker opens, and cycles are skipped for a backoff period that
+ * doubles each time the breaker opens again, up to maxBackoff, and is
+ * randomly shortened by up to half so that many monitors do not come back
+ * at the same instant.  Once the period has passed the breaker is HALF_OPEN:
+ * a single cycle is let through as a probe while the others keep being
+ * skipped.  A successful probe closes the breaker; a failed one opens it for
+ * the next, longer period.
+ *
+ * Each cycle let through is given a Permit to report its outcome with.  The
+ * outcome of a cycle that started before the breaker last changed state,
+ * e.g. one still running when the breaker opened, is ignored; while HALF_OPEN
+ * only the probe is heard.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class CircuitBreaker {
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long baseBackoff;
+    private final long maxBackoff;
+    private final Random random = new Random();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    //guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    //times opened since the last success, which sets the backoff
+    private int trips = 0;
+    private long openUntil;
+    //bumped on every change of state; a permit from an earlier one is stale
+    private long generation = 0;
+
+    /**
+     * Given to a cycle the breaker let through, to report its outcome with
+     */
+    public static final class Permit {
+        private final long generation;
+        private final boolean probe;
+
+        private Permit(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        public boolean isProbe() {
+            return this.probe;
+        }
+    }
+
+    /**
+     *
+     * @param name The name of the endpoint, for logging
+     * @param failureThreshold The number of failed cycles in a row that opens the breaker
+     * @param baseBackoff Milliseconds the breaker stays open the first time
+     * @param maxBackoff The most milliseconds the breaker stays open
+     */
+    public CircuitBreaker(String name, int failureThreshold, long baseBackoff, long maxBackoff) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.baseBackoff = Math.max(1, baseBackoff);
+        this.maxBackoff = Math.max(this.baseBackoff, maxBackoff);
+    }
+
+    /**
+     * Never blocks.
+     *
+     * @return The permit to pass to recordSuccess() or recordFailure() once
+     *         the cycle has run, or null if the cycle may not run
+     */
+    public synchronized Permit tryAcquire() {
+        if(state == State.CLOSED)
+            return new Permit(generation, false);
+        if(state == State.OPEN && now() >= openUntil) {
+            state = State.HALF_OPEN;
+            generation++;
+            logger.log(Level.INFO, "{0} is half-open, probing", new Object[]{this});
+            return new Permit(generation, true);
+        }
+        rejected.incrementAndGet();
+        return null;
+    }
+
+    public synchronized void recordSuccess(Permit permit) {
+        if(permit.generation != generation)
+            return;
+        if(state != State.CLOSED) {
+            logger.log(Level.INFO, "{0} closed", new Object[]{this});
+            generation++;
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trips = 0;
+    }
+
+    public synchronized void recordFailure(Permit permit) {
+        if(permit.generation != generation)
+            return;
+        consecutiveFailures++;
+        if(state == State.HALF_OPEN || consecutiveFailures >= failureThreshold)
+            open();
+    }
+
+    //called with the lock held
+    private void open() {
+        trips++;
+        long backoff = Math.min(maxBackoff, baseBackoff << Math.min(trips - 1, 30));
+        long delay = backoff - (long)(random.nextDouble() * backoff / 2);
+        openUntil = now() + delay;
+        state = State.OPEN;
+        generation++;
+        opened.incrementAndGet();
+        logger.log(Level.WARNING, "{0} opened after {1} failed polls, retrying in {2} ms", new Object[]{this, consecutiveFailures, delay});
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     *
+     * @return Milliseconds until the breaker lets a probe through, or 0 if it is not open
+     */
+    public synchronized long getRetryDelay() {
+        return state == State.OPEN ? Math.max(0, openUntil - now()) : 0;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     *
+     * @return The number of cycles skipped while the breaker was open or probing
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     *
+     * @return The number of times the breaker has opened
+     */
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    public String toString() {
+        return "CircuitBreaker[" + name + "]";
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Selects the kind of thread the PollingScheduler runs poll cycles on.
+ * 
+ * PLATFORM runs cycles on the scheduler's fixed pool, which bounds the number 
+ * of GETs in flight to the pool size.  VIRTUAL hands each cycle to its own 
+ * virtual thread (JDK 21+), so a monitor blocked on a slow DAS response only 
+ * parks a virtual thread and thousands of polls can be in flight at once.
+ * 
+ * The project is still compiled for older JDKs, so the virtual thread 
+ * executor is looked up reflectively.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL;
+    
+    /**
+     * 
+     * @param value The config value, e.g. "platform" or "virtual"
+     * @return The matching mode, or PLATFORM if the value is not recognised
+     */
+    public static ExecutionMode fromString(String value) {
+        if(value != null && value.trim().equalsIgnoreCase("virtual"))
+            return VIRTUAL;
+        return PLATFORM;
+    }
+    
+    /**
+     * 
+     * @return true if the running JDK provides virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return findVirtualExecutorFactory() != null;
+    }
+    
+    /**
+     * 
+     * @return An executor that starts a new virtual thread for each task
+     * @throws UnsupportedOperationException if the running JDK has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        Method factory = findVirtualExecutorFactory();
+        if(factory == null)
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later");
+        try {
+            return (ExecutorService)factory.invoke(null);
+        } catch(Exception e) {
+            throw new UnsupportedOperationException("Unable to create virtual thread executor", e);
+        }
+    }
+    
+    private static Method findVirtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch(NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
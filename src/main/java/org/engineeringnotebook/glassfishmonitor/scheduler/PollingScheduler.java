@@ -0,0 +1,375 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.engineeringnotebook.glassfishmonitor.status.StatusMonitor;
+
+/**
+ * Runs the poll cycle of every registered StatusMonitor on a fixed-size pool
+ * of worker threads, so the number of threads does not grow with the number
+ * of clusters being watched.
+ *
+ * Each monitor is run with a fixed delay of its polling rate between cycles.
+ * The rate is read again after every cycle, so a monitor with an adaptive 
+ * rate is rescheduled at whatever its last cycle left it at.
+ * The first cycle is spread randomly across one polling interval and every
+ * subsequent delay is perturbed by the jitter fraction, so monitors created
+ * together do not keep hitting the DAS at the same instant.
+ *
+ * In ExecutionMode.VIRTUAL the pool only keeps time; each due cycle is handed
+ * to a new virtual thread, so cycles blocked on the network do not hold up
+ * the others.
+ *
+ * A monitor may be registered with a Bulkhead shared by the other monitors
+ * of its domain.  A due cycle whose bulkhead is full is skipped until the
+ * next interval, so one slow domain cannot occupy the whole pool.  A global
+ * bulkhead, shared by every monitor, limits the cycles running at once 
+ * across all domains; each cycle makes one admin REST call at a time, so 
+ * this bounds the calls in flight even when cycles run on virtual threads.
+ *
+ * A monitor may also be registered with its domain's CircuitBreaker.  Only a
+ * cycle that found the DAS down or failing counts as a failure, i.e. one for
+ * which monitor.isServerFailure() is true: a connection error, a response
+ * that could not be read, or a 5xx.  A 4xx, a response that would not parse
+ * or an exception thrown elsewhere in the cycle leaves the monitor without a
+ * snapshot but counts as a success, since retrying sooner or later would not
+ * help.  While the breaker is open the domain's cycles are skipped, and each
+ * monitor is rescheduled for when the breaker will let a probe through.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class PollingScheduler {
+    private static final Logger logger = Logger.getLogger(PollingScheduler.class.getName());
+    private final ScheduledThreadPoolExecutor executor;
+    private final ConcurrentHashMap<StatusMonitor, ScheduledPoll> polls = new ConcurrentHashMap<StatusMonitor, ScheduledPoll>();
+    private final Random random = new Random();
+    private final double jitter;
+    private final ExecutionMode executionMode;
+    private final ExecutorService cycleExecutor;
+    private volatile Bulkhead globalBulkhead = null;
+    private volatile boolean started = false;
+
+    /**
+     *
+     * @param poolSize The number of worker threads shared by all monitors
+     * @param jitter The fraction of the polling rate by which each delay is randomly varied
+     */
+    public PollingScheduler(int poolSize, double jitter) {
+        this(poolSize, jitter, ExecutionMode.PLATFORM);
+    }
+
+    /**
+     *
+     * @param poolSize The number of worker threads shared by all monitors
+     * @param jitter The fraction of the polling rate by which each delay is randomly varied
+     * @param executionMode Whether cycles run on the pool or on virtual threads.  Falls
+     *                      back to PLATFORM if the JDK has no virtual threads.
+     */
+    public PollingScheduler(int poolSize, double jitter, ExecutionMode executionMode) {
+        this.jitter = Math.max(0.0, Math.min(jitter, 1.0));
+        ExecutorService virtualExecutor = null;
+        if(executionMode == ExecutionMode.VIRTUAL) {
+            try {
+                virtualExecutor = ExecutionMode.newVirtualThreadExecutor();
+            }
+            catch (UnsupportedOperationException e) {
+                logger.log(Level.WARNING, "{0}, using platform threads instead", new Object[]{e.getMessage()});
+            }
+        }
+        this.cycleExecutor = virtualExecutor;
+        this.executionMode = virtualExecutor != null ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM;
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(1, poolSize), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "status-poller-" + count.incrementAndGet());
+            }
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts polling every registered monitor.  Monitors registered after
+     * start are scheduled immediately.
+     */
+    public synchronized void start() {
+        started = true;
+        for(ScheduledPoll poll : polls.values())
+            poll.schedule(initialDelay(poll.monitor.getPollingRate()));
+    }
+
+    /**
+     * Stops all polling and waits briefly for in-flight cycles to finish.
+     */
+    public void stop() {
+        started = false;
+        for(ScheduledPoll poll : polls.values())
+            poll.cancel();
+        executor.shutdown();
+        if(cycleExecutor != null)
+            cycleExecutor.shutdown();
+        try {
+            if(!executor.awaitTermination(10, TimeUnit.SECONDS))
+                executor.shutdownNow();
+            if(cycleExecutor != null && !cycleExecutor.awaitTermination(10, TimeUnit.SECONDS))
+                cycleExecutor.shutdownNow();
+        } catch(InterruptedException ie) {
+            executor.shutdownNow();
+            if(cycleExecutor != null)
+                cycleExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     *
+     * @param monitor The monitor to poll at its configured polling rate
+     */
+    public synchronized void register(StatusMonitor monitor) {
+        register(monitor, null);
+    }
+
+    /**
+     *
+     * @param monitor The monitor to poll at its configured polling rate
+     * @param bulkhead Limits the concurrent cycles of the monitor's group, or null for no limit
+     */
+    public synchronized void register(StatusMonitor monitor, Bulkhead bulkhead) {
+        register(monitor, bulkhead, null);
+    }
+
+    /**
+     *
+     * @param monitor The monitor to poll at its configured polling rate
+     * @param bulkhead Limits the concurrent cycles of the monitor's group, or null for no limit
+     * @param breaker Stops the monitor's group from polling a failing server, or null
+     */
+    public synchronized void register(StatusMonitor monitor, Bulkhead bulkhead, CircuitBreaker breaker) {
+        ScheduledPoll poll = new ScheduledPoll(monitor, bulkhead, breaker);
+        if(polls.putIfAbsent(monitor, poll) == null && started)
+            poll.schedule(initialDelay(monitor.getPollingRate()));
+    }
+
+    /**
+     *
+     * @param monitor The monitor to stop polling.  A cycle already running is allowed to finish.
+     */
+    public void unregister(StatusMonitor monitor) {
+        ScheduledPoll poll = polls.remove(monitor);
+        if(poll != null)
+            poll.cancel();
+    }
+
+    /**
+     *
+     * @param globalBulkhead Limits the cycles of every monitor running at once, or null for no limit
+     */
+    public void setGlobalBulkhead(Bulkhead globalBulkhead) {
+        this.globalBulkhead = globalBulkhead;
+    }
+
+    public Bulkhead getGlobalBulkhead() {
+        return this.globalBulkhead;
+    }
+
+    /**
+     *
+     * @return The number of registered monitors
+     */
+    public int getMonitorCount() {
+        return polls.size();
+    }
+
+    /**
+     *
+     * @return The mode cycles are actually run in
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     *
+     * @return The number of worker threads
+     */
+    public int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    /**
+     * The schedule lag is how late, in milliseconds, the monitor's most recent
+     * cycle started compared to when it was due.  A growing lag means the
+     * worker pool is too small for the number of monitors.
+     *
+     * @param monitor A registered monitor
+     * @return The lag of the last cycle, or -1 if the monitor is not registered
+     */
+    public long getScheduleLag(StatusMonitor monitor) {
+        ScheduledPoll poll = polls.get(monitor);
+        return poll == null ? -1 : poll.lastLag;
+    }
+
+    /**
+     *
+     * @param monitor A registered monitor
+     * @return The largest lag seen so far, or -1 if the monitor is not registered
+     */
+    public long getMaxScheduleLag(StatusMonitor monitor) {
+        ScheduledPoll poll = polls.get(monitor);
+        return poll == null ? -1 : poll.maxLag;
+    }
+
+    private long initialDelay(long pollingRate) {
+        return pollingRate <= 0 ? 0 : (long)(random.nextDouble() * pollingRate);
+    }
+
+    private long nextDelay(long pollingRate) {
+        if(pollingRate <= 0)
+            return 0;
+        double offset = (random.nextDouble() * 2.0 - 1.0) * jitter * pollingRate;
+        return Math.max(0, pollingRate + (long)offset);
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Runs one monitor's cycle and then schedules the next one.  A monitor
+     * never has more than one cycle queued or running.
+     *
+     * In virtual mode the timer thread calls run(), which only hands the
+     * cycle to a virtual thread; the cycle itself is pollCycle().
+     */
+    private class ScheduledPoll implements Runnable {
+        private final StatusMonitor monitor;
+        private final Bulkhead bulkhead;
+        private final CircuitBreaker breaker;
+        private volatile long dueTime;
+        private volatile long lastLag = 0;
+        private volatile long maxLag = 0;
+        private volatile boolean cancelled = false;
+        private volatile ScheduledFuture<?> future;
+
+        ScheduledPoll(StatusMonitor monitor, Bulkhead bulkhead, CircuitBreaker breaker) {
+            this.monitor = monitor;
+            this.bulkhead = bulkhead;
+            this.breaker = breaker;
+        }
+
+        public void run() {
+            if(cancelled)
+                return;
+
+            if(cycleExecutor == null) {
+                pollCycle();
+                return;
+            }
+
+            try {
+                cycleExecutor.execute(new Runnable() {
+                    public void run() {
+                        pollCycle();
+                    }
+                });
+            }
+            catch (RejectedExecutionException e) {
+                //the scheduler is stopping
+            }
+        }
+
+        void pollCycle() {
+            long lag = Math.max(0, now() - dueTime);
+            lastLag = lag;
+            if(lag > maxLag)
+                maxLag = lag;
+
+            Bulkhead global = globalBulkhead;
+            CircuitBreaker.Permit permit = null;
+            if(bulkhead != null && !bulkhead.tryAcquire()) {
+                logger.log(Level.FINE, "{0} is full, skipping the cycle of {1}", new Object[]{bulkhead, monitor});
+            }
+            else if(global != null && !global.tryAcquire()) {
+                logger.log(Level.FINE, "{0} is full, skipping the cycle of {1}", new Object[]{global, monitor});
+                if(bulkhead != null)
+                    bulkhead.release();
+            }
+            else if(breaker != null && (permit = breaker.tryAcquire()) == null) {
+                logger.log(Level.FINE, "{0} is open, skipping the cycle of {1}", new Object[]{breaker, monitor});
+                release(global);
+            }
+            else {
+                try {
+                    monitor.run();
+                }
+                catch (RuntimeException e) {
+                    logger.log(Level.INFO, "Poll cycle failed for {0}: {1}", new Object[]{monitor, e});
+                }
+                finally {
+                    //only a DAS that is down or failing counts against the breaker
+                    if(permit != null) {
+                        if(monitor.isServerFailure())
+                            breaker.recordFailure(permit);
+                        else
+                            breaker.recordSuccess(permit);
+                    }
+                    release(global);
+                }
+            }
+
+            long delay = nextDelay(monitor.getPollingRate());
+            if(breaker != null)
+                delay = Math.max(delay, breaker.getRetryDelay());
+            schedule(delay);
+        }
+
+        private void release(Bulkhead global) {
+            if(global != null)
+                global.release();
+            if(bulkhead != null)
+                bulkhead.release();
+        }
+
+        void schedule(long delay) {
+            if(cancelled || executor.isShutdown())
+                return;
+            dueTime = now() + delay;
+            try {
+                future = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e) {
+                //the scheduler is stopping
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> f = future;
+            if(f != null)
+                f.cancel(false);
+        }
+    }
+}
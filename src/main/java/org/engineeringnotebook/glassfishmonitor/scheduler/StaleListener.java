@@ -0,0 +1,33 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+/**
+ * Callback fired by the StalenessDetector when a registered deadline elapses
+ * without being re-armed.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public interface StaleListener {
+
+    /**
+     * Called on the detector's timer thread, once per stale period.
+     * Implementations should return quickly.
+     *
+     * @param millisSinceLastUpdate Time elapsed since the deadline was last re-armed
+     */
+    public void statusStale(long millisSinceLastUpdate);
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * A single timer thread that watches the update deadlines of any number of
+ * observers.  Each observer registers a Deadline and re-arms it whenever it
+ * receives an update; if the wait time elapses first the StaleListener is
+ * called.
+ *
+ * Re-arming is a single volatile write.  The pending check is not moved on
+ * every update; instead, when it fires it compares against the latest update
+ * time and, if the deadline has moved, reschedules itself for the remainder.
+ * Each deadline therefore costs at most one timer task per wait period,
+ * however often it is updated.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class StalenessDetector {
+    private static final Logger logger = Logger.getLogger(StalenessDetector.class.getName());
+    private final ScheduledThreadPoolExecutor timer;
+
+    public StalenessDetector() {
+        timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "staleness-detector");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts watching a new deadline.  The clock starts immediately.
+     *
+     * @param waitTime The time, in milliseconds, allowed between updates
+     * @param listener Called when the wait time elapses without an update
+     * @return The deadline, which the caller re-arms on every update
+     */
+    public Deadline register(long waitTime, StaleListener listener) {
+        Deadline deadline = new Deadline(waitTime, listener);
+        deadline.schedule(waitTime);
+        return deadline;
+    }
+
+    /**
+     * Stops the timer thread.  Pending deadlines will no longer fire.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     *
+     * @return The number of checks currently queued on the timer
+     */
+    public int getPendingCount() {
+        return timer.getQueue().size();
+    }
+
+    /**
+     * A registered update deadline.
+     */
+    public class Deadline implements Runnable {
+        private final StaleListener listener;
+        private final AtomicBoolean stale = new AtomicBoolean(false);
+        private volatile long lastUpdateTime;
+        private volatile long waitTime;
+        private volatile boolean cancelled = false;
+        private volatile ScheduledFuture<?> future;
+
+        private Deadline(long waitTime, StaleListener listener) {
+            this.waitTime = waitTime;
+            this.listener = listener;
+            this.lastUpdateTime = now();
+        }
+
+        /**
+         * Records an update.  If the deadline had already fired, the check
+         * is rescheduled so the next stale period will be reported as well.
+         */
+        public void rearm() {
+            lastUpdateTime = now();
+            if(stale.compareAndSet(true, false)) {
+                schedule(waitTime);
+            }
+        }
+
+        /**
+         *
+         * @param milliseconds The new wait time, applied at the next check
+         */
+        public void setWaitTime(long milliseconds) {
+            this.waitTime = milliseconds;
+        }
+
+        /**
+         * Stops watching this deadline and takes its check off the timer
+         */
+        public void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> f = future;
+            if(f != null)
+                f.cancel(false);
+        }
+
+        /**
+         *
+         * @return true if the deadline has fired and not been re-armed since
+         */
+        public boolean isStale() {
+            return stale.get();
+        }
+
+        /**
+         * Timer callback; not intended to be called directly
+         */
+        public void run() {
+            if(cancelled)
+                return;
+
+            long elapsed = now() - lastUpdateTime;
+            if(elapsed < waitTime) {
+                schedule(waitTime - elapsed);
+                return;
+            }
+
+            //publish the stale flag, then look again in case an update raced us
+            stale.set(true);
+            elapsed = now() - lastUpdateTime;
+            if(elapsed < waitTime) {
+                if(stale.compareAndSet(true, false))
+                    schedule(waitTime - elapsed);
+                return;
+            }
+
+            try {
+                listener.statusStale(elapsed);
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.INFO, "Unexpected exception in stale listener  {0}", new Object[]{e});
+            }
+        }
+
+        private void schedule(long delay) {
+            if(cancelled || timer.isShutdown())
+                return;
+            try {
+                future = timer.schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e) {
+                //the detector was shut down since the check above
+                cancelled = true;
+            }
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
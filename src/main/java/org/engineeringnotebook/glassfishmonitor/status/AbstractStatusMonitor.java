@@ -0,0 +1,553 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import java.util.Arrays;
+import org.engineeringnotebook.glassfishmonitor.Observer;
+import org.engineeringnotebook.glassfishmonitor.Subject;
+import org.engineeringnotebook.glassfishmonitor.util.ResponseArchiveWriter;
+import org.engineeringnotebook.glassfishmonitor.util.ResponseDigest;
+import org.engineeringnotebook.glassfishmonitor.util.ResponseStreams;
+
+/**
+ * Common plumbing for the monitors: the rest client, the polling rate, the 
+ * observer list and the poll cycle itself.  Subclasses only need to know how 
+ * to query and parse their own GF resource.
+ * 
+ * Each cycle compares the new status list with the previous one and hands 
+ * DeltaObservers only the changes.  Unchanged responses are not parsed at 
+ * all: requests made through conditionalGet() carry the ETag/Last-Modified 
+ * validators of the last parsed response, so a server that supports them 
+ * answers 304 with no body; otherwise a response whose digest matches the 
+ * last parsed one is skipped.
+ * 
+ * With setStreamResponses(true) the response is parsed as it is read from 
+ * the connection, through queryStream() and parseResponse(InputStream), and 
+ * is never held in memory whole.  It is digested as it is read, so a response
+ * identical to the last one is still reported as unchanged, but only after it
+ * has been parsed; against a server that does not send validators, streaming
+ * trades that parse for the memory.
+ *
+ * The polling rate is fixed unless the monitor is given an
+ * AdaptivePollingRate, which each cycle reports its changes and response time
+ * to.
+ *
+ * A monitor is safe to share between threads.  Its endpoint is fixed when it
+ * is constructed, the settings are volatile, and each poll publishes an
+ * immutable StatusSnapshot through a volatile reference.  Only one poll
+ * cycle of a monitor runs at a time: run() holds the cycle lock, and the
+ * state carried from one cycle to the next is only touched under it.  The
+ * lock is a ReentrantLock rather than the monitor's own lock, so that a
+ * cycle blocked on the network does not pin its virtual thread to a carrier.
+ * The lock is held for the whole poll cycle, including the time spent
+ * delivering the status to synchronous observers.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public abstract class AbstractStatusMonitor implements StatusMonitor, Subject {
+    private static final Logger logger = Logger.getLogger(AbstractStatusMonitor.class.getName());
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    protected volatile Client restClient = null;
+    private volatile long pollingRate;
+    private volatile AdaptivePollingRate adaptivePollingRate = null;
+    private final StatusPublisher publisher = new StatusPublisher();
+    private volatile StatusSnapshot snapshot;
+    private volatile ResponseArchiveWriter responseArchive = null;
+    private volatile String domainName = null;
+    private volatile boolean streamResponses = false;
+    private volatile boolean closed = false;
+    private volatile boolean serverFailure = false;
+    //one poll cycle at a time; subclasses that extend the cycle hold it too
+    protected final ReentrantLock cycleLock = new ReentrantLock();
+    //poll cycle state, guarded by cycleLock
+    private long sequence = 0;
+    //the last successfully parsed list and the digest of the response it came from
+    private ArrayList<Status> baselineList;
+    private byte[] baselineDigest;
+    private boolean responseUnchanged;
+    private boolean notModified;
+    private String entityTag;
+    private String lastModified;
+    private final AtomicLong parseCount = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private ParseMetrics parseMetrics;
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong digestMatchCount = new AtomicLong();
+    
+    /**
+     * Performs a GET on the monitor's GF resource
+     * 
+     * @param client The Jersey rest client
+     * @return The response text, or null if there was none
+     */
+    protected abstract String queryResponse(Client client);
+    
+    /**
+     * Parses a response returned by queryResponse()
+     * 
+     * @param response The response text
+     * @return A list of status objects, or null if the response could not be parsed
+     */
+    protected abstract ArrayList<Status> parseResponse(String response);
+    
+    /**
+     * Performs a GET on the monitor's GF resource and returns the body 
+     * unread, for streamed polls.  Monitors that can stream override this 
+     * and parseResponse(InputStream); by default the response is read whole
+     * by queryResponse().
+     * 
+     * @param client The Jersey rest client
+     * @return The response body, which the caller closes, or null if there was none
+     */
+    protected InputStream queryStream(Client client) {
+        String response = queryResponse(client);
+        return response == null ? null : new ByteArrayInputStream(response.getBytes(UTF8));
+    }
+    
+    /**
+     * Parses a response returned by queryStream() as it is read.  By default
+     * the response is read whole and passed to parseResponse(String).
+     * 
+     * @param response The response body
+     * @return A list of status objects, or null if the response could not be parsed
+     * @throws IOException If the response could not be read
+     */
+    protected ArrayList<Status> parseResponse(InputStream response) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while((n = response.read(buffer)) >= 0)
+            text.write(buffer, 0, n);
+        return parseResponse(new String(text.toByteArray(), UTF8));
+    }
+    
+    /**
+     * Performs a single poll cycle: query the GF rest interface for status,
+     * then notify the observers.
+     */
+    public void run() {
+        cycleLock.lock();
+        try {
+            pollCycle();
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+    
+    private void pollCycle() {
+        if(closed)
+            return;
+        responseUnchanged = false;
+        notModified = false;
+        serverFailure = false;
+        long start = System.nanoTime();
+        ArrayList<Status> latest;
+        try {
+            latest = this.queryGFStatus();
+        }
+        catch (RuntimeException e) {
+            //e.g. a ClientHandlerException for a refused or timed out request; it only fails this poll
+            logger.log(Level.INFO, "Unable to poll {0}: {1}", new Object[]{getResourceName(), e});
+            if(e instanceof ClientHandlerException)
+                serverFailure = true;
+            latest = null;
+        }
+        long responseMillis = (System.nanoTime() - start) / 1000000;
+        StatusSnapshot published = null;
+        if(latest != null) {
+            baselineList = latest;
+            published = new StatusSnapshot(latest, ++sequence, System.currentTimeMillis());
+        }
+        snapshot = published;
+        StatusDelta delta = publisher.publish(published, responseUnchanged);
+        AdaptivePollingRate adaptive = adaptivePollingRate;
+        if(adaptive != null)
+            adaptive.recordPoll(delta, responseMillis);
+    }
+    
+    /**
+     * Poll the server for status and parse the response.  A response 
+     * identical to the last one parsed is not parsed again; the previous 
+     * status list is returned instead.  The list returned backs the published
+     * snapshot and must not be modified.
+     * 
+     * @return The status reported by the GF server
+     */
+    public ArrayList<Status> queryGFStatus() {
+        Client client = restClient;
+        if(client == null)
+            return null;
+        
+        cycleLock.lock();
+        try {
+            return streamResponses ? streamGFStatus(client) : readGFStatus(client);
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+    
+    private ArrayList<Status> readGFStatus(Client client) {
+        String response = queryResponse(client);
+        if(notModified && baselineList != null) {
+            notModifiedCount.incrementAndGet();
+            responseUnchanged = true;
+            return baselineList;
+        }
+        if(response == null)
+            return null;
+        
+        byte[] digest = ResponseDigest.digest(response);
+        if(baselineList != null && Arrays.equals(digest, baselineDigest)) {
+            digestMatchCount.incrementAndGet();
+            responseUnchanged = true;
+            return baselineList;
+        }
+        
+        parseCount.incrementAndGet();
+        long start = System.nanoTime();
+        ArrayList<Status> parsed = parseResponse(response);
+        recordParseTime(System.nanoTime() - start);
+        return accept(parsed, digest);
+    }
+    
+    private ArrayList<Status> streamGFStatus(Client client) {
+        InputStream body = queryStream(client);
+        if(notModified && baselineList != null) {
+            ResponseStreams.close(body);
+            notModifiedCount.incrementAndGet();
+            responseUnchanged = true;
+            return baselineList;
+        }
+        if(body == null)
+            return null;
+        
+        ArrayList<Status> parsed;
+        byte[] digest = null;
+        parseCount.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            DigestInputStream digesting = ResponseDigest.digesting(body);
+            parsed = parseResponse(ResponseStreams.keepOpen(digesting));
+            //the parser may stop before the end; the digest and the archive copy need all of it
+            ResponseStreams.drain(digesting);
+            digest = digesting.getMessageDigest().digest();
+        } catch(IOException ioe) {
+            logger.log(Level.INFO, "Unable to read {0} response: {1}", new Object[]{getResourceName(), ioe.getMessage()});
+            recordServerFailure();
+            parsed = null;
+        } finally {
+            ResponseStreams.close(body);
+        }
+        recordParseTime(System.nanoTime() - start);
+        
+        if(parsed != null && baselineList != null && Arrays.equals(digest, baselineDigest)) {
+            digestMatchCount.incrementAndGet();
+            responseUnchanged = true;
+            return baselineList;
+        }
+        return accept(parsed, digest);
+    }
+    
+    //remembers the digest of a response that parsed, or forgets the validators of one that did not
+    private ArrayList<Status> accept(ArrayList<Status> parsed, byte[] digest) {
+        baselineDigest = parsed != null ? digest : null;
+        if(parsed == null) {
+            //don't let the server tell us a response we couldn't use is still current
+            entityTag = null;
+            lastModified = null;
+        }
+        return parsed;
+    }
+    
+    /**
+     * Performs a GET, sending the validators from the last parsed response.
+     * The validators of a 200 response are remembered for the next request; 
+     * a 304 response is recorded so that queryGFStatus() reuses the previous 
+     * status list.  The caller should not read the entity of a 304.
+     * 
+     * @param request The request, with its accept header already set
+     * @return The response
+     */
+    protected ClientResponse conditionalGet(WebResource.Builder request) {
+        if(baselineList != null) {
+            if(entityTag != null)
+                request = request.header("If-None-Match", entityTag);
+            if(lastModified != null)
+                request = request.header("If-Modified-Since", lastModified);
+        }
+        
+        ClientResponse response = request.get(ClientResponse.class);
+        if(response.getStatus() == ClientResponse.Status.NOT_MODIFIED.getStatusCode()) {
+            notModified = true;
+            response.close();
+        }
+        else if(response.getStatus() == ClientResponse.Status.OK.getStatusCode()) {
+            entityTag = response.getHeaders().getFirst("ETag");
+            lastModified = response.getHeaders().getFirst("Last-Modified");
+        }
+        else if(response.getStatus() >= 500) {
+            recordServerFailure();
+        }
+        return response;
+    }
+    
+    /**
+     * Marks the current cycle as failed by the server itself: it could not be
+     * reached, timed out or answered with a server error.  Only such cycles
+     * count against the domain's CircuitBreaker; a poll that failed because
+     * of its response, e.g. a 404 or one that would not parse, does not.
+     */
+    protected void recordServerFailure() {
+        this.serverFailure = true;
+    }
+    
+    public boolean isServerFailure() {
+        return this.serverFailure;
+    }
+    
+    /**
+     * Retires the monitor: poll cycles after this do nothing.  The scheduler
+     * running it should unregister it as well.
+     */
+    public void close() {
+        this.closed = true;
+    }
+    
+    public boolean isClosed() {
+        return this.closed;
+    }
+    
+    /**
+     * 
+     * @return The number of responses that were parsed
+     */
+    public long getParseCount() {
+        return parseCount.get();
+    }
+    
+    /**
+     * 
+     * @return The total time spent parsing this monitor's responses, in 
+     *         nanoseconds.  Streamed responses are read while they are parsed,
+     *         so for them this includes the read.
+     */
+    public long getParseNanos() {
+        return parseNanos.get();
+    }
+    
+    /**
+     * Names the GF resource this monitor polls, for the shared ParseMetrics
+     * 
+     * @return The resource name, e.g. "list-clusters"
+     */
+    protected String getResourceName() {
+        return getClass().getSimpleName();
+    }
+    
+    //called with the cycle lock held
+    private void recordParseTime(long nanos) {
+        parseNanos.addAndGet(nanos);
+        if(parseMetrics == null)
+            parseMetrics = ParseMetrics.forResource(getResourceName());
+        parseMetrics.record(nanos);
+        if(logger.isLoggable(Level.FINE))
+            logger.log(Level.FINE, "Parsed {0} in {1} ms", new Object[]{getResourceName(), nanos / 1e6});
+    }
+    
+    /**
+     * 
+     * @return The number of polls answered 304 Not Modified, which were not downloaded or parsed
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+    
+    /**
+     * 
+     * @return The number of responses that matched the previous response.  
+     *         They were not parsed, unless responses are streamed.
+     */
+    public long getDigestMatchCount() {
+        return digestMatchCount.get();
+    }
+    
+    /**
+     * 
+     * @return The total number of polls that skipped parsing
+     */
+    public long getSkippedParseCount() {
+        return notModifiedCount.get() + digestMatchCount.get();
+    }
+    
+    /**
+     * Send the latest status to all observers
+     * 
+     * @param snapshot 
+     */
+    public void notifyObservers(StatusSnapshot snapshot) {
+        publisher.notifyObservers(snapshot);
+    }
+    
+    /**
+     * 
+     * @param obs The observer to add
+     */
+    public void addObserver(Observer obs) {
+        publisher.addObserver(obs);
+    }
+    
+    /**
+     * 
+     * @param obs The observer to remove 
+     */
+    public void removeObserver(Observer obs) {
+        publisher.removeObserver(obs);
+    }
+    
+    /**
+     * 
+     * @param client The Jersey rest client
+     */
+    public void setClient(Client client) {
+        this.restClient = client;
+    } 
+    
+    /**
+     * 
+     * @param responseArchive The writer raw responses are handed to, or null to not archive them
+     */
+    public void setResponseArchive(ResponseArchiveWriter responseArchive) {
+        this.responseArchive = responseArchive;
+    }
+    
+    /**
+     * 
+     * @param domainName The GF domain the monitor polls, when more than one is 
+     *                   monitored.  It prefixes the archive file names.
+     */
+    public void setDomainName(String domainName) {
+        this.domainName = domainName;
+    }
+    
+    public String getDomainName() {
+        return this.domainName;
+    }
+    
+    /**
+     * 
+     * @param streamResponses true to parse each response as it is read 
+     *                        instead of reading it into memory first
+     */
+    public void setStreamResponses(boolean streamResponses) {
+        this.streamResponses = streamResponses;
+    }
+    
+    public boolean isStreamResponses() {
+        return this.streamResponses;
+    }
+    
+    /**
+     * Hands a raw response to the archive writer, if there is one.  Never 
+     * blocks the poll.
+     * 
+     * @param fileName The archive file name
+     * @param response The response text
+     */
+    protected void archiveResponse(String fileName, String response) {
+        if(responseArchive != null)
+            responseArchive.archive(domainName != null ? domainName + "-" + fileName : fileName, response);
+    }
+    
+    /**
+     * Copies a streamed response to the archive writer as it is read, if 
+     * there is one and it samples this response.  Never blocks the poll.
+     * 
+     * @param fileName The archive file name
+     * @param response The response stream
+     * @return The stream to parse the response from
+     */
+    protected InputStream archiveStream(String fileName, InputStream response) {
+        ResponseArchiveWriter archive = responseArchive;
+        if(archive == null)
+            return response;
+        return ResponseStreams.tee(response, archive.openEntry(domainName != null ? domainName + "-" + fileName : fileName));
+    }
+    
+    /**
+     * 
+     * @param milliseconds The rate at which the GF server will be queried
+     */
+    public void setPollingRate(long milliseconds) {
+        this.pollingRate = milliseconds;    
+    }
+    
+    /**
+     * 
+     * @return The rate at which the GF server will be queried
+     */
+    public long getPollingRate() {
+        AdaptivePollingRate adaptive = adaptivePollingRate;
+        return adaptive != null ? adaptive.getRate() : this.pollingRate;
+    }
+    
+    /**
+     * 
+     * @param adaptivePollingRate Adjusts the polling rate to the changes seen 
+     *                            and the DAS response time, in place of the 
+     *                            fixed rate, or null to use the fixed rate
+     */
+    public void setAdaptivePollingRate(AdaptivePollingRate adaptivePollingRate) {
+        this.adaptivePollingRate = adaptivePollingRate;
+    }
+    
+    public AdaptivePollingRate getAdaptivePollingRate() {
+        return this.adaptivePollingRate;
+    }
+    
+    /**
+     * Allows observers to query the current status
+     * 
+     * @return The latest status retrieved from the GF server, read-only, or null if the poll failed
+     */
+    public List<Status> getStatusList() {
+        StatusSnapshot latest = this.snapshot;
+        return latest == null ? null : latest.getStatusList();
+    }
+    
+    /**
+     * 
+     * @return The snapshot published by the latest poll, or null if it failed
+     */
+    public StatusSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+/**
+ * A polling rate that follows what its monitor sees.  While the status is
+ * changing, or a cluster is part way through starting or stopping 
+ * (PARTIALLY_RUNNING), the monitor polls at the minimum rate so the rest of
+ * the change is reported quickly.  Each poll that finds nothing new 
+ * lengthens the interval by half, up to the maximum, so a stable domain 
+ * costs the DAS little.  A cluster can also stay PARTIALLY_RUNNING for good,
+ * e.g. with an instance that is down, so a transition only holds the minimum
+ * rate for TRANSITION_POLLS polls after the last real change.
+ * 
+ * The DAS is also protected from the monitor: the interval is never shorter 
+ * than LATENCY_MULTIPLE times its recent response time, and a failed poll
+ * doubles the interval, so a DAS that is slowing down or failing is polled 
+ * less rather than more.
+ * 
+ * Each monitor needs its own AdaptivePollingRate.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class AdaptivePollingRate {
+    //growth of the interval per poll that finds nothing new
+    private static final double BACKOFF = 1.5;
+    //the interval is at least this many times the average response time
+    private static final int LATENCY_MULTIPLE = 10;
+    //weight of the latest response time in the average
+    private static final double LATENCY_WEIGHT = 0.2;
+    //polls at the minimum rate while a cluster is PARTIALLY_RUNNING and nothing changes
+    private static final int TRANSITION_POLLS = 30;
+    private final long minRate;
+    private final long maxRate;
+    private volatile long rate;
+    //guarded by this
+    private double averageResponseMillis = -1;
+    private int transitionPolls = 0;
+    
+    /**
+     * 
+     * @param initialRate The rate to poll at until the first poll is recorded
+     * @param minRate The shortest interval between polls, in milliseconds
+     * @param maxRate The longest interval between polls, in milliseconds
+     */
+    public AdaptivePollingRate(long initialRate, long minRate, long maxRate) {
+        this.minRate = Math.max(1, minRate);
+        this.maxRate = Math.max(this.minRate, maxRate);
+        this.rate = clamp(initialRate);
+    }
+    
+    /**
+     * Adjusts the rate after a poll
+     * 
+     * @param delta The changes the poll found, or null if it failed
+     * @param responseMillis How long the poll took
+     */
+    public synchronized void recordPoll(StatusDelta delta, long responseMillis) {
+        averageResponseMillis = averageResponseMillis < 0 ? responseMillis 
+                : (1.0 - LATENCY_WEIGHT) * averageResponseMillis + LATENCY_WEIGHT * responseMillis;
+        long next;
+        if(delta == null)
+            next = rate * 2;
+        else if(isActive(delta))
+            next = changed();
+        else if(isInTransition(delta) && ++transitionPolls <= TRANSITION_POLLS)
+            next = minRate;
+        else
+            next = (long)(rate * BACKOFF);
+        rate = clamp(next);
+    }
+    
+    /**
+     * Returns to the minimum rate, for a change the monitor found outside
+     * the delta given to recordPoll(), e.g. in the instances of a cluster
+     */
+    public synchronized void recordChange() {
+        rate = clamp(changed());
+    }
+    
+    //called with the lock held
+    private long changed() {
+        transitionPolls = 0;
+        return minRate;
+    }
+    
+    /**
+     * 
+     * @return The interval to wait before the next poll, in milliseconds
+     */
+    public long getRate() {
+        return rate;
+    }
+    
+    public long getMinRate() {
+        return minRate;
+    }
+    
+    public long getMaxRate() {
+        return maxRate;
+    }
+    
+    /**
+     * 
+     * @return The weighted average poll time, in milliseconds, or -1 before the first poll
+     */
+    public synchronized double getAverageResponseMillis() {
+        return averageResponseMillis;
+    }
+    
+    public String toString() {
+        return "AdaptivePollingRate[" + rate + " ms, " + minRate + "-" + maxRate + " ms]";
+    }
+    
+    /**
+     * 
+     * @param delta The changes from a poll
+     * @return true if anything was added, removed or changed state
+     */
+    public static boolean isActive(StatusDelta delta) {
+        return delta.hasStateChanges();
+    }
+    
+    private static boolean isInTransition(StatusDelta delta) {
+        for(Status status : delta.getStatusList()) {
+            if(status.getState() == StatusState.PARTIALLY_RUNNING)
+                return true;
+        }
+        return false;
+    }
+    
+    //called with the lock held, or from the constructor
+    private long clamp(long next) {
+        long floor = (long)(averageResponseMillis * LATENCY_MULTIPLE);
+        return Math.min(maxRate, Math.max(minRate, Math.max(next, floor)));
+    }
+}
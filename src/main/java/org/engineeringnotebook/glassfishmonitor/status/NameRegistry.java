@@ -0,0 +1,153 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import org.engineeringnotebook.glassfishmonitor.util.ObjectPool;
+
+/**
+ * Gives every cluster and instance name a small integer id and a single
+ * shared String.  The same few names come back in every poll; once a name
+ * is registered, parsers reuse its String instead of keeping a new copy, and
+ * parsers that expose their text buffer can look it up without creating a
+ * String at all.
+ *
+ * A registry belongs to the parser state of one monitor, e.g. its
+ * InstanceColumns, and ids mean nothing outside it; statuses hold the names
+ * themselves.  Ids are never reused, but a registry only grows with the
+ * names its monitor has seen and goes away when the monitor is retired, so
+ * the names of deleted clusters and instances are not kept for the life of
+ * the process.  Lookups do not lock; registering a new name does.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public final class NameRegistry {
+    private final ConcurrentHashMap<Object, Integer> ids = new ConcurrentHashMap<Object, Integer>();
+    private final ObjectPool<CharKey> probes = new ObjectPool<CharKey>(16) {
+        protected CharKey create() {
+            return new CharKey();
+        }
+    };
+    private volatile String[] names = new String[16];
+    private int count = 0;
+
+    /**
+     *
+     * @param name A cluster or instance name
+     * @return The name's id, registering it if it is new
+     */
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id.intValue() : register(name);
+    }
+
+    /**
+     * Looks the name up in a parser's text buffer.  Creates a String only the
+     * first time the name is seen.
+     *
+     * @param buffer Holds the name
+     * @param offset The start of the name in the buffer
+     * @param length The length of the name
+     * @return The name's id, registering it if it is new
+     */
+    public int id(char[] buffer, int offset, int length) {
+        CharKey probe = probes.acquire();
+        probe.set(buffer, offset, length);
+        Integer id = ids.get(probe);
+        probe.set(null, 0, 0);
+        probes.release(probe);
+        return id != null ? id.intValue() : register(new String(buffer, offset, length));
+    }
+
+    /**
+     *
+     * @param name A cluster or instance name, or null
+     * @return The registry's copy of the name, registering it if it is new
+     */
+    public String intern(String name) {
+        return name == null ? null : name(id(name));
+    }
+
+    /**
+     *
+     * @param id An id returned by this registry
+     * @return The name
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     *
+     * @return The number of names registered
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    private synchronized int register(String name) {
+        Integer id = ids.get(name);
+        if(id != null)
+            return id.intValue();
+
+        String[] current = names;
+        if(count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+            names = current;
+        }
+        current[count] = name;
+        //the name is stored before its id is visible, so name(id) always finds it
+        ids.put(name, count);
+        return count++;
+    }
+
+    /**
+     * A reusable view of characters in a parser's buffer that the map treats
+     * like the String with the same characters
+     */
+    private static final class CharKey {
+        private char[] buffer;
+        private int offset;
+        private int length;
+
+        void set(char[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int hashCode() {
+            int h = 0;
+            for(int i = 0; i < length; i++)
+                h = 31 * h + buffer[offset + i];
+            return h;
+        }
+
+        public boolean equals(Object obj) {
+            if(!(obj instanceof String))
+                return false;
+            String name = (String)obj;
+            if(name.length() != length)
+                return false;
+            for(int i = 0; i < length; i++) {
+                if(name.charAt(i) != buffer[offset + i])
+                    return false;
+            }
+            return true;
+        }
+    }
+}
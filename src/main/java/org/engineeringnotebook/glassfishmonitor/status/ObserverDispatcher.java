@@ -0,0 +1,143 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.engineeringnotebook.glassfishmonitor.Observer;
+
+/**
+ * Delivers status to observers off the polling threads.  Each observer 
+ * registered through queue() gets its own bounded queue; a small pool of 
+ * delivery threads, shared by every queue, calls the observers.  A slow 
+ * observer therefore only falls behind itself, and never delays a poll 
+ * (unless its policy is BLOCK, which delays it by at most
+ * QueuedObserver.MAX_BLOCK_MILLIS).
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class ObserverDispatcher {
+    private static final Logger logger = Logger.getLogger(ObserverDispatcher.class.getName());
+    private final ExecutorService executor;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final CopyOnWriteArrayList<QueuedObserver> queues = new CopyOnWriteArrayList<QueuedObserver>();
+    
+    /**
+     * 
+     * @param threads The number of delivery threads
+     * @param capacity The default queue size of each observer
+     * @param policy The default overflow policy
+     */
+    public ObserverDispatcher(int threads, int capacity, OverflowPolicy policy) {
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "observer-dispatch-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+    
+    /**
+     * Register the returned observer with the Subject in place of the observer
+     * 
+     * @param observer The observer to deliver to
+     * @return A queue in front of the observer, with the default size and policy
+     */
+    public QueuedObserver queue(Observer observer) {
+        return queue(observer, capacity, policy);
+    }
+    
+    /**
+     * 
+     * @param observer The observer to deliver to
+     * @param capacity The number of statuses that may wait for the observer
+     * @param policy What to do when the queue is full
+     * @return A queue in front of the observer, delivered on the shared threads
+     */
+    public QueuedObserver queue(Observer observer, int capacity, OverflowPolicy policy) {
+        QueuedObserver queued = QueuedObserver.create(observer, capacity, policy, executor);
+        queues.add(queued);
+        return queued;
+    }
+    
+    /**
+     * For an observer that only cares about the current status: it is given
+     * the newest one whenever it is free, and never a backlog of stale ones.
+     * 
+     * @param observer The observer to deliver to
+     * @return A single latest-value slot in front of the observer
+     */
+    public QueuedObserver latest(Observer observer) {
+        return queue(observer, 1, OverflowPolicy.LATEST);
+    }
+    
+    /**
+     * Closes a queue that is no longer needed, e.g. when its Subject is
+     * retired, and forgets it
+     * 
+     * @param queued A queue created by this dispatcher
+     */
+    public void release(QueuedObserver queued) {
+        queued.close();
+        queues.remove(queued);
+    }
+    
+    /**
+     * 
+     * @return Every queue created by this dispatcher, for their metrics
+     */
+    public List<QueuedObserver> getQueuedObservers() {
+        return queues;
+    }
+    
+    /**
+     * Logs each queue's counts and lag
+     * 
+     * @param level The level to log at
+     */
+    public void logMetrics(Level level) {
+        if(!logger.isLoggable(level))
+            return;
+        for(QueuedObserver queued : queues)
+            logger.log(level, "Observer queue: {0}", new Object[]{queued});
+    }
+    
+    /**
+     * Closes every queue and stops the delivery threads
+     */
+    public void shutdown() {
+        for(QueuedObserver queued : queues)
+            queued.close();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
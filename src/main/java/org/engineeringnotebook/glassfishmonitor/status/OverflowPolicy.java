@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+/**
+ * What a QueuedObserver does with a new status when its observer has not 
+ * caught up with the ones already queued.
+ * 
+ * DROP_OLDEST discards the oldest queued status to make room.  LATEST keeps
+ * at most one status waiting, in a slot that each newer one replaces without
+ * taking a lock, so memory stays flat however far the observer falls behind.
+ * BLOCK makes the polling thread wait for room, slowing polling down to
+ * the observer's pace.  It waits while holding its monitor's cycle lock, so
+ * anything else waiting on that monitor (e.g. queryGFStatus()) waits too;
+ * after QueuedObserver.MAX_BLOCK_MILLIS it discards the oldest status, as
+ * DROP_OLDEST would.  A DeltaObserver never loses a change: after a status
+ * is discarded, the next delta it receives is computed from the last status
+ * it was given.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public enum OverflowPolicy {
+    DROP_OLDEST,
+    LATEST,
+    BLOCK;
+    
+    /**
+     * 
+     * @param value The config value, e.g. "dropoldest", "latest" or "block"
+     * @return The matching policy, or DROP_OLDEST if the value is not recognised
+     */
+    public static OverflowPolicy fromString(String value) {
+        if(value != null) {
+            String v = value.trim().replace("_", "").replace("-", "");
+            if(v.equalsIgnoreCase("latest"))
+                return LATEST;
+            if(v.equalsIgnoreCase("block"))
+                return BLOCK;
+        }
+        return DROP_OLDEST;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parse time for one kind of GF resource (e.g. "list-instances"), summed
+ * over every monitor that parses it.  Monitors record into the shared
+ * instance for their resource; each monitor also keeps its own total.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class ParseMetrics {
+    private static final ConcurrentHashMap<String, ParseMetrics> resources = new ConcurrentHashMap<String, ParseMetrics>();
+    private final String resource;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    ParseMetrics(String resource) {
+        this.resource = resource;
+    }
+    
+    /**
+     * 
+     * @param resource The resource name, e.g. "list-clusters"
+     * @return The shared metrics for the resource
+     */
+    public static ParseMetrics forResource(String resource) {
+        ParseMetrics metrics = resources.get(resource);
+        if(metrics == null) {
+            ParseMetrics created = new ParseMetrics(resource);
+            metrics = resources.putIfAbsent(resource, created);
+            if(metrics == null)
+                metrics = created;
+        }
+        return metrics;
+    }
+    
+    /**
+     * 
+     * @return The metrics of every resource parsed so far, by name
+     */
+    public static Map<String, ParseMetrics> getAll() {
+        return new TreeMap<String, ParseMetrics>(resources);
+    }
+    
+    /**
+     * 
+     * @param nanos The time one parse took
+     */
+    public void record(long nanos) {
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max;
+        while(nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos))
+            ;
+    }
+    
+    public String getResource() {
+        return resource;
+    }
+    
+    public long getCount() {
+        return count.get();
+    }
+    
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+    
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+    
+    /**
+     * 
+     * @return The mean parse time in milliseconds, or 0 if nothing was parsed
+     */
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0.0 : totalNanos.get() / 1e6 / n;
+    }
+    
+    public String toString() {
+        return String.format("%s: %d parses, mean %.3f ms, max %.3f ms", resource, getCount(), getMeanMillis(), getMaxNanos() / 1e6);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+/**
+ * Selects which StatusHandler implementation the monitors use to parse the 
+ * GF server's responses.
+ * 
+ * DOM builds a W3C document for each response.  STAX streams the response 
+ * straight into status objects in a single pass.  JSON asks the server for 
+ * its application/json representation, which is smaller on the wire, and 
+ * streams that instead.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public enum ParserType {
+    DOM("application/xml"),
+    STAX("application/xml"),
+    JSON("application/json");
+    
+    private final String mediaType;
+    
+    private ParserType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+    
+    /**
+     * 
+     * @return The media type to request from the GF server for this parser
+     */
+    public String getMediaType() {
+        return this.mediaType;
+    }
+    
+    /**
+     * 
+     * @param value The config value, e.g. "dom" or "stax"
+     * @return The matching parser type, or DOM if the value is not recognised
+     */
+    public static ParserType fromString(String value) {
+        if(value != null) {
+            for(ParserType type : values()) {
+                if(type.name().equalsIgnoreCase(value.trim()))
+                    return type;
+            }
+        }
+        return DOM;
+    }
+}
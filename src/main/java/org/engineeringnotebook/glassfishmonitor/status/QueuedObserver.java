@@ -0,0 +1,368 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.engineeringnotebook.glassfishmonitor.DeltaObserver;
+import org.engineeringnotebook.glassfishmonitor.Observer;
+
+/**
+ * Stands in for an Observer on a Subject, so that the polling thread only
+ * queues each status instead of waiting for the observer to handle it.  The
+ * observer is called from the delivery executor, one status at a time and in
+ * the order they were published.  Many QueuedObservers can share one
+ * executor; each only holds a thread while it has statuses to deliver.
+ *
+ * The queue is bounded and the OverflowPolicy decides what happens when it
+ * is full.  Under LATEST there is no queue: the observer has a single slot
+ * holding the newest status, which the polling thread swaps in without
+ * locking, and the observer is only woken when the slot has something newer
+ * than what it was last given.  However far behind it falls, it holds on to
+ * at most one undelivered status.  The counts and the lag (the time from
+ * publish to delivery) show how far behind the observer is running.
+ *
+ * As with a synchronous Subject, an observer that throws is not called again.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class QueuedObserver implements Observer {
+    private static final Logger logger = Logger.getLogger(QueuedObserver.class.getName());
+    //statuses delivered before the task gives its thread to another observer
+    private static final int MAX_BATCH = 32;
+    /**
+     * The longest a BLOCK queue holds up the polling thread (and with it the
+     * monitor's cycle lock) before it makes room by discarding
+     */
+    public static final long MAX_BLOCK_MILLIS = 1000;
+    private final Observer observer;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Executor executor;
+    private final Runnable drainTask = new Runnable() {
+        public void run() {
+            drain();
+        }
+    };
+    //guarded by this
+    private final ArrayDeque<Event> queue = new ArrayDeque<Event>();
+    private boolean draining = false;
+    private boolean discarded = false;
+    private volatile boolean closed = false;
+    //under LATEST, in place of the queue and the lock
+    private final AtomicReference<Event> latest;
+    private final AtomicBoolean scheduled;
+    //only touched by the drain task
+    private StatusSnapshot lastDelivered;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private volatile long lastLagNanos;
+    
+    /**
+     * 
+     * @param observer The observer to deliver to
+     * @param capacity The number of statuses that may wait; LATEST always keeps at most one
+     * @param policy What to do when the queue is full
+     * @param executor Runs the deliveries
+     * @return A QueuedObserver that is also a DeltaObserver if the observer is one
+     */
+    public static QueuedObserver create(Observer observer, int capacity, OverflowPolicy policy, Executor executor) {
+        if(observer instanceof DeltaObserver)
+            return new QueuedDeltaObserver((DeltaObserver)observer, capacity, policy, executor);
+        return new QueuedObserver(observer, capacity, policy, executor);
+    }
+    
+    private QueuedObserver(Observer observer, int capacity, OverflowPolicy policy, Executor executor) {
+        this.observer = observer;
+        this.capacity = policy == OverflowPolicy.LATEST ? 1 : Math.max(1, capacity);
+        this.policy = policy;
+        this.executor = executor;
+        this.latest = policy == OverflowPolicy.LATEST ? new AtomicReference<Event>() : null;
+        this.scheduled = policy == OverflowPolicy.LATEST ? new AtomicBoolean() : null;
+    }
+    
+    /**
+     * Queues the snapshot for the observer
+     * 
+     * @param snapshot The latest status, or null if the poll failed
+     */
+    public void update(StatusSnapshot snapshot) {
+        enqueue(new Event(snapshot, null));
+    }
+    
+    public void setStatusWaitTime(long milliseconds) {
+        observer.setStatusWaitTime(milliseconds);
+    }
+    
+    /**
+     * Stops delivering and discards whatever is queued.  A polling thread
+     * blocked on a full queue is released.
+     */
+    public synchronized void close() {
+        closed = true;
+        queue.clear();
+        if(latest != null)
+            latest.set(null);
+        notifyAll();
+    }
+    
+    /**
+     * 
+     * @return The observer the statuses are delivered to
+     */
+    public Observer getObserver() {
+        return this.observer;
+    }
+    
+    /**
+     * 
+     * @return The number of statuses waiting to be delivered
+     */
+    public int getQueueSize() {
+        if(latest != null)
+            return latest.get() == null ? 0 : 1;
+        synchronized(this) {
+            return queue.size();
+        }
+    }
+    
+    /**
+     * 
+     * @return The number of statuses delivered
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+    
+    /**
+     * 
+     * @return The number of statuses discarded from a full DROP_OLDEST or BLOCK queue
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    /**
+     * 
+     * @return The number of statuses replaced by a newer one under LATEST
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+    
+    /**
+     * 
+     * @return The time the last status delivered spent queued, in milliseconds
+     */
+    public long getLastLagMillis() {
+        return lastLagNanos / 1000000;
+    }
+    
+    /**
+     * 
+     * @return The longest time a status spent queued, in milliseconds
+     */
+    public long getMaxLagMillis() {
+        return maxLagNanos.get() / 1000000;
+    }
+    
+    public String toString() {
+        return observer.getClass().getSimpleName() + " queued=" + getQueueSize() + " delivered=" + delivered.get()
+                + " dropped=" + dropped.get() + " coalesced=" + coalesced.get()
+                + " lagMs=" + getLastLagMillis() + " maxLagMs=" + getMaxLagMillis();
+    }
+    
+    void enqueue(Event event) {
+        if(latest != null) {
+            offerLatest(event);
+            return;
+        }
+        synchronized(this) {
+            if(closed)
+                return;
+            if(queue.size() >= capacity) {
+                if(policy == OverflowPolicy.BLOCK) {
+                    awaitRoom();
+                    if(closed)
+                        return;
+                }
+                else {
+                    int discard = queue.size() - capacity + 1;
+                    dropped.addAndGet(discard);
+                    for(int i = 0; i < discard; i++)
+                        queue.pollFirst();
+                    discarded = true;
+                }
+            }
+            queue.addLast(event);
+            if(draining)
+                return;
+            draining = true;
+        }
+        schedule();
+    }
+    
+    private void offerLatest(Event event) {
+        if(closed)
+            return;
+        Event replaced;
+        do {
+            replaced = latest.get();
+            //the replaced status may have held changes the observer has not seen
+            event.rebase = replaced != null;
+        } while(!latest.compareAndSet(replaced, event));
+        if(replaced != null)
+            coalesced.incrementAndGet();
+        if(scheduled.compareAndSet(false, true))
+            schedule();
+    }
+    
+    //called with the lock held
+    private void awaitRoom() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BLOCK_MILLIS);
+        try {
+            while(queue.size() >= capacity && !closed) {
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0)
+                    break;
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if(queue.size() >= capacity && !closed) {
+            //give up waiting and make room instead
+            discarded = true;
+            dropped.incrementAndGet();
+            queue.pollFirst();
+        }
+    }
+    
+    private void schedule() {
+        try {
+            executor.execute(drainTask);
+        } catch(RejectedExecutionException ree) {
+            logger.log(Level.INFO, "Delivery executor rejected {0}, discarding its queue", new Object[]{observer});
+            close();
+            if(scheduled != null)
+                scheduled.set(false);
+            synchronized(this) {
+                draining = false;
+            }
+        }
+    }
+    
+    private void drain() {
+        if(latest != null) {
+            drainLatest();
+            return;
+        }
+        for(int n = 0; n < MAX_BATCH; n++) {
+            Event event;
+            boolean rebase;
+            synchronized(this) {
+                event = queue.pollFirst();
+                if(event == null) {
+                    draining = false;
+                    return;
+                }
+                rebase = discarded;
+                discarded = false;
+                notifyAll();
+            }
+            deliver(event, rebase);
+        }
+        //let other observers on the executor have a turn
+        schedule();
+    }
+    
+    private void drainLatest() {
+        for(int n = 0; n < MAX_BATCH; n++) {
+            Event event = latest.getAndSet(null);
+            if(event == null) {
+                scheduled.set(false);
+                //a status set after the slot was found empty would otherwise wait for the next one
+                if(latest.get() == null || !scheduled.compareAndSet(false, true))
+                    return;
+                continue;
+            }
+            if(!closed)
+                deliver(event, event.rebase);
+        }
+        schedule();
+    }
+    
+    private void deliver(Event event, boolean rebase) {
+        long lag = System.nanoTime() - event.queuedNanos;
+        lastLagNanos = lag;
+        long max;
+        while(lag > (max = maxLagNanos.get()) && !maxLagNanos.compareAndSet(max, lag))
+            ;
+        
+        try {
+            if(event.delta != null) {
+                //a discarded status may have held changes the observer has not seen
+                StatusDelta delta = rebase ? StatusDelta.compute(lastDelivered == null ? null : lastDelivered.getStatusList(), event.snapshot) : event.delta;
+                ((DeltaObserver)observer).updateDelta(delta);
+                lastDelivered = event.snapshot;
+            }
+            else {
+                observer.update(event.snapshot);
+            }
+            delivered.incrementAndGet();
+        }
+        catch (RuntimeException e) {
+            logger.log(Level.INFO, "Unexpected exception in listener  {0}", new Object[]{e});
+            close();
+        }
+    }
+    
+    static final class Event {
+        final StatusSnapshot snapshot;
+        final StatusDelta delta;
+        final long queuedNanos = System.nanoTime();
+        //set before the event is published to the LATEST slot
+        boolean rebase;
+        
+        Event(StatusSnapshot snapshot, StatusDelta delta) {
+            this.snapshot = snapshot;
+            this.delta = delta;
+        }
+    }
+    
+    /**
+     * Queues deltas as well, for a DeltaObserver
+     */
+    private static final class QueuedDeltaObserver extends QueuedObserver implements DeltaObserver {
+        
+        QueuedDeltaObserver(DeltaObserver observer, int capacity, OverflowPolicy policy, Executor executor) {
+            super(observer, capacity, policy, executor);
+        }
+        
+        public void updateDelta(StatusDelta delta) {
+            enqueue(new Event(delta.getSnapshot(), delta));
+        }
+    }
+}
@@ -19,8 +19,26 @@ package org.engineeringnotebook.glassfishmonitor.status;
  *
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
  * 
- * All status classes must implement the Status interface.
+ * All status classes must implement the Status interface.  A status is
+ * published to observers on other threads, so it must not change once it
+ * has been created.
  */
 public interface Status {
     public String getStatusString();
+    
+    //The name that identifies this cluster or instance between polls
+    public String getName();
+    
+    //The state reported by the GF server, e.g. RUNNING
+    public StatusState getState();
+    
+    /**
+     * Appends the status as space-separated key=value pairs, e.g.
+     * "instance=in1 state=RUNNING uptime=3600125", without creating any
+     * intermediate Strings
+     * 
+     * @param line The line being built
+     * @return The same builder
+     */
+    public StringBuilder appendTo(StringBuilder line);
 }
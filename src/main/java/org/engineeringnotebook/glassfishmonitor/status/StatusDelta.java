@@ -0,0 +1,165 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The difference between two successive status lists from a monitor.
+ * 
+ * Statuses are matched by name.  A status whose state differs from the 
+ * previous poll is a state change; one whose state is the same but which 
+ * otherwise differs (e.g. only the instance uptime moved) is reported 
+ * separately as an uptime-only change, so consumers can ignore that noise.
+ * 
+ * Like the snapshot it leads to, a delta is read-only and shared by every
+ * DeltaObserver.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class StatusDelta {
+    private static final List<Status> NONE = Collections.emptyList();
+    private final List<Status> added;
+    private final List<Status> removed;
+    private final List<Status> stateChanged;
+    private final List<Status> uptimeChanged;
+    private final StatusSnapshot snapshot;
+    
+    private StatusDelta(List<Status> added, List<Status> removed, List<Status> stateChanged, List<Status> uptimeChanged, StatusSnapshot snapshot) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.stateChanged = Collections.unmodifiableList(stateChanged);
+        this.uptimeChanged = Collections.unmodifiableList(uptimeChanged);
+        this.snapshot = snapshot;
+    }
+    
+    /**
+     * 
+     * @param snapshot The current status, which did not change
+     * @return A delta with no changes
+     */
+    public static StatusDelta unchanged(StatusSnapshot snapshot) {
+        return new StatusDelta(NONE, NONE, NONE, NONE, snapshot);
+    }
+    
+    /**
+     * 
+     * @param previous The status list from the previous poll, or null on the first poll
+     * @param current The status from this poll
+     * @return The changes from previous to current
+     */
+    public static StatusDelta compute(List<Status> previous, StatusSnapshot current) {
+        LinkedHashMap<String, Status> before = new LinkedHashMap<String, Status>();
+        if(previous != null) {
+            for(Status status : previous)
+                before.put(status.getName(), status);
+        }
+        
+        List<Status> added = NONE;
+        List<Status> stateChanged = NONE;
+        List<Status> uptimeChanged = NONE;
+        for(Status status : current.getStatusList()) {
+            Status old = before.remove(status.getName());
+            if(old == null) {
+                added = append(added, status);
+            }
+            else if(old.getState() != status.getState()) {
+                stateChanged = append(stateChanged, status);
+            }
+            else if(!old.equals(status)) {
+                uptimeChanged = append(uptimeChanged, status);
+            }
+        }
+        
+        List<Status> removed = before.isEmpty() ? NONE : new ArrayList<Status>(before.values());
+        return new StatusDelta(added, removed, stateChanged, uptimeChanged, current);
+    }
+    
+    /**
+     * 
+     * @return Statuses that were not in the previous poll
+     */
+    public List<Status> getAdded() {
+        return added;
+    }
+    
+    /**
+     * 
+     * @return Statuses from the previous poll that are no longer reported
+     */
+    public List<Status> getRemoved() {
+        return removed;
+    }
+    
+    /**
+     * 
+     * @return Statuses whose state changed since the previous poll
+     */
+    public List<Status> getStateChanged() {
+        return stateChanged;
+    }
+    
+    /**
+     * 
+     * @return Statuses whose state is unchanged but whose other values (uptime) moved
+     */
+    public List<Status> getUptimeChanged() {
+        return uptimeChanged;
+    }
+    
+    /**
+     * 
+     * @return The complete current status list
+     */
+    public List<Status> getStatusList() {
+        return snapshot.getStatusList();
+    }
+    
+    /**
+     * 
+     * @return The snapshot the changes lead to
+     */
+    public StatusSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    /**
+     * 
+     * @return true if anything was added, removed or changed state
+     */
+    public boolean hasStateChanges() {
+        return !added.isEmpty() || !removed.isEmpty() || !stateChanged.isEmpty();
+    }
+    
+    /**
+     * 
+     * @return true if nothing at all changed, including uptime
+     */
+    public boolean isEmpty() {
+        return !hasStateChanges() && uptimeChanged.isEmpty();
+    }
+    
+    private static List<Status> append(List<Status> list, Status status) {
+        if(list == NONE)
+            list = new ArrayList<Status>();
+        list.add(status);
+        return list;
+    }
+    
+}
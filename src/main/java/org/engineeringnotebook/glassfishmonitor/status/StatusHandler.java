@@ -15,6 +15,7 @@
  */
 package org.engineeringnotebook.glassfishmonitor.status;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 
 /**
@@ -25,8 +26,18 @@ public interface StatusHandler {
 
   /**
    * 
-   * @param xmlData
+   * @param xmlData The response body, in the representation the handler 
+   *                expects (XML, or JSON for the JSON handlers)
    * @return
    */
   public ArrayList<Status> parseXMLData(String xmlData);
+  
+  /**
+   * Parses the response as it is read from the connection, without holding
+   * the whole body in memory.  The caller closes the stream.
+   * 
+   * @param data The response body, in the representation the handler expects
+   * @return The status list, or null if the response could not be parsed
+   */
+  public ArrayList<Status> parseStream(InputStream data);
 }
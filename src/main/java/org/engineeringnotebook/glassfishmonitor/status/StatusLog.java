@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.engineeringnotebook.glassfishmonitor.util.ObjectPool;
+
+/**
+ * Writes status lines to a java.util.logging Logger for the observers.
+ * 
+ * The level is checked before anything is built, and a line is assembled in
+ * a pooled StringBuilder, through Status.appendTo().  The record is logged
+ * without parameters, so handlers do not run it through MessageFormat.  Logging one status costs the message String and the
+ * LogRecord; a status at a disabled level costs nothing.
+ * 
+ * Lines look like "InstanceList Status Listener: instance=in1 state=RUNNING uptime=3600125"
+ * so they can be read back by a script as well as a person.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public final class StatusLog {
+    //a builder that grew past this for an unusual line is not kept
+    private static final int MAX_RETAINED = 1024;
+    private static final ObjectPool<StringBuilder> lines = new ObjectPool<StringBuilder>(16) {
+        protected StringBuilder create() {
+            return new StringBuilder(128);
+        }
+    };
+    
+    private StatusLog() {
+    }
+    
+    /**
+     * 
+     * @param logger The logger to write to
+     * @param level The level of the record
+     * @param prefix Written before the status, e.g. "Cluster Status Listener: "
+     * @param status The status to write
+     */
+    public static void log(Logger logger, Level level, String prefix, Status status) {
+        if(!logger.isLoggable(level))
+            return;
+        logger.log(level, format(prefix, status));
+    }
+    
+    /**
+     * 
+     * @param prefix Written before the status
+     * @param status The status to format
+     * @return The line that log() would write
+     */
+    public static String format(String prefix, Status status) {
+        StringBuilder line = lines.acquire();
+        line.setLength(0);
+        status.appendTo(line.append(prefix));
+        String result = line.toString();
+        if(line.capacity() <= MAX_RETAINED)
+            lines.release(line);
+        return result;
+    }
+}
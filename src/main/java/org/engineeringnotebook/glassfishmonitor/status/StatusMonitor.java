@@ -17,27 +17,39 @@ package org.engineeringnotebook.glassfishmonitor.status;
 
 import com.sun.jersey.api.client.Client;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
- * A separate monitoring thread is instantiated for each aspect of the GF server
- * that we choose to monitor.  Each monitor class must implement the 
- * StatusMonitor interface.
+ * A monitor is created for each aspect of the GF server that we choose to 
+ * monitor.  Each monitor class must implement the StatusMonitor interface.
+ * 
+ * Monitors do not own a thread.  Each call to run() performs a single poll 
+ * cycle, and the PollingScheduler calls it at the monitor's polling rate.
  * 
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
  * 
  */
-public interface StatusMonitor {
+public interface StatusMonitor extends Runnable {
  
     //Set the Jersey rest client reference
     public void setClient(Client client);
     
-    //Set the thread's polling rate to query the GF server for status
+    //Set the monitor's polling rate to query the GF server for status
     public void setPollingRate(long milliseconds);    
     
+    //The rate at which the scheduler should run this monitor
+    public long getPollingRate();
+    
     //Every monitor must retrieve some status from the GF server
     public ArrayList<Status> queryGFStatus();
     
-    //Returns the latest status retrieved by the monitor from the GF server
-    public ArrayList<Status> getStatusList();
+    //Returns the latest status retrieved by the monitor from the GF server, read-only
+    public List<Status> getStatusList();
+    
+    //Returns the snapshot published by the latest poll, or null if it failed
+    public StatusSnapshot getSnapshot();
+    
+    //Whether the latest poll failed because the GF server could not be reached, timed out or returned a 5xx
+    public boolean isServerFailure();
     
 }
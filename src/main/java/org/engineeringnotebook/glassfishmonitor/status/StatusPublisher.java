@@ -0,0 +1,155 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.engineeringnotebook.glassfishmonitor.DeltaObserver;
+import org.engineeringnotebook.glassfishmonitor.Observer;
+import org.engineeringnotebook.glassfishmonitor.Subject;
+
+/**
+ * The Subject side of the (GoF) Observer pattern for one stream of status
+ * snapshots.  Each published snapshot is compared with the previous one; 
+ * plain Observers receive the snapshot and DeltaObservers receive the changes.
+ *
+ * Monitors publish their own status through one of these, and a monitor that
+ * gathers several lists in one poll (e.g. the instances of every cluster) can
+ * keep one per list.  Such a list may be published before anyone observes
+ * it, so that publisher can replay the last snapshot to each new observer.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class StatusPublisher implements Subject {
+    private static final Logger logger = Logger.getLogger(StatusPublisher.class.getName());
+    private final CopyOnWriteArrayList<Observer> observerList = new CopyOnWriteArrayList<Observer>();
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private final boolean replay;
+    private StatusSnapshot previous;
+
+    public StatusPublisher() {
+        this(false);
+    }
+
+    /**
+     *
+     * @param replay true to send the last published snapshot to each observer
+     *               as it is added
+     */
+    public StatusPublisher(boolean replay) {
+        this.replay = replay;
+    }
+
+    /**
+     * Publishes the result of a poll.
+     *
+     * @param snapshot The latest status, or null if the poll failed
+     * @param unchanged true if the caller already knows the status is the same as the previous one
+     * @return The changes since the previous snapshot, or null if the poll failed
+     */
+    public StatusDelta publish(StatusSnapshot snapshot, boolean unchanged) {
+        publishLock.lock();
+        try {
+            StatusDelta delta = null;
+            if(snapshot != null) {
+                delta = unchanged && previous != null ? StatusDelta.unchanged(snapshot) 
+                        : StatusDelta.compute(previous == null ? null : previous.getStatusList(), snapshot);
+                previous = snapshot;
+            }
+            notifyObservers(snapshot, delta);
+            return delta;
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Send the latest status to all observers
+     *
+     * @param snapshot
+     */
+    public void notifyObservers(StatusSnapshot snapshot) {
+        notifyObservers(snapshot, snapshot == null ? null : StatusDelta.compute(null, snapshot));
+    }
+
+    /**
+     * Sends the snapshot to plain observers and the delta to DeltaObservers.
+     * DeltaObservers are not called for a failed poll (null delta).
+     *
+     * @param snapshot The latest status
+     * @param delta The changes since the previous poll, or null if the poll failed
+     */
+    public void notifyObservers(StatusSnapshot snapshot, StatusDelta delta) {
+        for (Iterator<Observer> i=observerList.iterator(); i.hasNext(); )
+            notifyObserver(i.next(), snapshot, delta);
+    }
+
+    private void notifyObserver(Observer o, StatusSnapshot snapshot, StatusDelta delta) {
+        try {
+            if(o instanceof DeltaObserver) {
+                if(delta != null)
+                    ((DeltaObserver)o).updateDelta(delta);
+            }
+            else {
+                o.update(snapshot);
+            }
+        }
+        catch (RuntimeException e) {
+            logger.log(Level.INFO, "Unexpected exception in listener  {0}", new Object[]{e});
+            observerList.remove(o);
+        }
+    }
+
+    /**
+     * With replay, the observer first receives the last published snapshot,
+     * as a delta from nothing, and then every later one.
+     *
+     * @param obs The observer to add
+     */
+    public void addObserver(Observer obs) {
+        if(!replay) {
+            observerList.add(obs);
+            return;
+        }
+        publishLock.lock();
+        try {
+            observerList.add(obs);
+            if(previous != null)
+                notifyObserver(obs, previous, StatusDelta.compute(null, previous));
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     *
+     * @param obs The observer to remove
+     */
+    public void removeObserver(Observer obs) {
+        observerList.remove(obs);
+    }
+
+    /**
+     *
+     * @return The number of registered observers
+     */
+    public int getObserverCount() {
+        return observerList.size();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The status list from one successful poll, as handed to observers and
+ * returned by getSnapshot().  A snapshot never changes after it is created,
+ * so it can be read from any thread and kept without copying.
+ *
+ * The sequence number increases by one with every snapshot a monitor
+ * publishes, so a reader can tell a newer snapshot from an older one and
+ * notice polls it missed.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public final class StatusSnapshot {
+    private final List<Status> statusList;
+    private final long sequence;
+    private final long timestamp;
+
+    /**
+     *
+     * @param statusList The parsed status list.  The snapshot takes ownership
+     *                   of it; it must not be modified afterwards.
+     * @param sequence The monitor's sequence number for this poll
+     * @param timestamp The time the status was captured, in milliseconds since the epoch
+     */
+    public StatusSnapshot(List<Status> statusList, long sequence, long timestamp) {
+        this.statusList = Collections.unmodifiableList(statusList);
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     *
+     * @return The read-only status list
+     */
+    public List<Status> getStatusList() {
+        return statusList;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     *
+     * @return The time the status was captured, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int size() {
+        return statusList.size();
+    }
+
+    public String toString() {
+        return "StatusSnapshot[" + sequence + ", " + statusList.size() + " statuses]";
+    }
+}
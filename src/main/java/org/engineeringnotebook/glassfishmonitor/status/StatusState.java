@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.status;
+
+/**
+ * The states the GF server reports for clusters and instances.  A state the
+ * monitor does not know is reported as UNKNOWN.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public enum StatusState {
+    RUNNING,
+    NOT_RUNNING,
+    PARTIALLY_RUNNING,
+    REQUIRES_RESTART,
+    UNKNOWN;
+
+    private static final StatusState[] STATES = values();
+
+    /**
+     *
+     * @param state The state as reported by the GF server, e.g. "RUNNING"
+     * @return The matching state, or UNKNOWN
+     */
+    public static StatusState fromString(String state) {
+        if(state == null)
+            return UNKNOWN;
+        for(StatusState s : STATES) {
+            if(s.name().equals(state))
+                return s;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Matches the state without creating a String, for parsers that expose
+     * their text buffer.
+     *
+     * @param buffer Holds the state as reported by the GF server
+     * @param offset The start of the state in the buffer
+     * @param length The length of the state
+     * @return The matching state, or UNKNOWN
+     */
+    public static StatusState fromChars(char[] buffer, int offset, int length) {
+        for(StatusState s : STATES) {
+            String name = s.name();
+            if(name.length() != length)
+                continue;
+            int i = 0;
+            while(i < length && name.charAt(i) == buffer[offset + i])
+                i++;
+            if(i == length)
+                return s;
+        }
+        return UNKNOWN;
+    }
+}
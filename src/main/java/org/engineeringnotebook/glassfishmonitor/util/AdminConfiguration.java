@@ -30,9 +30,20 @@ import java.util.logging.Level;
 public class AdminConfiguration {
     private static final Logger logger = Logger.getLogger(AdminConfiguration.class.getName());
     private String restURL;
+    private int indentLevel;
    
     public AdminConfiguration(String baseURL) {
+        this(baseURL, 4);
+    }
+    
+    /**
+     * 
+     * @param baseURL The server URL for the rest calls
+     * @param indentLevel The REST output indent level; -1 turns pretty printing off
+     */
+    public AdminConfiguration(String baseURL, int indentLevel) {
         this.restURL = baseURL + "/management/domain/";
+        this.indentLevel = indentLevel;
     }
     
     public void configureAdminServer(Client client) {
@@ -50,7 +61,7 @@ public class AdminConfiguration {
         
         WebResource webResource = client.resource(restURL + "configs/config/server-config/_set-rest-admin-config");
         MultivaluedMap queryParams = new MultivaluedMapImpl();
-        queryParams.add("indentLevel", "4");
+        queryParams.add("indentLevel", String.valueOf(indentLevel));
         ClientResponse response = webResource.queryParams(queryParams).accept("application/xml").post(ClientResponse.class);
         //ClientResponse response = webResource.accept("application/xml").get(ClientResponse.class);
 
@@ -62,7 +73,7 @@ public class AdminConfiguration {
     }
 
     /**
-     * Need to call this to set up pretty printing of the XML responses
+     * Need to call this to set up (or turn off) pretty printing of the responses
      * 
      * @param client 
      */
@@ -70,7 +81,7 @@ public class AdminConfiguration {
         
         WebResource webResource = client.resource(restURL + "configs/config/server-config/rest-config");
         MultivaluedMap queryParams = new MultivaluedMapImpl();
-        queryParams.add("indentLevel", "4");
+        queryParams.add("indentLevel", String.valueOf(indentLevel));
         ClientResponse response = webResource.queryParams(queryParams).accept("application/xml").post(ClientResponse.class);
         
         int status = response.getStatus();
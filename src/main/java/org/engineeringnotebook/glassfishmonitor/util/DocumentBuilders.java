@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Parses GF server responses into DOM documents with pooled DocumentBuilders.
+ * The factory is looked up and configured once, with secure processing on
+ * and DTDs and external entities refused, rather than for every parse.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class DocumentBuilders {
+    private static final Logger logger = Logger.getLogger(DocumentBuilders.class.getName());
+    private static final DocumentBuilderFactory factory = createFactory();
+    
+    private static final ObjectPool<DocumentBuilder> builders = new ObjectPool<DocumentBuilder>(16) {
+        protected DocumentBuilder create() {
+            try {
+                synchronized(factory) {
+                    DocumentBuilder builder = factory.newDocumentBuilder();
+                    builder.setErrorHandler(errorHandler);
+                    return builder;
+                }
+            } catch(ParserConfigurationException pce) {
+                throw new IllegalStateException(pce);
+            }
+        }
+    };
+    
+    //report problems through the logger instead of the default handler's stderr
+    private static final ErrorHandler errorHandler = new ErrorHandler() {
+        public void warning(SAXParseException e) {
+            logger.log(Level.FINE, "XML warning: {0}", new Object[]{e.getMessage()});
+        }
+        public void error(SAXParseException e) throws SAXException {
+            throw e;
+        }
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw e;
+        }
+    };
+    
+    /**
+     * 
+     * @param xmlData The xml data received from the GF server
+     * @return The document
+     * @throws SAXException If the data is not well-formed XML
+     * @throws IOException 
+     */
+    public static Document parse(String xmlData) throws SAXException, IOException {
+        return parse(new InputSource(new StringReader(xmlData)));
+    }
+    
+    /**
+     * 
+     * @param xmlData The response stream; the parser detects its encoding
+     * @return The document
+     * @throws SAXException If the data is not well-formed XML
+     * @throws IOException If the stream cannot be read
+     */
+    public static Document parse(InputStream xmlData) throws SAXException, IOException {
+        return parse(new InputSource(xmlData));
+    }
+    
+    private static Document parse(InputSource source) throws SAXException, IOException {
+        DocumentBuilder builder = builders.acquire();
+        try {
+            return builder.parse(source);
+        } finally {
+            builder.reset();
+            builder.setErrorHandler(errorHandler);
+            builders.release(builder);
+        }
+    }
+    
+    private static DocumentBuilderFactory createFactory() {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setExpandEntityReferences(false);
+        dbf.setXIncludeAware(false);
+        try {
+            dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch(ParserConfigurationException pce) {
+            logger.log(Level.INFO, "XML parser does not support a secure processing feature: {0}", new Object[]{pce.getMessage()});
+        }
+        return dbf;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.util;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
+import com.sun.jersey.client.apache.ApacheHttpClient;
+import com.sun.jersey.client.apache.ApacheHttpClientHandler;
+import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
+import com.sun.jersey.core.spi.component.ioc.IoCComponentProviderFactory;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+
+/**
+ * Builds the Jersey rest client shared by all monitors on top of a pool of
+ * keep-alive connections, so polls reuse connections to the DAS instead of
+ * opening one per request, and no request can wait forever.
+ *
+ * The connect timeout bounds both opening a connection and waiting for a free
+ * one in the pool; the read timeout bounds each wait for response data.  A
+ * request that times out fails with a ClientHandlerException, which fails
+ * that poll cycle only.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class HttpTransport {
+    private static final Logger logger = Logger.getLogger(HttpTransport.class.getName());
+    private final MultiThreadedHttpConnectionManager connectionManager;
+    private final Client client;
+
+    /**
+     *
+     * @param maxConnections The most connections open at once, across all servers
+     * @param maxConnectionsPerRoute The most connections open at once to a single server
+     * @param connectTimeout Milliseconds allowed to connect, or to wait for a pooled connection
+     * @param readTimeout Milliseconds allowed between bytes of a response
+     * @param gzip true to ask for gzip-encoded responses
+     */
+    public HttpTransport(int maxConnections, int maxConnectionsPerRoute, int connectTimeout, int readTimeout, boolean gzip) {
+        connectionManager = new MultiThreadedHttpConnectionManager();
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setMaxTotalConnections(Math.max(1, maxConnections));
+        params.setDefaultMaxConnectionsPerHost(Math.max(1, maxConnectionsPerRoute));
+        params.setConnectionTimeout(connectTimeout);
+        params.setSoTimeout(readTimeout);
+        params.setStaleCheckingEnabled(true);
+
+        HttpClient httpClient = new HttpClient(connectionManager);
+        httpClient.getParams().setConnectionManagerTimeout(connectTimeout);
+
+        ClientConfig config = new DefaultApacheHttpClientConfig();
+        config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, connectTimeout);
+        config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, readTimeout);
+        client = new ApacheHttpClient(new ApacheHttpClientHandler(httpClient, config), (IoCComponentProviderFactory)null);
+        if(gzip)
+            client.addFilter(new GZIPContentEncodingFilter(false));
+
+        logger.log(Level.INFO, "HTTP transport: max connections = {0}, per route = {1}, connect timeout = {2}, read timeout = {3}, gzip = {4}",
+                new Object[]{maxConnections, maxConnectionsPerRoute, connectTimeout, readTimeout, gzip});
+    }
+
+    /**
+     *
+     * @return The rest client to hand to every monitor with setClient()
+     */
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * Closes every pooled connection.  The client is unusable afterwards.
+     */
+    public void shutdown() {
+        connectionManager.shutdown();
+    }
+
+    /**
+     *
+     * @return The number of open connections to all servers, idle or in use
+     */
+    public int getConnectionsInPool() {
+        return connectionManager.getConnectionsInPool();
+    }
+
+    /**
+     *
+     * @param baseURL A server URL, e.g. http://localhost:4848
+     * @return The number of open connections to that server, idle or in use
+     */
+    public int getConnectionsInPool(String baseURL) {
+        return connectionManager.getConnectionsInPool(route(baseURL));
+    }
+
+    public int getMaxConnections() {
+        return connectionManager.getParams().getMaxTotalConnections();
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return connectionManager.getParams().getDefaultMaxConnectionsPerHost();
+    }
+
+    private static HostConfiguration route(String baseURL) {
+        try {
+            URL url = new URL(baseURL);
+            HostConfiguration route = new HostConfiguration();
+            route.setHost(url.getHost(), url.getPort() < 0 ? url.getDefaultPort() : url.getPort(), url.getProtocol());
+            return route;
+        } catch(MalformedURLException mue) {
+            throw new IllegalArgumentException("Invalid server URL " + baseURL, mue);
+        }
+    }
+}
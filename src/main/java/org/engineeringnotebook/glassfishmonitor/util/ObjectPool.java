@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of objects that are costly to create and not thread safe,
+ * e.g. parsers and scratch buffers.  A thread takes an object for one
+ * operation, such as a parse or a digest, and gives it back in a finally
+ * block, so no two threads ever use it at once.  Unlike a ThreadLocal this
+ * works for virtual threads, which are created for each poll cycle and
+ * would never find their cached copy again, and the pool never holds more
+ * than its capacity, however many threads have used it.  When it is empty a
+ * new object is created.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public abstract class ObjectPool<T> {
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final int capacity;
+    
+    /**
+     * 
+     * @param capacity The most idle objects kept
+     */
+    public ObjectPool(int capacity) {
+        this.capacity = capacity;
+    }
+    
+    /**
+     * 
+     * @return A new object for the pool
+     */
+    protected abstract T create();
+    
+    /**
+     * 
+     * @return An idle object, or a new one if there is none
+     */
+    public T acquire() {
+        T object = idle.poll();
+        if(object == null)
+            return create();
+        idleCount.decrementAndGet();
+        return object;
+    }
+    
+    /**
+     * Gives an object back to the pool, which drops it if it is full
+     * 
+     * @param object An object from acquire(), no longer in use
+     */
+    public void release(T object) {
+        if(idleCount.incrementAndGet() > capacity) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offer(object);
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.engineeringnotebook.glassfishmonitor.util;
 
+import java.util.LinkedHashMap;
+
 /**
  *
  * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
@@ -24,6 +26,37 @@ public class PropertiesMap {
   private long pollingRate;
   private long responseWaitTime;
   private String baseURL;
+  private int pollingThreads;
+  private double pollingJitter;
+  private String executionMode;
+  private String parserType;
+  private int indentLevel;
+  private boolean archiveResponses;
+  private String archiveDirectory;
+  private int archiveQueueSize;
+  private double archiveSampleRate;
+  private long archiveMaxBytes;
+  private long archiveMaxAge;
+  private int archiveMaxFiles;
+  private boolean domainSnapshot;
+  private int maxConnections;
+  private int maxConnectionsPerRoute;
+  private int connectTimeout;
+  private int readTimeout;
+  private boolean gzip;
+  private boolean streamResponses;
+  private int observerThreads;
+  private int observerQueueSize;
+  private String observerOverflow;
+  private LinkedHashMap<String, String> domains = new LinkedHashMap<String, String>();
+  private int maxPollsPerDomain;
+  private boolean adaptivePolling;
+  private long minPollingRate;
+  private long maxPollingRate;
+  private int maxConcurrentRequests;
+  private int circuitFailures;
+  private long circuitBackoff;
+  private long circuitMaxBackoff;
   
   public void setPollingRate(long pollingRate) {
     this.pollingRate = pollingRate;
@@ -37,6 +70,139 @@ public class PropertiesMap {
     this.baseURL = baseURL;
   }
   
+  public void setPollingThreads(int pollingThreads) {
+    this.pollingThreads = pollingThreads;
+  }
+  
+  public void setPollingJitter(double pollingJitter) {
+    this.pollingJitter = pollingJitter;
+  }
+  
+  public void setExecutionMode(String executionMode) {
+    this.executionMode = executionMode;
+  }
+  
+  public void setParserType(String parserType) {
+    this.parserType = parserType;
+  }
+  
+  public void setIndentLevel(int indentLevel) {
+    this.indentLevel = indentLevel;
+  }
+  
+  public void setArchiveResponses(boolean archiveResponses) {
+    this.archiveResponses = archiveResponses;
+  }
+  
+  public void setArchiveDirectory(String archiveDirectory) {
+    this.archiveDirectory = archiveDirectory;
+  }
+  
+  public void setArchiveQueueSize(int archiveQueueSize) {
+    this.archiveQueueSize = archiveQueueSize;
+  }
+  
+  public void setArchiveSampleRate(double archiveSampleRate) {
+    this.archiveSampleRate = archiveSampleRate;
+  }
+  
+  public void setArchiveMaxBytes(long archiveMaxBytes) {
+    this.archiveMaxBytes = archiveMaxBytes;
+  }
+  
+  public void setArchiveMaxAge(long archiveMaxAge) {
+    this.archiveMaxAge = archiveMaxAge;
+  }
+  
+  public void setArchiveMaxFiles(int archiveMaxFiles) {
+    this.archiveMaxFiles = archiveMaxFiles;
+  }
+  
+  public void setDomainSnapshot(boolean domainSnapshot) {
+    this.domainSnapshot = domainSnapshot;
+  }
+  
+  public void setMaxConnections(int maxConnections) {
+    this.maxConnections = maxConnections;
+  }
+  
+  public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+    this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+  }
+  
+  public void setConnectTimeout(int connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+  
+  public void setReadTimeout(int readTimeout) {
+    this.readTimeout = readTimeout;
+  }
+  
+  public void setGzip(boolean gzip) {
+    this.gzip = gzip;
+  }
+  
+  public void setStreamResponses(boolean streamResponses) {
+    this.streamResponses = streamResponses;
+  }
+  
+  /**
+   * 
+   * @param observerThreads Threads that deliver status to observers; 0 delivers on the polling threads
+   */
+  public void setObserverThreads(int observerThreads) {
+    this.observerThreads = observerThreads;
+  }
+  
+  public void setObserverQueueSize(int observerQueueSize) {
+    this.observerQueueSize = observerQueueSize;
+  }
+  
+  public void setObserverOverflow(String observerOverflow) {
+    this.observerOverflow = observerOverflow;
+  }
+  
+  /**
+   * 
+   * @param name The domain name
+   * @param baseURL The URL of the domain's DAS
+   */
+  public void addDomain(String name, String baseURL) {
+    this.domains.put(name, baseURL);
+  }
+  
+  public void setMaxPollsPerDomain(int maxPollsPerDomain) {
+    this.maxPollsPerDomain = maxPollsPerDomain;
+  }
+  
+  public void setAdaptivePolling(boolean adaptivePolling) {
+    this.adaptivePolling = adaptivePolling;
+  }
+  
+  public void setMinPollingRate(long minPollingRate) {
+    this.minPollingRate = minPollingRate;
+  }
+  
+  public void setMaxPollingRate(long maxPollingRate) {
+    this.maxPollingRate = maxPollingRate;
+  }
+  
+  public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+  }
+  
+  public void setCircuitFailures(int circuitFailures) {
+    this.circuitFailures = circuitFailures;
+  }
+  
+  public void setCircuitBackoff(long circuitBackoff) {
+    this.circuitBackoff = circuitBackoff;
+  }
+  
+  public void setCircuitMaxBackoff(long circuitMaxBackoff) {
+    this.circuitMaxBackoff = circuitMaxBackoff;
+  }
+  
   public long getPollingRate() {
     return this.pollingRate;
   }
@@ -49,4 +215,132 @@ public class PropertiesMap {
     return this.baseURL;
   }
   
+  public int getPollingThreads() {
+    return this.pollingThreads;
+  }
+  
+  public double getPollingJitter() {
+    return this.pollingJitter;
+  }
+  
+  public String getExecutionMode() {
+    return this.executionMode;
+  }
+  
+  public String getParserType() {
+    return this.parserType;
+  }
+  
+  public int getIndentLevel() {
+    return this.indentLevel;
+  }
+  
+  public boolean isArchiveResponses() {
+    return this.archiveResponses;
+  }
+  
+  public String getArchiveDirectory() {
+    return this.archiveDirectory;
+  }
+  
+  public int getArchiveQueueSize() {
+    return this.archiveQueueSize;
+  }
+  
+  public double getArchiveSampleRate() {
+    return this.archiveSampleRate;
+  }
+  
+  public long getArchiveMaxBytes() {
+    return this.archiveMaxBytes;
+  }
+  
+  public long getArchiveMaxAge() {
+    return this.archiveMaxAge;
+  }
+  
+  public int getArchiveMaxFiles() {
+    return this.archiveMaxFiles;
+  }
+  
+  public boolean isDomainSnapshot() {
+    return this.domainSnapshot;
+  }
+  
+  public int getMaxConnections() {
+    return this.maxConnections;
+  }
+  
+  public int getMaxConnectionsPerRoute() {
+    return this.maxConnectionsPerRoute;
+  }
+  
+  public int getConnectTimeout() {
+    return this.connectTimeout;
+  }
+  
+  public int getReadTimeout() {
+    return this.readTimeout;
+  }
+  
+  public boolean isGzip() {
+    return this.gzip;
+  }
+  
+  public boolean isStreamResponses() {
+    return this.streamResponses;
+  }
+  
+  public int getObserverThreads() {
+    return this.observerThreads;
+  }
+  
+  public int getObserverQueueSize() {
+    return this.observerQueueSize;
+  }
+  
+  public String getObserverOverflow() {
+    return this.observerOverflow;
+  }
+  
+  /**
+   * 
+   * @return The base URL of each monitored domain by name, in config order
+   */
+  public LinkedHashMap<String, String> getDomains() {
+    return this.domains;
+  }
+  
+  public int getMaxPollsPerDomain() {
+    return this.maxPollsPerDomain;
+  }
+  
+  public boolean isAdaptivePolling() {
+    return this.adaptivePolling;
+  }
+  
+  public long getMinPollingRate() {
+    return this.minPollingRate;
+  }
+  
+  public long getMaxPollingRate() {
+    return this.maxPollingRate;
+  }
+  
+  public int getMaxConcurrentRequests() {
+    return this.maxConcurrentRequests;
+  }
+  
+  public int getCircuitFailures() {
+    return this.circuitFailures;
+  }
+  
+  public long getCircuitBackoff() {
+    return this.circuitBackoff;
+  }
+  
+  public long getCircuitMaxBackoff() {
+    return this.circuitMaxBackoff;
+  }
+  
 }
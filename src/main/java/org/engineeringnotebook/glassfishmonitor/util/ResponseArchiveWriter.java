@@ -0,0 +1,526 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.logging.Level;
+
+/**
+ * Writes the raw GF responses to disk on a background thread, so the polling
+ * threads never wait on file I/O.
+ *
+ * Responses are offered to a bounded queue; if the queue is full the response
+ * is dropped and counted rather than blocking the poll.  The writer thread
+ * drains the queue in batches and appends each response to its archive file,
+ * preceded by a timestamp line.  A monitor that streams its responses
+ * instead copies each one into an entry from openEntry() as it is read,
+ * which queues it in chunks, so a large response is never held whole.
+ * A file is rotated (name, name.1, ... name.maxFiles) once it exceeds the
+ * size limit or has been open longer than the age limit.
+ *
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class ResponseArchiveWriter {
+    private static final Logger logger = Logger.getLogger(ResponseArchiveWriter.class.getName());
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAX_BATCH = 64;
+    private static final int CHUNK_SIZE = 8192;
+    private static final byte[] TRUNCATED = "\n### truncated ###\n".getBytes(UTF8);
+    private final File directory;
+    private final ArrayBlockingQueue<ArchiveEntry> queue;
+    private final double sampleRate;
+    private final long maxFileBytes;
+    private final long maxFileAge;
+    private final int maxFiles;
+    private final ConcurrentHashMap<String, AtomicLong> sampleCounters = new ConcurrentHashMap<String, AtomicLong>();
+    private final HashMap<String, ArchiveFile> openFiles = new HashMap<String, ArchiveFile>();
+    //used only by the writer thread: the streamed response being written to each file, and what waits for it
+    private final HashMap<String, EntryStream> streaming = new HashMap<String, EntryStream>();
+    private final HashMap<String, ArrayList<ArchiveEntry>> deferred = new HashMap<String, ArrayList<ArchiveEntry>>();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean running = false;
+
+    /**
+     *
+     * @param directory The directory the archive files are written to
+     * @param queueCapacity The number of responses that may wait to be written
+     * @param sampleRate The fraction of responses to archive for each file, 0.0 to 1.0
+     * @param maxFileBytes The size at which a file is rotated
+     * @param maxFileAge The time, in milliseconds, after which a file is rotated
+     * @param maxFiles The number of rotated files kept for each archive file
+     */
+    public ResponseArchiveWriter(String directory, int queueCapacity, double sampleRate, long maxFileBytes, long maxFileAge, int maxFiles) {
+        this.directory = new File(directory);
+        this.queue = new ArrayBlockingQueue<ArchiveEntry>(Math.max(1, queueCapacity));
+        this.sampleRate = Math.max(0.0, Math.min(sampleRate, 1.0));
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileAge = maxFileAge;
+        this.maxFiles = Math.max(0, maxFiles);
+        this.writerThread = new Thread(new Runnable() {
+            public void run() {
+                writeLoop();
+            }
+        }, "response-archive-writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        writerThread.start();
+    }
+
+    /**
+     * Stops accepting responses, writes what is already queued and closes the
+     * files.  A response still being streamed, or offered while this runs, is
+     * rejected and counted as dropped.
+     */
+    public void stop() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(5000);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a response to be written.  Never blocks.
+     *
+     * @param fileName The archive file name, relative to the archive directory
+     * @param response The response text
+     * @return true if the response was queued, false if it was not sampled or the queue was full
+     */
+    public boolean archive(String fileName, String response) {
+        if(!running || response == null || !sample(fileName))
+            return false;
+
+        byte[] bytes = response.getBytes(UTF8);
+        if(!offer(new ArchiveEntry(fileName, bytes, bytes.length, System.currentTimeMillis(), null, true))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts an entry for a response that is archived as it is read.  The
+     * caller writes the raw response bytes to the stream, which queues them
+     * in chunks; closing it ends the entry.  Never blocks.  If a chunk cannot
+     * be queued the rest of the response is discarded, the entry is marked
+     * as truncated in the file and the response counts as dropped.
+     *
+     * @param fileName The archive file name, relative to the archive directory
+     * @return The stream to copy the response to, or null if the response is not sampled
+     */
+    public OutputStream openEntry(String fileName) {
+        if(!running || !sample(fileName))
+            return null;
+        return new EntryStream(fileName, System.currentTimeMillis());
+    }
+
+    /**
+     * An entry queued while stop() runs is taken back unless the writer
+     * thread has already taken it, so that every entry is either written or
+     * rejected.
+     */
+    private boolean offer(ArchiveEntry entry) {
+        if(!running || !queue.offer(entry))
+            return false;
+        return running || !queue.remove(entry);
+    }
+
+    /**
+     *
+     * @return The number of responses written to disk
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     *
+     * @return The number of responses dropped because the queue was full or
+     *         the writer stopped
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Archives sampleRate of the responses for each file, evenly spaced
+     */
+    private boolean sample(String fileName) {
+        if(sampleRate >= 1.0)
+            return true;
+        if(sampleRate <= 0.0)
+            return false;
+
+        AtomicLong counter = sampleCounters.get(fileName);
+        if(counter == null) {
+            sampleCounters.putIfAbsent(fileName, new AtomicLong());
+            counter = sampleCounters.get(fileName);
+        }
+        long n = counter.incrementAndGet();
+        return (long)(n * sampleRate) != (long)((n - 1) * sampleRate);
+    }
+
+    private void writeLoop() {
+        ArrayList<ArchiveEntry> batch = new ArrayList<ArchiveEntry>(MAX_BATCH);
+        while(running || !queue.isEmpty()) {
+            try {
+                ArchiveEntry first = queue.poll(1, TimeUnit.SECONDS);
+                if(first != null)
+                    batch.add(first);
+            } catch(InterruptedException ie) {
+                //stop() interrupts us; drain whatever is left before exiting
+            }
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+            writeBatch(batch);
+            batch.clear();
+        }
+        dropUnfinished();
+        closeAll();
+    }
+
+    private void writeBatch(ArrayList<ArchiveEntry> batch) {
+        for(ArchiveEntry entry : batch)
+            write(entry);
+        endAbandoned();
+        if(batch.isEmpty())
+            return;
+        for(ArchiveFile file : openFiles.values()) {
+            try {
+                file.writer.flush();
+            } catch(IOException ioe) {
+                logger.log(Level.INFO, "Error flushing file =  {0}", new Object[]{ioe.getMessage()});
+            }
+        }
+    }
+
+    /**
+     * Writes a whole response, or one chunk of a streamed one.  While a
+     * streamed response is being written to a file, entries for that file
+     * from other responses wait until it ends.
+     */
+    private void write(ArchiveEntry entry) {
+        EntryStream stream = entry.stream;
+        if(stream != null && stream.failed)
+            return;
+        EntryStream owner = streaming.get(entry.fileName);
+        if(owner != null && owner != stream) {
+            ArrayList<ArchiveEntry> waiting = deferred.get(entry.fileName);
+            if(waiting == null) {
+                waiting = new ArrayList<ArchiveEntry>();
+                deferred.put(entry.fileName, waiting);
+            }
+            waiting.add(entry);
+            return;
+        }
+
+        try {
+            if(stream == null) {
+                openFile(entry.fileName, entry.length).append(entry);
+                written.incrementAndGet();
+                return;
+            }
+            ArchiveFile file;
+            if(owner == null) {
+                file = openFile(entry.fileName, entry.length);
+                file.appendHeader(entry.receivedTime);
+                streaming.put(entry.fileName, stream);
+            }
+            else {
+                file = openFiles.get(entry.fileName);
+            }
+            file.appendBytes(entry.response, entry.length);
+            stream.chunksWritten++;
+            if(entry.last) {
+                file.appendEnd();
+                written.incrementAndGet();
+                endEntry(entry.fileName);
+            }
+        } catch(IOException ioe) {
+            logger.log(Level.INFO, "Error writing to file =  {0}", new Object[]{ioe.getMessage()});
+            if(stream != null) {
+                stream.failed = true;
+                if(streaming.get(entry.fileName) == stream)
+                    endEntry(entry.fileName);
+            }
+        }
+    }
+
+    /**
+     * Ends the streamed response being written to the file and writes the
+     * entries that were waiting for it.
+     */
+    private void endEntry(String fileName) {
+        streaming.remove(fileName);
+        ArrayList<ArchiveEntry> waiting = deferred.remove(fileName);
+        if(waiting != null) {
+            for(ArchiveEntry entry : waiting)
+                write(entry);
+        }
+    }
+
+    /**
+     * Ends the streamed responses that will get no more chunks because one
+     * could not be queued
+     */
+    private void endAbandoned() {
+        for(Map.Entry<String, EntryStream> entry : new ArrayList<Map.Entry<String, EntryStream>>(streaming.entrySet())) {
+            EntryStream stream = entry.getValue();
+            if(stream.abandoned && stream.chunksWritten >= stream.queued) {
+                try {
+                    openFiles.get(entry.getKey()).appendTruncated();
+                } catch(IOException ioe) {
+                    logger.log(Level.INFO, "Error writing to file =  {0}", new Object[]{ioe.getMessage()});
+                }
+                endEntry(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Counts the responses accepted but not written when the writer stops
+     */
+    private void dropUnfinished() {
+        for(Map.Entry<String, EntryStream> entry : streaming.entrySet()) {
+            try {
+                openFiles.get(entry.getKey()).appendTruncated();
+            } catch(IOException ioe) {
+                logger.log(Level.INFO, "Error writing to file =  {0}", new Object[]{ioe.getMessage()});
+            }
+            entry.getValue().drop();
+        }
+        streaming.clear();
+        for(ArrayList<ArchiveEntry> waiting : deferred.values()) {
+            for(ArchiveEntry entry : waiting) {
+                if(entry.stream == null)
+                    dropped.incrementAndGet();
+                else
+                    entry.stream.drop();
+            }
+        }
+        deferred.clear();
+    }
+
+    /**
+     * Returns the open file for the name, rotating it first if the next
+     * entry would take it past the size limit or it is past the age limit.
+     */
+    private ArchiveFile openFile(String fileName, int nextEntrySize) throws IOException {
+        ArchiveFile file = openFiles.get(fileName);
+        if(file != null && file.needsRotation(nextEntrySize)) {
+            file.close();
+            openFiles.remove(fileName);
+            rotate(fileName);
+            file = null;
+        }
+        if(file == null) {
+            file = new ArchiveFile(new File(directory, fileName));
+            openFiles.put(fileName, file);
+        }
+        return file;
+    }
+
+    private void rotate(String fileName) {
+        File current = new File(directory, fileName);
+        if(maxFiles == 0) {
+            if(!current.delete())
+                logger.log(Level.INFO, "Unable to delete {0}", new Object[]{current});
+            return;
+        }
+
+        File oldest = new File(directory, fileName + "." + maxFiles);
+        if(oldest.exists() && !oldest.delete())
+            logger.log(Level.INFO, "Unable to delete {0}", new Object[]{oldest});
+        for(int i = maxFiles - 1; i >= 0; i--) {
+            File from = i == 0 ? current : new File(directory, fileName + "." + i);
+            if(from.exists() && !from.renameTo(new File(directory, fileName + "." + (i + 1))))
+                logger.log(Level.INFO, "Unable to rotate {0}", new Object[]{from});
+        }
+    }
+
+    private void closeAll() {
+        for(ArchiveFile file : openFiles.values())
+            file.close();
+        openFiles.clear();
+    }
+
+    /**
+     * A whole response, or one chunk of a streamed response
+     */
+    private static class ArchiveEntry {
+        final String fileName;
+        final byte[] response;
+        final int length;
+        final long receivedTime;
+        final EntryStream stream;
+        final boolean last;
+
+        ArchiveEntry(String fileName, byte[] response, int length, long receivedTime, EntryStream stream, boolean last) {
+            this.fileName = fileName;
+            this.response = response;
+            this.length = length;
+            this.receivedTime = receivedTime;
+            this.stream = stream;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Queues a streamed response CHUNK_SIZE bytes at a time, so no more than
+     * one chunk of it is held by the polling thread
+     */
+    private class EntryStream extends OutputStream {
+        private final String fileName;
+        private final long receivedTime;
+        private final AtomicBoolean droppedOnce = new AtomicBoolean();
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int count = 0;
+        private boolean closed = false;
+        //chunks accepted by the queue; final once abandoned is set
+        volatile int queued = 0;
+        volatile boolean abandoned = false;
+        //used only by the writer thread
+        int chunksWritten = 0;
+        boolean failed = false;
+
+        EntryStream(String fileName, long receivedTime) {
+            this.fileName = fileName;
+            this.receivedTime = receivedTime;
+        }
+
+        public void write(int b) {
+            if(closed || abandoned)
+                return;
+            if(count == buffer.length)
+                queueChunk(false);
+            if(!abandoned)
+                buffer[count++] = (byte)b;
+        }
+
+        public void write(byte[] b, int off, int len) {
+            while(len > 0 && !closed && !abandoned) {
+                if(count == buffer.length) {
+                    queueChunk(false);
+                    continue;
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        public void close() {
+            if(closed)
+                return;
+            closed = true;
+            if(!abandoned)
+                queueChunk(true);
+        }
+
+        private void queueChunk(boolean last) {
+            //hand over the buffer itself; nothing writes to it after this
+            if(offer(new ArchiveEntry(fileName, buffer, count, receivedTime, this, last))) {
+                queued++;
+                buffer = last ? null : new byte[CHUNK_SIZE];
+                count = 0;
+            }
+            else {
+                buffer = null;
+                abandoned = true;
+                drop();
+            }
+        }
+
+        void drop() {
+            if(droppedOnce.compareAndSet(false, true))
+                dropped.incrementAndGet();
+        }
+    }
+
+    private class ArchiveFile {
+        final OutputStream writer;
+        final long openedTime;
+        long size;
+
+        ArchiveFile(File file) throws IOException {
+            this.size = file.length();
+            this.openedTime = System.currentTimeMillis();
+            this.writer = new BufferedOutputStream(new FileOutputStream(file, true));
+        }
+
+        boolean needsRotation(int nextEntrySize) {
+            return size > 0 && (size + nextEntrySize > maxFileBytes
+                    || System.currentTimeMillis() - openedTime > maxFileAge);
+        }
+
+        void append(ArchiveEntry entry) throws IOException {
+            appendHeader(entry.receivedTime);
+            appendBytes(entry.response, entry.length);
+            appendEnd();
+        }
+
+        void appendHeader(long receivedTime) throws IOException {
+            byte[] header = ("### " + new Date(receivedTime) + " ###\n").getBytes(UTF8);
+            writer.write(header);
+            size += header.length;
+        }
+
+        void appendBytes(byte[] bytes, int length) throws IOException {
+            writer.write(bytes, 0, length);
+            size += length;
+        }
+
+        void appendEnd() throws IOException {
+            writer.write('\n');
+            size++;
+        }
+
+        void appendTruncated() throws IOException {
+            appendBytes(TRUNCATED, TRUNCATED.length);
+        }
+
+        void close() {
+            try {
+                writer.close();
+            } catch(IOException ioe) {
+                logger.log(Level.INFO, "Error closing file =  {0}", new Object[]{ioe.getMessage()});
+            }
+        }
+    }
+}
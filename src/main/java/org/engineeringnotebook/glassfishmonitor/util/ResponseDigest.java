@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.util;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes a digest of a raw response body, so a monitor can tell that a 
+ * response is identical to the previous one without parsing it.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class ResponseDigest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private static final ObjectPool<MessageDigest> digests = new ObjectPool<MessageDigest>(16) {
+        protected MessageDigest create() {
+            return newDigest();
+        }
+    };
+    
+    /**
+     * 
+     * @param response The response text
+     * @return The SHA-1 digest of the response's UTF-8 bytes
+     */
+    public static byte[] digest(String response) {
+        return digest(response.getBytes(UTF8));
+    }
+    
+    /**
+     * 
+     * @param response The raw response bytes
+     * @return The SHA-1 digest of the bytes
+     */
+    public static byte[] digest(byte[] response) {
+        MessageDigest md = digests.acquire();
+        try {
+            return md.digest(response);
+        } finally {
+            md.reset();
+            digests.release(md);
+        }
+    }
+    
+    /**
+     * Digests a response as it is read.  Once the stream has been read to 
+     * the end, getMessageDigest().digest() returns the same digest as 
+     * digest(byte[]) of the bytes read.  The stream has a MessageDigest of
+     * its own, since there is no telling when the caller is done with it.
+     * 
+     * @param response The raw response stream
+     * @return A stream that digests the bytes read through it
+     */
+    public static DigestInputStream digesting(InputStream response) {
+        return new DigestInputStream(response, newDigest());
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
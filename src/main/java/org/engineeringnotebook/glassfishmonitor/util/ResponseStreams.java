@@ -0,0 +1,151 @@
+/*
+ * Copyright 2011 Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.engineeringnotebook.glassfishmonitor.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Helpers for monitors that parse a response body straight from the
+ * connection instead of reading it into a String first.
+ * 
+ * @author Jeffrey Coble <jeffrey.a.coble@gmail.com> http://engineeringnotebook.org
+ */
+public class ResponseStreams {
+    private static final Logger logger = Logger.getLogger(ResponseStreams.class.getName());
+    
+    //scratch space for drain(); what is read into it is discarded
+    private static final ObjectPool<byte[]> drainBuffers = new ObjectPool<byte[]>(16) {
+        protected byte[] create() {
+            return new byte[4096];
+        }
+    };
+    
+    /**
+     * Copies everything read from a response to a second stream, e.g. an 
+     * archive entry, as the parser reads it.  Closing the returned stream 
+     * closes both.
+     * 
+     * @param response The response stream
+     * @param copy The stream to copy to, or null for no copy
+     * @return The stream to read the response from
+     */
+    public static InputStream tee(InputStream response, OutputStream copy) {
+        return copy == null ? response : new TeeInputStream(response, copy);
+    }
+    
+    /**
+     * Some parsers close their input when they reach the end of the document.
+     * The stream returned ignores close(), so the caller can still drain the
+     * response and close it itself.
+     * 
+     * @param response The response stream
+     * @return A view of the stream that cannot be closed
+     */
+    public static InputStream keepOpen(InputStream response) {
+        return new FilterInputStream(response) {
+            public void close() {
+            }
+        };
+    }
+    
+    /**
+     * Reads whatever a parser left unread, so that digests and copies taken
+     * while reading cover the whole response and the connection can be reused.
+     * 
+     * @param response The response stream
+     * @throws IOException 
+     */
+    public static void drain(InputStream response) throws IOException {
+        byte[] buffer = drainBuffers.acquire();
+        try {
+            while(response.read(buffer, 0, buffer.length) >= 0)
+                ;
+        } finally {
+            drainBuffers.release(buffer);
+        }
+    }
+    
+    /**
+     * 
+     * @param response A response stream, or null
+     */
+    public static void close(InputStream response) {
+        if(response != null) {
+            try {
+                response.close();
+            } catch(IOException ioe) {
+                logger.log(Level.FINEST, "Error closing response: {0}", new Object[]{ioe.getMessage()});
+            }
+        }
+    }
+    
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+        
+        TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+        
+        public int read() throws IOException {
+            int b = in.read();
+            if(b >= 0)
+                copy.write(b);
+            return b;
+        }
+        
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if(n > 0)
+                copy.write(b, off, n);
+            return n;
+        }
+        
+        //skipped bytes would be missing from the copy
+        public long skip(long n) throws IOException {
+            byte[] buffer = drainBuffers.acquire();
+            long skipped = 0;
+            try {
+                while(skipped < n) {
+                    int read = read(buffer, 0, (int)Math.min(buffer.length, n - skipped));
+                    if(read < 0)
+                        break;
+                    skipped += read;
+                }
+            } finally {
+                drainBuffers.release(buffer);
+            }
+            return skipped;
+        }
+        
+        public boolean markSupported() {
+            return false;
+        }
+        
+        public void close() throws IOException {
+            try {
+                copy.close();
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
@@ -78,6 +78,37 @@ public class StatusUtilities {
       propertiesMap.setPollingRate(Long.valueOf(pollingRate).longValue());
       propertiesMap.setResponseWaitTime(Long.valueOf(responseWaitTime).longValue());
       propertiesMap.setBaseURL(baseURL);
+      propertiesMap.setPollingThreads(Integer.parseInt(getConfigValue(doc, "pollingthreads", "4")));
+      propertiesMap.setPollingJitter(Double.parseDouble(getConfigValue(doc, "pollingjitter", "0.1")));
+      propertiesMap.setExecutionMode(getConfigValue(doc, "executionmode", "platform"));
+      propertiesMap.setParserType(getConfigValue(doc, "parser", "dom"));
+      propertiesMap.setIndentLevel(Integer.parseInt(getConfigValue(doc, "indentlevel", "4")));
+      propertiesMap.setArchiveResponses(Boolean.parseBoolean(getConfigValue(doc, "archiveresponses", "true")));
+      propertiesMap.setArchiveDirectory(getConfigValue(doc, "archivedirectory", "."));
+      propertiesMap.setArchiveQueueSize(Integer.parseInt(getConfigValue(doc, "archivequeuesize", "256")));
+      propertiesMap.setArchiveSampleRate(Double.parseDouble(getConfigValue(doc, "archivesamplerate", "1.0")));
+      propertiesMap.setArchiveMaxBytes(Long.parseLong(getConfigValue(doc, "archivemaxbytes", "10485760")));
+      propertiesMap.setArchiveMaxAge(Long.parseLong(getConfigValue(doc, "archivemaxage", "3600000")));
+      propertiesMap.setArchiveMaxFiles(Integer.parseInt(getConfigValue(doc, "archivemaxfiles", "5")));
+      propertiesMap.setDomainSnapshot(Boolean.parseBoolean(getConfigValue(doc, "domainsnapshot", "false")));
+      propertiesMap.setMaxConnections(Integer.parseInt(getConfigValue(doc, "maxconnections", "20")));
+      propertiesMap.setMaxConnectionsPerRoute(Integer.parseInt(getConfigValue(doc, "maxconnectionsperroute", "8")));
+      propertiesMap.setConnectTimeout(Integer.parseInt(getConfigValue(doc, "connecttimeout", "5000")));
+      propertiesMap.setReadTimeout(Integer.parseInt(getConfigValue(doc, "readtimeout", "10000")));
+      propertiesMap.setGzip(Boolean.parseBoolean(getConfigValue(doc, "gzip", "true")));
+      propertiesMap.setStreamResponses(Boolean.parseBoolean(getConfigValue(doc, "streamresponses", "false")));
+      propertiesMap.setObserverThreads(Integer.parseInt(getConfigValue(doc, "observerthreads", "2")));
+      propertiesMap.setObserverQueueSize(Integer.parseInt(getConfigValue(doc, "observerqueuesize", "16")));
+      propertiesMap.setObserverOverflow(getConfigValue(doc, "observeroverflow", "dropoldest"));
+      propertiesMap.setMaxPollsPerDomain(Integer.parseInt(getConfigValue(doc, "maxpollsperdomain", "2")));
+      propertiesMap.setAdaptivePolling(Boolean.parseBoolean(getConfigValue(doc, "adaptivepolling", "false")));
+      propertiesMap.setMinPollingRate(Long.parseLong(getConfigValue(doc, "minpollingrate", "1000")));
+      propertiesMap.setMaxPollingRate(Long.parseLong(getConfigValue(doc, "maxpollingrate", "30000")));
+      propertiesMap.setMaxConcurrentRequests(Integer.parseInt(getConfigValue(doc, "maxconcurrentrequests", "8")));
+      propertiesMap.setCircuitFailures(Integer.parseInt(getConfigValue(doc, "circuitfailures", "5")));
+      propertiesMap.setCircuitBackoff(Long.parseLong(getConfigValue(doc, "circuitbackoff", "5000")));
+      propertiesMap.setCircuitMaxBackoff(Long.parseLong(getConfigValue(doc, "circuitmaxbackoff", "300000")));
+      readDomains(doc, propertiesMap);
       
       return propertiesMap;
     }
@@ -183,4 +214,46 @@ public class StatusUtilities {
       return responseWaitTimeValue;
     }
     
+    /**
+     * Adds each &lt;domain name="..."&gt;URL&lt;/domain&gt; in the XML config doc to 
+     * the properties map.  Without any, the single &lt;baseURL&gt; is the only 
+     * domain, and it is left unnamed.
+     * 
+     * @param dom
+     * @param propertiesMap 
+     */
+    private void readDomains(Document dom, PropertiesMap propertiesMap) {
+      NodeList nl = dom.getDocumentElement().getElementsByTagName("domain");
+      for(int i = 0 ; i < nl.getLength();i++) {
+        Element domain = (Element)nl.item(i);
+        String name = domain.getAttribute("name").trim();
+        String url = domain.getTextContent().trim();
+        if(url.length() == 0)
+          continue;
+        propertiesMap.addDomain(name.length() > 0 ? name : "domain" + (i + 1), url);
+      }
+      
+      if(propertiesMap.getDomains().isEmpty())
+        propertiesMap.addDomain(null, propertiesMap.getbaseURL());
+    }
+    
+    /**
+     * Extracts an optional value from the XML config doc.
+     * 
+     * @param dom
+     * @param tagName The config element name
+     * @param defaultValue Returned when the element is absent or empty
+     * @return 
+     */
+    private String getConfigValue(Document dom, String tagName, String defaultValue) {
+      NodeList nl = dom.getDocumentElement().getElementsByTagName(tagName);
+      if(nl != null && nl.getLength() > 0) {
+        String value = nl.item(nl.getLength() - 1).getTextContent().trim();
+        if(value.length() > 0)
+          return value;
+      }
+      
+      return defaultValue;
+    }
+    
 }
@@ -0,0 +1,42 @@
+package org.engineeringnotebook.glassfishmonitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+
+/**
+ * Loads the recorded GlassFish REST responses under src/test/resources/fixtures.
+ */
+public class Fixtures {
+
+    public static String load(String name) {
+        InputStream is = Fixtures.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+        if(is == null)
+            throw new IllegalArgumentException("No fixture named " + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while((n = is.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+            is.close();
+            return new String(out.toByteArray(), "UTF-8");
+        } catch(IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    /**
+     * @return The status strings of the list, or null for a null list
+     */
+    public static ArrayList<String> statusStrings(ArrayList<Status> statusList) {
+        if(statusList == null)
+            return null;
+        ArrayList<String> strings = new ArrayList<String>();
+        for(Status status : statusList)
+            strings.add(status.getStatusString());
+        return strings;
+    }
+}
@@ -0,0 +1,466 @@
+package org.engineeringnotebook.glassfishmonitor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An embeddable stand-in for the admin REST interface of a GlassFish domain
+ * with any number of clusters and instances.  It answers
+ *
+ *   GET  /management/domain/clusters/list-clusters
+ *   GET  /management/domain/clusters/cluster/{name}/list-instances
+ *   GET  /management/domain/list-instances
+ *   POST /management/domain/configs/config/server-config/_set-rest-admin-config
+ *   POST /management/domain/configs/config/server-config/rest-config
+ *
+ * in XML, or in JSON when the request accepts application/json, in the same
+ * layout as the recorded fixtures.  Cluster i is named "c{i}" and its
+ * instance j "c{i}-in{j}".  A cluster's state follows its instances.
+ *
+ * Instances change state at the churn rate, every request waits for a
+ * latency drawn from the configured distribution, and a fraction of requests
+ * can be failed.  The settings may be changed while the server is running.
+ *
+ * Used by the tests, and by the benchmark module through the test jar.
+ */
+public class SimulatedDomain {
+    private static final String ROOT = "/management/domain/";
+    private static final String CLUSTER_PREFIX = ROOT + "clusters/cluster/";
+    private static final String[] STATES = {"RUNNING", "NOT_RUNNING", "REQUIRES_RESTART"};
+
+    private final HttpServer server;
+    private final int clusters;
+    private final int instancesPerCluster;
+    //guarded by this
+    private final byte[] states;
+    private final long[] startTimes;
+    private final Random random;
+    private final BitSet queriedClusters = new BitSet();
+    private double churnRate = 0;
+    private double pendingChanges = 0;
+    private long lastChurn = System.currentTimeMillis();
+
+    private volatile Latency latency = fixed(0);
+    private volatile double failureRate = 0;
+    private volatile int failureStatus = 500;
+    private volatile long uptimeResolution = 1000;
+    private volatile boolean entityTags = false;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger failureCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+
+    /**
+     * The time a request waits before it is answered
+     */
+    public interface Latency {
+        long nextMillis(Random random);
+    }
+
+    /**
+     * @param clusters The number of clusters
+     * @param instancesPerCluster The number of instances in each cluster
+     */
+    public SimulatedDomain(int clusters, int instancesPerCluster) throws IOException {
+        this(clusters, instancesPerCluster, 1L);
+    }
+
+    /**
+     * @param seed Seeds the churn, latency and failure draws
+     */
+    public SimulatedDomain(int clusters, int instancesPerCluster, long seed) throws IOException {
+        this.clusters = clusters;
+        this.instancesPerCluster = instancesPerCluster;
+        this.states = new byte[clusters * instancesPerCluster];
+        this.startTimes = new long[states.length];
+        this.random = new Random(seed);
+        long now = System.currentTimeMillis();
+        for(int i = 0; i < states.length; i++)
+            startTimes[i] = now - 60000L * (i % 60);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public SimulatedDomain start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        ((ExecutorService)server.getExecutor()).shutdownNow();
+    }
+
+    public String getBaseURL() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public static Latency fixed(final long millis) {
+        return new Latency() {
+            public long nextMillis(Random random) {
+                return millis;
+            }
+        };
+    }
+
+    public static Latency uniform(final long minMillis, final long maxMillis) {
+        return new Latency() {
+            public long nextMillis(Random random) {
+                return minMillis + (long)(random.nextDouble() * (maxMillis - minMillis));
+            }
+        };
+    }
+
+    public static Latency exponential(final long meanMillis) {
+        return new Latency() {
+            public long nextMillis(Random random) {
+                return (long)(-meanMillis * Math.log(1.0 - random.nextDouble()));
+            }
+        };
+    }
+
+    /**
+     * Most requests are fast, a few are slow, as with a DAS that is
+     * occasionally busy
+     */
+    public static Latency bimodal(final long fastMillis, final long slowMillis, final double slowFraction) {
+        return new Latency() {
+            public long nextMillis(Random random) {
+                return random.nextDouble() < slowFraction ? slowMillis : fastMillis;
+            }
+        };
+    }
+
+    public void setLatency(Latency latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param changesPerSecond The number of instance state changes per second, across the domain
+     */
+    public synchronized void setChurnRate(double changesPerSecond) {
+        advance(System.currentTimeMillis());
+        this.churnRate = changesPerSecond;
+    }
+
+    /**
+     * @param failureRate The fraction of requests answered with the failure status
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * @param failureStatus The HTTP status of a failed request, 500 unless set
+     */
+    public void setFailureStatus(int failureStatus) {
+        this.failureStatus = failureStatus;
+    }
+
+    /**
+     * Uptimes are reported in whole multiples of the resolution, so a domain
+     * with no churn answers the same body until the next multiple.
+     *
+     * @param millis The resolution, 1000 unless set; 0 reports exact uptimes
+     */
+    public void setUptimeResolution(long millis) {
+        this.uptimeResolution = millis;
+    }
+
+    /**
+     * @param entityTags true to send an ETag and answer 304 to a matching If-None-Match
+     */
+    public void setEntityTags(boolean entityTags) {
+        this.entityTags = entityTags;
+    }
+
+    /**
+     * Changes the state of randomly chosen instances now, regardless of the
+     * churn rate
+     *
+     * @param changes The number of state changes
+     */
+    public synchronized void churn(int changes) {
+        long now = System.currentTimeMillis();
+        for(int i = 0; i < changes && states.length > 0; i++)
+            change(random.nextInt(states.length), now);
+    }
+
+    /**
+     * @param cluster The cluster index
+     * @param instance The instance index within the cluster
+     * @param state RUNNING, NOT_RUNNING or REQUIRES_RESTART
+     */
+    public synchronized void setState(int cluster, int instance, String state) {
+        int index = cluster * instancesPerCluster + instance;
+        for(byte s = 0; s < STATES.length; s++) {
+            if(STATES[s].equals(state)) {
+                if(states[index] != s && s == 0)
+                    startTimes[index] = System.currentTimeMillis();
+                states[index] = s;
+                return;
+            }
+        }
+        throw new IllegalArgumentException(state);
+    }
+
+    public int getClusterCount() {
+        return clusters;
+    }
+
+    public int getInstancesPerCluster() {
+        return instancesPerCluster;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int getFailureCount() {
+        return failureCount.get();
+    }
+
+    public int getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /**
+     * @return The number of clusters whose list-instances has been requested
+     */
+    public synchronized int getQueriedClusterCount() {
+        return queriedClusters.cardinality();
+    }
+
+    private synchronized void markQueried(int cluster) {
+        queriedClusters.set(cluster);
+    }
+
+    public static String clusterName(int cluster) {
+        return "c" + cluster;
+    }
+
+    public static String instanceName(int cluster, int instance) {
+        return clusterName(cluster) + "-in" + instance;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        pause(nextLatency());
+        if(failureRate > 0 && nextDouble() < failureRate) {
+            failureCount.incrementAndGet();
+            exchange.sendResponseHeaders(failureStatus, -1);
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        boolean json = accept != null && accept.contains("json");
+        String body = null;
+        if("POST".equals(exchange.getRequestMethod())) {
+            if(path.endsWith("/_set-rest-admin-config") || path.endsWith("/rest-config"))
+                body = success(path.substring(path.lastIndexOf('/') + 1), json);
+        }
+        else if(path.equals(ROOT + "clusters/list-clusters")) {
+            body = listClusters(json);
+        }
+        else if(path.equals(ROOT + "list-instances")) {
+            body = listInstances(0, clusters, json, true);
+        }
+        else if(path.startsWith(CLUSTER_PREFIX) && path.endsWith("/list-instances")) {
+            int cluster = parseCluster(path.substring(CLUSTER_PREFIX.length(), path.length() - "/list-instances".length()));
+            if(cluster >= 0) {
+                markQueried(cluster);
+                body = listInstances(cluster, cluster + 1, json, false);
+            }
+        }
+
+        if(body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        byte[] bytes = body.getBytes("UTF-8");
+        if(entityTags) {
+            String tag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+            exchange.getResponseHeaders().set("ETag", tag);
+            if(tag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", json ? "application/json" : "application/xml");
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private int parseCluster(String name) {
+        if(!name.startsWith("c"))
+            return -1;
+        try {
+            int cluster = Integer.parseInt(name.substring(1));
+            return cluster < clusters ? cluster : -1;
+        } catch(NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    private synchronized long nextLatency() {
+        return latency.nextMillis(random);
+    }
+
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    private synchronized String listClusters(boolean json) {
+        advance(System.currentTimeMillis());
+        StringBuilder body = new StringBuilder(64 * clusters + 256);
+        if(json) {
+            body.append("{\"message\":\"\",\"exit_code\":\"SUCCESS\",\"command\":\"list-clusters AdminCommand\",\"properties\":{");
+            for(int c = 0; c < clusters; c++) {
+                if(c > 0)
+                    body.append(',');
+                body.append('"').append(clusterName(c)).append("\":\"").append(clusterState(c)).append('"');
+            }
+            return body.append("}}").toString();
+        }
+        body.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<map>\n");
+        body.append("    <entry key=\"exit_code\" value=\"SUCCESS\"/>\n");
+        body.append("    <entry key=\"command\" value=\"list-clusters AdminCommand\"/>\n");
+        body.append("    <entry key=\"properties\">\n        <map>\n");
+        for(int c = 0; c < clusters; c++) {
+            body.append("            <entry key=\"").append(clusterName(c)).append("\" value=\"")
+                .append(clusterState(c)).append("\"/>\n");
+        }
+        return body.append("        </map>\n    </entry>\n</map>\n").toString();
+    }
+
+    private synchronized String listInstances(int fromCluster, int toCluster, boolean json, boolean withCluster) {
+        long now = System.currentTimeMillis();
+        advance(now);
+        int count = (toCluster - fromCluster) * instancesPerCluster;
+        StringBuilder body = new StringBuilder(200 * count + 256);
+        if(json) {
+            body.append("{\"message\":\"\",\"exit_code\":\"SUCCESS\",\"command\":\"list-instances AdminCommand\",\"extraProperties\":{\"instanceList\":[");
+            boolean first = true;
+            for(int c = fromCluster; c < toCluster; c++) {
+                for(int i = 0; i < instancesPerCluster; i++) {
+                    int index = c * instancesPerCluster + i;
+                    if(!first)
+                        body.append(',');
+                    first = false;
+                    body.append("{\"status\":\"").append(STATES[states[index]])
+                        .append("\",\"name\":\"").append(instanceName(c, i)).append('"');
+                    if(withCluster)
+                        body.append(",\"cluster\":\"").append(clusterName(c)).append('"');
+                    body.append(",\"uptime\":").append(uptime(index, now)).append('}');
+                }
+            }
+            return body.append("]}}").toString();
+        }
+        body.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<map>\n");
+        body.append("    <entry key=\"exit_code\" value=\"SUCCESS\"/>\n");
+        body.append("    <entry key=\"command\" value=\"list-instances AdminCommand\"/>\n");
+        body.append("    <entry key=\"extraProperties\">\n        <map>\n            <entry key=\"instanceList\">\n                <list>\n");
+        for(int c = fromCluster; c < toCluster; c++) {
+            for(int i = 0; i < instancesPerCluster; i++) {
+                int index = c * instancesPerCluster + i;
+                body.append("                    <map>\n");
+                body.append("                        <entry key=\"status\" value=\"").append(STATES[states[index]]).append("\"/>\n");
+                body.append("                        <entry key=\"name\" value=\"").append(instanceName(c, i)).append("\"/>\n");
+                if(withCluster)
+                    body.append("                        <entry key=\"cluster\" value=\"").append(clusterName(c)).append("\"/>\n");
+                body.append("                        <entry key=\"uptime\">\n                            <number>")
+                    .append(uptime(index, now)).append("</number>\n                        </entry>\n");
+                body.append("                    </map>\n");
+            }
+        }
+        return body.append("                </list>\n            </entry>\n        </map>\n    </entry>\n</map>\n").toString();
+    }
+
+    private String success(String command, boolean json) {
+        if(json)
+            return "{\"message\":\"\",\"exit_code\":\"SUCCESS\",\"command\":\"" + command + "\"}";
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<map>\n"
+                + "    <entry key=\"exit_code\" value=\"SUCCESS\"/>\n"
+                + "    <entry key=\"command\" value=\"" + command + "\"/>\n</map>\n";
+    }
+
+    //callers hold the lock
+    private String clusterState(int cluster) {
+        int running = 0;
+        for(int i = 0; i < instancesPerCluster; i++) {
+            if(states[cluster * instancesPerCluster + i] != 1)
+                running++;
+        }
+        if(running == instancesPerCluster)
+            return "RUNNING";
+        return running == 0 ? "NOT_RUNNING" : "PARTIALLY_RUNNING";
+    }
+
+    private long uptime(int index, long now) {
+        if(states[index] == 1)
+            return 0;
+        long uptime = now - startTimes[index];
+        long resolution = uptimeResolution;
+        return resolution > 0 ? uptime - uptime % resolution : uptime;
+    }
+
+    /**
+     * Applies the state changes due since the last request
+     */
+    private void advance(long now) {
+        if(churnRate > 0 && states.length > 0) {
+            pendingChanges += churnRate * (now - lastChurn) / 1000.0;
+            while(pendingChanges >= 1) {
+                change(random.nextInt(states.length), now);
+                pendingChanges--;
+            }
+        }
+        lastChurn = now;
+    }
+
+    /**
+     * A running instance stops or needs a restart; any other instance starts
+     */
+    private void change(int index, long now) {
+        if(states[index] == 0) {
+            states[index] = (byte)(random.nextInt(4) == 0 ? 2 : 1);
+        }
+        else {
+            states[index] = 0;
+            startTimes[index] = now;
+        }
+    }
+
+    private static void pause(long millis) {
+        if(millis <= 0)
+            return;
+        try {
+            Thread.sleep(millis);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.engineeringnotebook.glassfishmonitor;
+
+import com.sun.jersey.api.client.Client;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.client.MonitoringClient;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListMonitor;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusState;
+import org.engineeringnotebook.glassfishmonitor.util.AdminConfiguration;
+import org.engineeringnotebook.glassfishmonitor.util.PropertiesMap;
+
+/**
+ * The monitors and the MonitoringClient against a SimulatedDomain.
+ */
+public class SimulatedDomainTest extends TestCase {
+    private SimulatedDomain domain;
+
+    protected void tearDown() {
+        if(domain != null)
+            domain.stop();
+    }
+
+    public void testServesClustersAndInstances() throws Exception {
+        domain = new SimulatedDomain(50, 3).start();
+        Client client = Client.create();
+        new AdminConfiguration(domain.getBaseURL()).configureAdminServer(client);
+
+        ClusterListMonitor clusters = new ClusterListMonitor(domain.getBaseURL());
+        clusters.setClient(client);
+        clusters.setParserType(ParserType.STAX);
+        clusters.run();
+        assertEquals(50, clusters.getStatusList().size());
+
+        InstanceListMonitor instances = new InstanceListMonitor("c7", domain.getBaseURL());
+        instances.setClient(client);
+        instances.setParserType(ParserType.JSON);
+        instances.run();
+        List<Status> statusList = instances.getStatusList();
+        assertEquals(3, statusList.size());
+        assertEquals(SimulatedDomain.instanceName(7, 2), statusList.get(2).getName());
+        assertEquals(StatusState.RUNNING, statusList.get(2).getState());
+        assertEquals(4, domain.getRequestCount());
+    }
+
+    public void testChurnAndFailures() throws Exception {
+        domain = new SimulatedDomain(1, 4).start();
+        InstanceListMonitor monitor = new InstanceListMonitor("c0", domain.getBaseURL());
+        monitor.setClient(Client.create());
+        monitor.run();
+        assertEquals(StatusState.RUNNING, monitor.getStatusList().get(1).getState());
+
+        domain.setState(0, 1, "NOT_RUNNING");
+        monitor.run();
+        assertEquals(StatusState.NOT_RUNNING, monitor.getStatusList().get(1).getState());
+
+        domain.setFailureRate(1.0);
+        monitor.run();
+        assertNull(monitor.getStatusList());
+        assertEquals(1, domain.getFailureCount());
+    }
+
+    public void testMonitoringClientAtThousandClusters() throws Exception {
+        domain = new SimulatedDomain(1000, 2).start();
+        domain.setLatency(SimulatedDomain.uniform(0, 4));
+
+        PropertiesMap properties = new PropertiesMap();
+        properties.setPollingRate(1000);
+        properties.setResponseWaitTime(10000);
+        properties.setPollingThreads(16);
+        properties.setPollingJitter(0.1);
+        properties.setExecutionMode("platform");
+        properties.setParserType("stax");
+        properties.setIndentLevel(4);
+        properties.setMaxConnections(32);
+        properties.setMaxConnectionsPerRoute(16);
+        properties.setConnectTimeout(5000);
+        properties.setReadTimeout(10000);
+        properties.setMaxPollsPerDomain(16);
+        properties.addDomain("simulated", domain.getBaseURL());
+
+        //a status line per instance at INFO would swamp the test output
+        Logger logger = Logger.getLogger("org.engineeringnotebook.glassfishmonitor");
+        Level level = logger.getLevel();
+        logger.setLevel(Level.WARNING);
+        MonitoringClient client = new MonitoringClient();
+        try {
+            client.start(properties);
+            long deadline = System.currentTimeMillis() + 20000;
+            while(domain.getQueriedClusterCount() < 1000 && System.currentTimeMillis() < deadline)
+                Thread.sleep(100);
+        } finally {
+            client.stop();
+            logger.setLevel(level);
+        }
+
+        assertEquals(1000, domain.getQueriedClusterCount());
+    }
+}
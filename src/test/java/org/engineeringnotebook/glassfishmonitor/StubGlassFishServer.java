@@ -0,0 +1,116 @@
+package org.engineeringnotebook.glassfishmonitor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for the GF admin REST interface.  Serves a fixed body for
+ * each path and counts the requests it receives; unknown paths get a 404.
+ */
+public class StubGlassFishServer {
+    private final HttpServer server;
+    private final ConcurrentHashMap<String, String> bodies = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    private volatile long delay = 0;
+    private volatile boolean entityTags = false;
+
+    public StubGlassFishServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requestCount.incrementAndGet();
+                pause();
+                String body = bodies.get(exchange.getRequestURI().getPath());
+                if(body == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+                if(entityTags) {
+                    String entityTag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+                    exchange.getResponseHeaders().set("ETag", entityTag);
+                    if(entityTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        notModifiedCount.incrementAndGet();
+                        exchange.sendResponseHeaders(304, -1);
+                        exchange.close();
+                        return;
+                    }
+                }
+                byte[] bytes = body.getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", body.startsWith("{") ? "application/json" : "application/xml");
+                exchange.sendResponseHeaders(200, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+    }
+
+    public StubGlassFishServer start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        ((ExecutorService)server.getExecutor()).shutdownNow();
+    }
+
+    /**
+     * @param path e.g. /management/domain/clusters/list-clusters
+     * @param body The response body, or null to answer 404
+     */
+    public void setResponse(String path, String body) {
+        if(body == null)
+            bodies.remove(path);
+        else
+            bodies.put(path, body);
+    }
+
+    /**
+     * @param delay Milliseconds to wait before answering each request
+     */
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * @param entityTags true to send an ETag with each body and answer a
+     *                   matching If-None-Match with a 304
+     */
+    public void setEntityTags(boolean entityTags) {
+        this.entityTags = entityTags;
+    }
+
+    private void pause() {
+        if(delay <= 0)
+            return;
+        try {
+            Thread.sleep(delay);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getBaseURL() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+}
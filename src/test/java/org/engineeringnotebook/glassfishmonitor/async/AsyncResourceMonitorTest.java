@@ -0,0 +1,76 @@
+package org.engineeringnotebook.glassfishmonitor.async;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.StubGlassFishServer;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+
+/**
+ * Checks that async monitors keep many slow polls in flight on a couple of
+ * threads, against the stub DAS.
+ */
+public class AsyncResourceMonitorTest extends TestCase {
+    private StubGlassFishServer server;
+    private AsyncHttpTransport transport;
+
+    protected void setUp() throws Exception {
+        server = new StubGlassFishServer().start();
+        server.setResponse("/management/domain/clusters/list-clusters", Fixtures.load("list-clusters.json"));
+        for(String cluster : new String[]{"c1", "c2", "c3"})
+            server.setResponse("/management/domain/clusters/cluster/" + cluster + "/list-instances", Fixtures.load("list-instances.json"));
+        transport = new AsyncHttpTransport(2, 1000, 5000, true);
+    }
+
+    protected void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    public void testPollsOverlap() throws Exception {
+        server.setDelay(200);
+        ArrayList<CompletableFuture<ArrayList<Status>>> futures = new ArrayList<CompletableFuture<ArrayList<Status>>>();
+        long start = System.currentTimeMillis();
+        for(int i = 0; i < 30; i++) {
+            AsyncResourceMonitor monitor = AsyncResourceMonitor.forInstanceList(transport, server.getBaseURL(), "c" + (i % 3 + 1), ParserType.JSON);
+            futures.add(monitor.poll());
+        }
+        assertTrue(transport.getInFlightCount() > 2);
+        for(CompletableFuture<ArrayList<Status>> future : futures)
+            assertEquals(3, future.get().size());
+
+        //30 sequential 200 ms requests would take 6 s
+        assertTrue(System.currentTimeMillis() - start < 3000);
+        assertEquals(30, transport.getCompletedCount());
+    }
+
+    public void testUnchangedResponseIsNotParsed() throws Exception {
+        AsyncResourceMonitor monitor = AsyncResourceMonitor.forClusterList(transport, server.getBaseURL(), ParserType.JSON);
+        assertEquals(3, monitor.poll().get().size());
+        assertEquals(3, monitor.poll().get().size());
+        assertEquals(1, monitor.getParseCount());
+        assertEquals(1, monitor.getSkippedParseCount());
+    }
+
+    public void testFailedPollCompletesWithNull() throws ExecutionException, InterruptedException {
+        AsyncResourceMonitor monitor = AsyncResourceMonitor.forInstanceList(transport, server.getBaseURL(), "missing", ParserType.JSON);
+        assertNull(monitor.poll().get());
+        assertNull(monitor.getStatusList());
+    }
+
+    public void testScheduler() throws Exception {
+        AsyncPollingScheduler scheduler = new AsyncPollingScheduler(0.1);
+        for(int i = 0; i < 20; i++) {
+            AsyncResourceMonitor monitor = AsyncResourceMonitor.forClusterList(transport, server.getBaseURL(), ParserType.JSON);
+            monitor.setPollingRate(20);
+            scheduler.register(monitor);
+        }
+        scheduler.start();
+        Thread.sleep(300);
+        scheduler.stop();
+        assertTrue(scheduler.getCompletedCount() >= 20);
+    }
+}
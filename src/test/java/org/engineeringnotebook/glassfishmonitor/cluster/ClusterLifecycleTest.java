@@ -0,0 +1,89 @@
+package org.engineeringnotebook.glassfishmonitor.cluster;
+
+import com.sun.jersey.api.client.Client;
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.MonitoringContext;
+import org.engineeringnotebook.glassfishmonitor.scheduler.PollingScheduler;
+import org.engineeringnotebook.glassfishmonitor.scheduler.StalenessDetector;
+import org.engineeringnotebook.glassfishmonitor.status.ObserverDispatcher;
+import org.engineeringnotebook.glassfishmonitor.status.OverflowPolicy;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusPublisher;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
+
+/**
+ * The instance monitors and observers started for each cluster must be
+ * retired when the cluster disappears, and all of them on close().
+ */
+public class ClusterLifecycleTest extends TestCase {
+    private PollingScheduler scheduler;
+    private StalenessDetector stalenessDetector;
+    private ObserverDispatcher dispatcher;
+    private MonitoringContext context;
+
+    protected void setUp() {
+        //never started, so nothing is polled
+        scheduler = new PollingScheduler(1, 0.0);
+        stalenessDetector = new StalenessDetector();
+        dispatcher = new ObserverDispatcher(1, 4, OverflowPolicy.DROP_OLDEST);
+        context = new MonitoringContext(Client.create(), "http://localhost:1", scheduler, stalenessDetector);
+    }
+
+    protected void tearDown() {
+        scheduler.stop();
+        stalenessDetector.shutdown();
+        dispatcher.shutdown();
+    }
+
+    public void testDeletedClustersAreRetired() {
+        ClusterListStatusObserver observer = new ClusterListStatusObserver(context, 10000);
+        StatusPublisher publisher = new StatusPublisher();
+        publisher.addObserver(observer);
+        context.setObserverDispatcher(dispatcher);
+        int pending = stalenessDetector.getPendingCount();
+
+        publisher.publish(snapshot("c1", "c2", "c3"), false);
+        assertEquals(3, scheduler.getMonitorCount());
+        assertEquals(pending + 3, stalenessDetector.getPendingCount());
+        assertEquals(3, dispatcher.getQueuedObservers().size());
+
+        publisher.publish(snapshot("c1", "c3"), false);
+        assertEquals(2, scheduler.getMonitorCount());
+        assertEquals(pending + 2, stalenessDetector.getPendingCount());
+        assertEquals(2, dispatcher.getQueuedObservers().size());
+        assertEquals("c3", observer.getClusterNames().get(1));
+
+        //a cluster that comes back is watched again
+        publisher.publish(snapshot("c1", "c2", "c3"), false);
+        assertEquals(3, scheduler.getMonitorCount());
+        assertTrue(observer.getClusterNames().contains("c2"));
+
+        observer.close();
+        assertEquals(0, scheduler.getMonitorCount());
+        assertEquals(pending, stalenessDetector.getPendingCount());
+        assertEquals(0, dispatcher.getQueuedObservers().size());
+
+        //a late update does not start anything
+        publisher.publish(snapshot("c4"), false);
+        assertEquals(0, scheduler.getMonitorCount());
+    }
+
+    public void testFullSnapshotRetiresMissingClusters() {
+        ClusterListStatusObserver observer = new ClusterListStatusObserver(context, 10000);
+        observer.update(snapshot("c1", "c2"));
+        assertEquals(2, scheduler.getMonitorCount());
+        observer.update(snapshot("c2"));
+        assertEquals(1, scheduler.getMonitorCount());
+        assertEquals("c2", observer.getClusterNames().get(0));
+        observer.close();
+    }
+
+    private static StatusSnapshot snapshot(String... clusterNames) {
+        ArrayList<Status> statusList = new ArrayList<Status>();
+        for(String clusterName : clusterNames) {
+            statusList.add(new ClusterStatus(clusterName, "RUNNING"));
+        }
+        return new StatusSnapshot(statusList, 0, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,88 @@
+package org.engineeringnotebook.glassfishmonitor.cluster;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+
+/**
+ * Checks that the monitors skip parsing of unchanged list-clusters
+ * responses, both when the server honours If-None-Match and when it does not.
+ */
+public class ConditionalGetTest extends TestCase {
+    private HttpServer server;
+    private volatile boolean sendETag;
+    private volatile String body;
+    private volatile String lastIfNoneMatch;
+
+    protected void setUp() throws Exception {
+        body = Fixtures.load("list-clusters.xml");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/management/domain/clusters/list-clusters", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String etag = "\"" + body.hashCode() + "\"";
+                lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                if(sendETag && etag.equals(lastIfNoneMatch)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] bytes = body.getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/xml");
+                if(sendETag)
+                    exchange.getResponseHeaders().set("ETag", etag);
+                exchange.sendResponseHeaders(200, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    protected void tearDown() {
+        server.stop(0);
+    }
+
+    private ClusterListMonitor newMonitor() {
+        ClusterListMonitor monitor = new ClusterListMonitor("http://127.0.0.1:" + server.getAddress().getPort());
+        monitor.setClient(Client.create());
+        return monitor;
+    }
+
+    public void testNotModified() {
+        sendETag = true;
+        ClusterListMonitor monitor = newMonitor();
+        monitor.run();
+        assertNull(lastIfNoneMatch);
+        monitor.run();
+        monitor.run();
+        assertEquals(3, monitor.getStatusList().size());
+        assertNotNull(lastIfNoneMatch);
+        assertEquals(1, monitor.getParseCount());
+        assertEquals(2, monitor.getNotModifiedCount());
+
+        body = Fixtures.load("list-clusters-empty.xml");
+        monitor.run();
+        assertEquals(0, monitor.getStatusList().size());
+        assertEquals(2, monitor.getParseCount());
+    }
+
+    public void testDigestMatch() {
+        sendETag = false;
+        ClusterListMonitor monitor = newMonitor();
+        monitor.run();
+        monitor.run();
+        monitor.run();
+        assertNull(lastIfNoneMatch);
+        assertEquals(1, monitor.getParseCount());
+        assertEquals(2, monitor.getDigestMatchCount());
+        assertEquals(2, monitor.getSkippedParseCount());
+        assertEquals(3, monitor.getStatusList().size());
+    }
+}
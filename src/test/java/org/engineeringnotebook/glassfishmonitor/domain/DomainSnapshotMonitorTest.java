@@ -0,0 +1,165 @@
+package org.engineeringnotebook.glassfishmonitor.domain;
+
+import com.sun.jersey.api.client.Client;
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.DeltaObserver;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.StubGlassFishServer;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusDelta;
+import org.engineeringnotebook.glassfishmonitor.status.StatusSnapshot;
+
+/**
+ * Checks that the DomainSnapshotMonitor gathers every cluster's instances in
+ * a fixed number of requests and publishes them to the right cluster.
+ */
+public class DomainSnapshotMonitorTest extends TestCase {
+    private StubGlassFishServer server;
+
+    protected void setUp() throws Exception {
+        server = new StubGlassFishServer().start();
+        server.setResponse("/management/domain/clusters/list-clusters", Fixtures.load("list-clusters.xml"));
+    }
+
+    protected void tearDown() {
+        server.stop();
+    }
+
+    private DomainSnapshotMonitor newMonitor() {
+        DomainSnapshotMonitor monitor = new DomainSnapshotMonitor(server.getBaseURL());
+        monitor.setClient(Client.create());
+        return monitor;
+    }
+
+    public void testDomainWideInstances() {
+        checkDomainWideInstances(false);
+    }
+
+    public void testStreamedDomainWideInstances() {
+        checkDomainWideInstances(true);
+    }
+
+    private void checkDomainWideInstances(boolean stream) {
+        server.setResponse("/management/domain/list-instances", Fixtures.load("list-instances-domain.xml"));
+        DomainSnapshotMonitor monitor = newMonitor();
+        monitor.setStreamResponses(stream);
+        RecordingObserver c1 = new RecordingObserver();
+        monitor.getInstanceSubject("c1").addObserver(c1);
+
+        monitor.run();
+        monitor.run();
+        assertEquals(4, server.getRequestCount());
+        assertEquals(2, monitor.getInstanceRequestCount());
+
+        DomainSnapshot snapshot = monitor.getDomainSnapshot();
+        assertEquals(3, snapshot.getClusters().size());
+        assertEquals(2, snapshot.getInstances("c1").size());
+        assertEquals(1, snapshot.getInstances("c2").size());
+        assertEquals(0, snapshot.getInstances("c3").size());
+
+        assertEquals(2, c1.deltas.size());
+        assertEquals(2, c1.deltas.get(0).getAdded().size());
+        assertTrue(c1.deltas.get(1).isEmpty());
+    }
+
+    public void testFallsBackToPerClusterRequests() {
+        //no cluster membership in the domain-wide response
+        server.setResponse("/management/domain/list-instances", Fixtures.load("list-instances.xml"));
+        for(String cluster : new String[]{"c1", "c2", "c3"})
+            server.setResponse("/management/domain/clusters/cluster/" + cluster + "/list-instances", Fixtures.load("list-instances.xml"));
+        DomainSnapshotMonitor monitor = newMonitor();
+
+        monitor.run();
+        assertEquals(3, monitor.getDomainSnapshot().getInstances("c2").size());
+        assertEquals(4, monitor.getInstanceRequestCount());
+
+        //the domain-wide request is not repeated
+        monitor.run();
+        assertEquals(7, monitor.getInstanceRequestCount());
+    }
+
+    public void testRetriesDomainWideRequest() {
+        server.setResponse("/management/domain/list-instances", Fixtures.load("list-instances.xml"));
+        for(String cluster : new String[]{"c1", "c2", "c3"})
+            server.setResponse("/management/domain/clusters/cluster/" + cluster + "/list-instances", Fixtures.load("list-instances.xml"));
+        DomainSnapshotMonitor monitor = newMonitor();
+        monitor.setPerClusterRetry(3);
+        for(int i = 0; i < 3; i++)
+            monitor.run();
+
+        //the DAS now reports membership
+        server.setResponse("/management/domain/list-instances", Fixtures.load("list-instances-domain.xml"));
+        long requests = monitor.getInstanceRequestCount();
+        monitor.run();
+        assertEquals(requests + 1, monitor.getInstanceRequestCount());
+        assertEquals(2, monitor.getDomainSnapshot().getInstances("c1").size());
+        monitor.run();
+        assertEquals(requests + 2, monitor.getInstanceRequestCount());
+    }
+
+    public void testConditionalInstanceRequests() {
+        checkConditionalInstanceRequests(false);
+    }
+
+    public void testStreamedConditionalInstanceRequests() {
+        checkConditionalInstanceRequests(true);
+    }
+
+    private void checkConditionalInstanceRequests(boolean stream) {
+        server.setEntityTags(true);
+        server.setResponse("/management/domain/list-instances", Fixtures.load("list-instances-domain.xml"));
+        DomainSnapshotMonitor monitor = newMonitor();
+        monitor.setStreamResponses(stream);
+        RecordingObserver c1 = new RecordingObserver();
+        monitor.getInstanceSubject("c1").addObserver(c1);
+
+        monitor.run();
+        monitor.run();
+        assertEquals(2, server.getNotModifiedCount());
+        assertEquals(2, monitor.getDomainSnapshot().getInstances("c1").size());
+        assertEquals(2, c1.deltas.size());
+        assertTrue(c1.deltas.get(1).isEmpty());
+    }
+
+    public void testLateObserverReceivesLastInstances() {
+        server.setResponse("/management/domain/list-instances", Fixtures.load("list-instances-domain.xml"));
+        DomainSnapshotMonitor monitor = newMonitor();
+        monitor.getInstanceSubject("c1");
+        monitor.run();
+
+        RecordingObserver c1 = new RecordingObserver();
+        monitor.getInstanceSubject("c1").addObserver(c1);
+        assertEquals(1, c1.deltas.size());
+        assertEquals(2, c1.deltas.get(0).getAdded().size());
+
+        monitor.run();
+        assertEquals(2, c1.deltas.size());
+        assertTrue(c1.deltas.get(1).isEmpty());
+    }
+
+    public void testMissingInstancesAreNotPublished() {
+        DomainSnapshotMonitor monitor = newMonitor();
+        RecordingObserver c1 = new RecordingObserver();
+        monitor.getInstanceSubject("c1").addObserver(c1);
+
+        monitor.run();
+        assertEquals(3, monitor.getStatusList().size());
+        assertNull(monitor.getDomainSnapshot());
+        assertEquals(0, c1.deltas.size());
+    }
+
+    private static class RecordingObserver implements DeltaObserver {
+        final ArrayList<StatusDelta> deltas = new ArrayList<StatusDelta>();
+
+        public void updateDelta(StatusDelta delta) {
+            deltas.add(delta);
+        }
+
+        public void update(StatusSnapshot snapshot) {
+        }
+
+        public void setStatusWaitTime(long milliseconds) {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.engineeringnotebook.glassfishmonitor.instance;
+
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.status.NameRegistry;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+import org.engineeringnotebook.glassfishmonitor.status.StatusState;
+
+/**
+ * Each parse into a buffer must create new statuses, names must resolve to
+ * one shared id, and every handler must keep the text of an unknown state.
+ */
+public class InstanceColumnsTest extends TestCase {
+
+    public void testRegistryIdsMatchForStringsAndChars() {
+        NameRegistry registry = new NameRegistry();
+        int id = registry.id("columns-test-in1");
+        char[] buffer = "xxcolumns-test-in1yy".toCharArray();
+        assertEquals(id, registry.id(buffer, 2, 16));
+        assertSame(registry.name(id), registry.intern(new String("columns-test-in1")));
+        assertEquals(StatusState.REQUIRES_RESTART, StatusState.fromChars("REQUIRES_RESTART".toCharArray(), 0, 16));
+        assertEquals(StatusState.UNKNOWN, StatusState.fromString("STARTING"));
+    }
+
+    public void testUnknownStateKeepsReportedText() throws Exception {
+        String xml = Fixtures.load("list-instances.xml").replace("REQUIRES_RESTART", "STARTING");
+        String json = Fixtures.load("list-instances.json").replace("REQUIRES_RESTART", "STARTING");
+        ArrayList<Status> stax = new InstanceListStaxStatusHandler().parseXMLData(xml);
+        ArrayList<Status> dom = new InstanceListStatusHandler().parseXMLData(xml);
+        ArrayList<Status> parsed = new InstanceListJsonStatusHandler().parseXMLData(json);
+
+        InstanceStatus starting = null;
+        for(Status status : stax) {
+            if(status.getState() == StatusState.UNKNOWN)
+                starting = (InstanceStatus)status;
+        }
+        assertNotNull(starting);
+        assertEquals("STARTING", starting.getStateText());
+        assertTrue(starting.getStatusString().indexOf("UNKNOWN(STARTING)") > 0);
+        assertEquals(stax, dom);
+        assertEquals(stax, parsed);
+        assertFalse(starting.equals(new InstanceStatus(starting.getName(), "STOPPING", starting.getInstanceUptime(), starting.getClusterName())));
+    }
+
+    public void testEqualityIncludesCluster() {
+        InstanceStatus inC1 = new InstanceStatus("in1", StatusState.RUNNING, 10L, "c1");
+        assertEquals(inC1, new InstanceStatus("in1", "RUNNING", 10L, "c1"));
+        assertFalse(inC1.equals(inC1.withClusterName("c2")));
+        assertFalse(inC1.equals(new InstanceStatus("in1", StatusState.RUNNING, 10L, null)));
+    }
+
+    public void testUnchangedInstancesAreReused() throws Exception {
+        String json = Fixtures.load("list-instances.json");
+        String xml = Fixtures.load("list-instances.xml");
+        InstanceColumns columns = new InstanceColumns(1);
+
+        assertTrue(new InstanceListJsonStatusHandler().parseInto(json, columns));
+        ArrayList<Status> first = columns.toStatusList(null);
+        assertTrue(new InstanceListStaxStatusHandler().parseInto(xml, columns));
+        ArrayList<Status> second = columns.toStatusList(first);
+
+        assertEquals(3, second.size());
+        for(int i = 0; i < first.size(); i++)
+            assertSame(first.get(i), second.get(i));
+
+        String changed = xml.replace("REQUIRES_RESTART", "RUNNING");
+        assertTrue(new InstanceListStaxStatusHandler().parseInto(changed, columns));
+        ArrayList<Status> third = columns.toStatusList(second);
+        int reused = 0;
+        for(int i = 0; i < third.size(); i++) {
+            if(third.get(i) == second.get(i)) {
+                reused++;
+            }
+            else {
+                //the earlier snapshot keeps the status it was given
+                assertEquals(StatusState.REQUIRES_RESTART, second.get(i).getState());
+                assertEquals(StatusState.RUNNING, third.get(i).getState());
+            }
+        }
+        assertEquals(2, reused);
+    }
+}
@@ -0,0 +1,163 @@
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.status.AbstractStatusMonitor;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+
+/**
+ * A failing DAS must stop being polled until a single probe finds it
+ * answering again, and the rest of the domain must follow the probe.
+ */
+public class CircuitBreakerTest extends TestCase {
+    private final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+    private Level level;
+
+    //the first log record of a run can take longer than the open periods tested here
+    protected void setUp() {
+        level = logger.getLevel();
+        logger.setLevel(Level.OFF);
+    }
+
+    protected void tearDown() {
+        logger.setLevel(level);
+    }
+
+    public void testOpensProbesAndCloses() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("das", 3, 200, 1000);
+        for(int i = 0; i < 2; i++) {
+            CircuitBreaker.Permit permit = breaker.tryAcquire();
+            assertNotNull(permit);
+            assertFalse(permit.isProbe());
+            breaker.recordFailure(permit);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.recordFailure(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire());
+        assertTrue(breaker.getRetryDelay() > 0 && breaker.getRetryDelay() <= 200);
+
+        Thread.sleep(220);
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertTrue(probe.isProbe());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        //only one probe at a time
+        assertNull(breaker.tryAcquire());
+        breaker.recordFailure(probe);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        //the second period is longer
+        assertTrue(breaker.getRetryDelay() > 150);
+
+        Thread.sleep(420);
+        breaker.recordSuccess(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2, breaker.getOpenedCount());
+        assertEquals(2, breaker.getRejectedCount());
+    }
+
+    public void testOutcomeOfEarlierCyclesIgnored() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("das", 1, 200, 200);
+        CircuitBreaker.Permit slow = breaker.tryAcquire();
+        breaker.recordFailure(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        //a cycle that started before the breaker opened cannot close it
+        breaker.recordSuccess(slow);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(220);
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        //nor decide the probe
+        breaker.recordFailure(slow);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.recordSuccess(probe);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getOpenedCount());
+    }
+
+    public void testClientErrorsDoNotOpen() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        CircuitBreaker breaker = new CircuitBreaker("das", 2, 300, 300);
+        PollingScheduler scheduler = new PollingScheduler(1, 0.0);
+        AbstractStatusMonitor monitor = new AbstractStatusMonitor() {
+            public ArrayList<Status> queryGFStatus() {
+                //e.g. a 404, or a response that would not parse
+                attempts.incrementAndGet();
+                return null;
+            }
+            protected String queryResponse(Client client) {
+                return null;
+            }
+            protected ArrayList<Status> parseResponse(String response) {
+                return null;
+            }
+        };
+        monitor.setPollingRate(10);
+        scheduler.register(monitor, null, breaker);
+        scheduler.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while(attempts.get() < 10 && System.currentTimeMillis() < deadline)
+                Thread.sleep(5);
+            assertTrue(attempts.get() >= 10);
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+            assertEquals(0, breaker.getOpenedCount());
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    public void testSchedulerStopsPollingFailingDomain() throws Exception {
+        final AtomicBoolean failing = new AtomicBoolean(true);
+        final AtomicInteger attempts = new AtomicInteger();
+        CircuitBreaker breaker = new CircuitBreaker("das", 2, 300, 300);
+        PollingScheduler scheduler = new PollingScheduler(2, 0.0);
+        scheduler.setGlobalBulkhead(new Bulkhead("all", 1));
+        ArrayList<AbstractStatusMonitor> monitors = new ArrayList<AbstractStatusMonitor>();
+        for(int i = 0; i < 4; i++) {
+            AbstractStatusMonitor monitor = new AbstractStatusMonitor() {
+                public ArrayList<Status> queryGFStatus() {
+                    attempts.incrementAndGet();
+                    if(failing.get())
+                        throw new ClientHandlerException("Connection refused");
+                    return new ArrayList<Status>();
+                }
+                protected String queryResponse(Client client) {
+                    return null;
+                }
+                protected ArrayList<Status> parseResponse(String response) {
+                    return null;
+                }
+            };
+            monitor.setPollingRate(10);
+            monitors.add(monitor);
+            scheduler.register(monitor, null, breaker);
+        }
+        scheduler.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while(breaker.getState() != CircuitBreaker.State.OPEN && System.currentTimeMillis() < deadline)
+                Thread.sleep(5);
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            int opened = attempts.get();
+            Thread.sleep(100);
+            assertEquals(opened, attempts.get());
+
+            failing.set(false);
+            while(breaker.getState() != CircuitBreaker.State.CLOSED && System.currentTimeMillis() < deadline)
+                Thread.sleep(5);
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+            Thread.sleep(100);
+            for(AbstractStatusMonitor monitor : monitors)
+                assertNotNull(monitor.getSnapshot());
+            assertTrue(breaker.getRejectedCount() > 0);
+        } finally {
+            scheduler.stop();
+        }
+    }
+}
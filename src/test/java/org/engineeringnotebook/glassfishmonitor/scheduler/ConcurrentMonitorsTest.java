@@ -0,0 +1,128 @@
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import com.sun.jersey.api.client.Client;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.StubGlassFishServer;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListMonitor;
+import org.engineeringnotebook.glassfishmonitor.status.ParserType;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+
+/**
+ * Runs hundreds of monitors, each against its own endpoint on one of several
+ * stub DASes, on a shared scheduler while other threads read their status.
+ * Every monitor must only ever report its own cluster's instances.
+ */
+public class ConcurrentMonitorsTest extends TestCase {
+    private static final int SERVERS = 4;
+    private static final int CLUSTERS_PER_SERVER = 60;
+    private final ArrayList<StubGlassFishServer> servers = new ArrayList<StubGlassFishServer>();
+
+    protected void setUp() throws Exception {
+        String clusters = Fixtures.load("list-clusters.xml");
+        String instances = Fixtures.load("list-instances.xml");
+        for(int s = 0; s < SERVERS; s++) {
+            StubGlassFishServer server = new StubGlassFishServer().start();
+            server.setResponse("/management/domain/clusters/list-clusters", clusters);
+            for(int c = 0; c < CLUSTERS_PER_SERVER; c++) {
+                String cluster = clusterName(s, c);
+                server.setResponse("/management/domain/clusters/cluster/" + cluster + "/list-instances",
+                        instances.replace("value=\"in", "value=\"" + cluster + "-in"));
+            }
+            servers.add(server);
+        }
+    }
+
+    protected void tearDown() {
+        for(StubGlassFishServer server : servers)
+            server.stop();
+    }
+
+    private static String clusterName(int server, int cluster) {
+        return "s" + server + "c" + cluster;
+    }
+
+    public void testMonitorsOnSharedScheduler() throws Exception {
+        final PollingScheduler scheduler = new PollingScheduler(8, 0.2);
+        Client client = Client.create();
+        final ArrayList<InstanceListMonitor> monitors = new ArrayList<InstanceListMonitor>();
+        ArrayList<ClusterListMonitor> clusterMonitors = new ArrayList<ClusterListMonitor>();
+        for(int s = 0; s < SERVERS; s++) {
+            String baseURL = servers.get(s).getBaseURL();
+            ClusterListMonitor clusterMonitor = new ClusterListMonitor(baseURL);
+            clusterMonitor.setClient(client);
+            clusterMonitor.setPollingRate(20);
+            clusterMonitors.add(clusterMonitor);
+            scheduler.register(clusterMonitor);
+            for(int c = 0; c < CLUSTERS_PER_SERVER; c++) {
+                InstanceListMonitor monitor = new InstanceListMonitor(clusterName(s, c), baseURL);
+                monitor.setClient(client);
+                monitor.setParserType(c % 2 == 0 ? ParserType.DOM : ParserType.STAX);
+                monitor.setPollingRate(20);
+                monitors.add(monitor);
+                scheduler.register(monitor);
+            }
+        }
+
+        //readers poll getStatusList() on other threads while the monitors run
+        final AtomicBoolean reading = new AtomicBoolean(true);
+        final AtomicInteger wrongCluster = new AtomicInteger();
+        ArrayList<Thread> readers = new ArrayList<Thread>();
+        for(int r = 0; r < 4; r++) {
+            Thread reader = new Thread() {
+                public void run() {
+                    while(reading.get()) {
+                        for(InstanceListMonitor monitor : monitors) {
+                            if(!ownInstances(monitor, monitor.getStatusList()))
+                                wrongCluster.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            reader.start();
+            readers.add(reader);
+        }
+
+        scheduler.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while(!allPolled(monitors) && System.currentTimeMillis() < deadline)
+            Thread.sleep(50);
+        Thread.sleep(200);
+        scheduler.stop();
+        reading.set(false);
+        for(Thread reader : readers)
+            reader.join();
+
+        assertEquals(0, wrongCluster.get());
+        for(InstanceListMonitor monitor : monitors) {
+            assertEquals(monitor.getClusterName(), 3, monitor.getStatusList().size());
+            assertTrue(ownInstances(monitor, monitor.getStatusList()));
+            assertEquals(1, monitor.getParseCount());
+        }
+        for(ClusterListMonitor clusterMonitor : clusterMonitors)
+            assertNotNull(clusterMonitor.getStatusList());
+    }
+
+    private static boolean allPolled(ArrayList<InstanceListMonitor> monitors) {
+        for(InstanceListMonitor monitor : monitors) {
+            if(monitor.getSkippedParseCount() == 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean ownInstances(InstanceListMonitor monitor, List<Status> statusList) {
+        if(statusList == null)
+            return true;
+        for(Status status : statusList) {
+            if(!status.getName().startsWith(monitor.getClusterName() + "-"))
+                return false;
+        }
+        return true;
+    }
+}
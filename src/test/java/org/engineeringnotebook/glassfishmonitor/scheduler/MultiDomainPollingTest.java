@@ -0,0 +1,74 @@
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import com.sun.jersey.api.client.Client;
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.StubGlassFishServer;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
+
+/**
+ * Two domains polled by one scheduler: each monitor must query its own DAS,
+ * and a slow DAS must not hold up the other domain.
+ */
+public class MultiDomainPollingTest extends TestCase {
+    private static final String LIST_CLUSTERS = "/management/domain/clusters/list-clusters";
+    private StubGlassFishServer fastDAS;
+    private StubGlassFishServer slowDAS;
+
+    protected void setUp() throws Exception {
+        String body = Fixtures.load("list-clusters.xml");
+        fastDAS = new StubGlassFishServer().start();
+        fastDAS.setResponse(LIST_CLUSTERS, body);
+        slowDAS = new StubGlassFishServer().start();
+        slowDAS.setResponse(LIST_CLUSTERS, body);
+        slowDAS.setDelay(300);
+    }
+
+    protected void tearDown() {
+        fastDAS.stop();
+        slowDAS.stop();
+    }
+
+    private ClusterListMonitor newMonitor(StubGlassFishServer das, long pollingRate) {
+        ClusterListMonitor monitor = new ClusterListMonitor(das.getBaseURL());
+        monitor.setClient(Client.create());
+        monitor.setPollingRate(pollingRate);
+        return monitor;
+    }
+
+    public void testMonitorsKeepTheirOwnURL() {
+        ClusterListMonitor first = newMonitor(fastDAS, 0);
+        ClusterListMonitor second = newMonitor(slowDAS, 0);
+        slowDAS.setDelay(0);
+
+        first.run();
+        second.run();
+        first.run();
+
+        assertEquals(2, fastDAS.getRequestCount());
+        assertEquals(1, slowDAS.getRequestCount());
+    }
+
+    public void testSlowDomainIsContained() throws Exception {
+        PollingScheduler scheduler = new PollingScheduler(2, 0.0);
+        Bulkhead slowBulkhead = new Bulkhead("slow", 1);
+        ArrayList<ClusterListMonitor> slowMonitors = new ArrayList<ClusterListMonitor>();
+        for(int i = 0; i < 4; i++) {
+            ClusterListMonitor monitor = newMonitor(slowDAS, 10);
+            slowMonitors.add(monitor);
+            scheduler.register(monitor, slowBulkhead);
+        }
+        ClusterListMonitor fastMonitor = newMonitor(fastDAS, 20);
+        scheduler.register(fastMonitor, new Bulkhead("fast", 1));
+
+        scheduler.start();
+        Thread.sleep(800);
+        scheduler.stop();
+
+        assertTrue(slowDAS.getRequestCount() > 0);
+        assertTrue(slowBulkhead.getRejectedCount() > 0);
+        assertTrue("fast domain polled " + fastDAS.getRequestCount() + " times", fastDAS.getRequestCount() >= 10);
+        assertNotNull(fastMonitor.getStatusList());
+    }
+}
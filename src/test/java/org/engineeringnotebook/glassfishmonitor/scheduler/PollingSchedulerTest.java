@@ -0,0 +1,89 @@
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import com.sun.jersey.api.client.Client;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.status.AbstractStatusMonitor;
+import org.engineeringnotebook.glassfishmonitor.status.Status;
+
+/**
+ * Unit tests for the shared PollingScheduler.
+ */
+public class PollingSchedulerTest extends TestCase {
+
+    /**
+     * Counts its poll cycles instead of querying a GF server
+     */
+    private static class CountingMonitor extends AbstractStatusMonitor {
+        final AtomicInteger polls = new AtomicInteger();
+
+        public ArrayList<Status> queryGFStatus() {
+            polls.incrementAndGet();
+            return new ArrayList<Status>();
+        }
+
+        protected String queryResponse(Client client) {
+            return null;
+        }
+
+        protected ArrayList<Status> parseResponse(String response) {
+            return null;
+        }
+    }
+
+    public void testManyMonitorsShareFixedPool() throws Exception {
+        PollingScheduler scheduler = new PollingScheduler(2, 0.2);
+        ArrayList<CountingMonitor> monitors = new ArrayList<CountingMonitor>();
+        for(int i = 0; i < 200; i++) {
+            CountingMonitor monitor = new CountingMonitor();
+            monitor.setPollingRate(20);
+            monitors.add(monitor);
+            scheduler.register(monitor);
+        }
+        scheduler.start();
+        Thread.sleep(300);
+
+        assertEquals(200, scheduler.getMonitorCount());
+        assertEquals(2, scheduler.getPoolSize());
+        for(CountingMonitor monitor : monitors) {
+            assertTrue(monitor.polls.get() > 0);
+            assertTrue(scheduler.getScheduleLag(monitor) >= 0);
+        }
+        scheduler.stop();
+    }
+
+    public void testUnregisterStopsPolling() throws Exception {
+        PollingScheduler scheduler = new PollingScheduler(1, 0.0);
+        CountingMonitor monitor = new CountingMonitor();
+        monitor.setPollingRate(10);
+        scheduler.register(monitor);
+        scheduler.start();
+        Thread.sleep(100);
+
+        scheduler.unregister(monitor);
+        assertEquals(-1, scheduler.getScheduleLag(monitor));
+        Thread.sleep(30);
+        int polls = monitor.polls.get();
+        Thread.sleep(100);
+        assertEquals(polls, monitor.polls.get());
+        scheduler.stop();
+    }
+
+    public void testFailingCycleIsRescheduled() throws Exception {
+        PollingScheduler scheduler = new PollingScheduler(1, 0.0);
+        final AtomicInteger attempts = new AtomicInteger();
+        AbstractStatusMonitor monitor = new CountingMonitor() {
+            public ArrayList<Status> queryGFStatus() {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("DAS unavailable");
+            }
+        };
+        monitor.setPollingRate(10);
+        scheduler.register(monitor);
+        scheduler.start();
+        Thread.sleep(150);
+        scheduler.stop();
+        assertTrue(attempts.get() > 1);
+    }
+}
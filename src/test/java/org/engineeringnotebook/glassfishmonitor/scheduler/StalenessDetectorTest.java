@@ -0,0 +1,68 @@
+package org.engineeringnotebook.glassfishmonitor.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the shared StalenessDetector.
+ */
+public class StalenessDetectorTest extends TestCase {
+    private StalenessDetector detector;
+
+    protected void setUp() {
+        detector = new StalenessDetector();
+    }
+
+    protected void tearDown() {
+        detector.shutdown();
+    }
+
+    public void testFiresWhenNotRearmed() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        StalenessDetector.Deadline deadline = detector.register(50, new StaleListener() {
+            public void statusStale(long millisSinceLastUpdate) {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(deadline.isStale());
+    }
+
+    public void testRearmPostponesAndReportsOncePerPeriod() throws Exception {
+        final AtomicInteger fired = new AtomicInteger();
+        StalenessDetector.Deadline deadline = detector.register(200, new StaleListener() {
+            public void statusStale(long millisSinceLastUpdate) {
+                fired.incrementAndGet();
+            }
+        });
+        for(int i = 0; i < 10; i++) {
+            Thread.sleep(40);
+            deadline.rearm();
+        }
+        assertEquals(0, fired.get());
+        //a burst of updates must not queue a check per update
+        assertTrue(detector.getPendingCount() <= 1);
+
+        Thread.sleep(600);
+        assertEquals(1, fired.get());
+
+        deadline.rearm();
+        assertFalse(deadline.isStale());
+        Thread.sleep(600);
+        assertEquals(2, fired.get());
+    }
+
+    public void testCancelledDeadlineNeverFires() throws Exception {
+        final AtomicInteger fired = new AtomicInteger();
+        StalenessDetector.Deadline deadline = detector.register(50, new StaleListener() {
+            public void statusStale(long millisSinceLastUpdate) {
+                fired.incrementAndGet();
+            }
+        });
+        deadline.cancel();
+        Thread.sleep(200);
+        assertEquals(0, fired.get());
+    }
+}
@@ -0,0 +1,88 @@
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterStatus;
+
+/**
+ * The rate must back off while nothing changes, return to the minimum on a
+ * change or transition, and never poll a slow or failing DAS harder.
+ */
+public class AdaptivePollingRateTest extends TestCase {
+    private StatusPublisher publisher;
+
+    protected void setUp() {
+        publisher = new StatusPublisher();
+    }
+
+    public void testBacksOffWhileStable() {
+        AdaptivePollingRate rate = new AdaptivePollingRate(1000, 1000, 5000);
+        rate.recordPoll(publish("RUNNING"), 10);
+        assertEquals(1000, rate.getRate());
+
+        rate.recordPoll(publish("RUNNING"), 10);
+        assertEquals(1500, rate.getRate());
+        for(int i = 0; i < 10; i++)
+            rate.recordPoll(publish("RUNNING"), 10);
+        assertEquals(5000, rate.getRate());
+    }
+
+    public void testChangeAndTransitionPollAtMinimum() {
+        AdaptivePollingRate rate = new AdaptivePollingRate(8000, 1000, 30000);
+        rate.recordPoll(publish("RUNNING"), 10);
+        rate.recordPoll(publish("RUNNING"), 10);
+        assertTrue(rate.getRate() > 1000);
+
+        rate.recordPoll(publish("NOT_RUNNING"), 10);
+        assertEquals(1000, rate.getRate());
+
+        //still part way through starting, so stay at the minimum
+        rate.recordPoll(publish("PARTIALLY_RUNNING"), 10);
+        rate.recordPoll(publish("PARTIALLY_RUNNING"), 10);
+        assertEquals(1000, rate.getRate());
+
+        rate.recordPoll(publish("RUNNING"), 10);
+        rate.recordPoll(publish("RUNNING"), 10);
+        assertEquals(1500, rate.getRate());
+        rate.recordChange();
+        assertEquals(1000, rate.getRate());
+    }
+
+    public void testTransitionHoldIsBounded() {
+        AdaptivePollingRate rate = new AdaptivePollingRate(1000, 1000, 30000);
+        rate.recordPoll(publish("RUNNING"), 10);
+        rate.recordPoll(publish("PARTIALLY_RUNNING"), 10);
+        //a cluster with an instance down for good
+        for(int i = 0; i < 30; i++)
+            rate.recordPoll(publish("PARTIALLY_RUNNING"), 10);
+        assertEquals(1000, rate.getRate());
+        rate.recordPoll(publish("PARTIALLY_RUNNING"), 10);
+        assertEquals(1500, rate.getRate());
+
+        //a real change starts the hold again
+        rate.recordPoll(publish("NOT_RUNNING"), 10);
+        rate.recordPoll(publish("PARTIALLY_RUNNING"), 10);
+        rate.recordPoll(publish("PARTIALLY_RUNNING"), 10);
+        assertEquals(1000, rate.getRate());
+    }
+
+    public void testSlowOrFailingServerIsPolledLess() {
+        AdaptivePollingRate rate = new AdaptivePollingRate(1000, 1000, 30000);
+        rate.recordPoll(publish("NOT_RUNNING"), 500);
+        assertEquals(5000, rate.getRate());
+
+        rate.recordPoll(null, 500);
+        assertEquals(10000, rate.getRate());
+        //the average response time is now 2.4 s
+        rate.recordPoll(null, 10000);
+        assertEquals(24000, rate.getRate());
+        rate.recordPoll(null, 10000);
+        assertEquals(30000, rate.getRate());
+    }
+
+    private StatusDelta publish(String state) {
+        ArrayList<Status> statusList = new ArrayList<Status>();
+        statusList.add(new ClusterStatus("c1", state));
+        return publisher.publish(new StatusSnapshot(statusList, 0, System.currentTimeMillis()), false);
+    }
+}
@@ -0,0 +1,42 @@
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import com.sun.jersey.api.client.Client;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
+
+/**
+ * Every parse is timed for the monitor and for its resource.
+ */
+public class ParseMetricsTest extends TestCase {
+
+    public void testParseTimeIsRecorded() throws Exception {
+        final String[] responses = {Fixtures.load("list-clusters.xml"), Fixtures.load("list-clusters-empty.xml")};
+        final int[] polls = new int[1];
+        ClusterListMonitor monitor = new ClusterListMonitor("http://localhost") {
+            protected String queryResponse(Client client) {
+                return responses[polls[0]++ % 2];
+            }
+        };
+        monitor.setClient(Client.create());
+        ParseMetrics metrics = ParseMetrics.forResource("list-clusters");
+        long before = metrics.getCount();
+
+        monitor.run();
+        monitor.run();
+
+        assertEquals(2, monitor.getParseCount());
+        assertTrue(monitor.getParseNanos() > 0);
+        assertEquals(before + 2, metrics.getCount());
+        assertTrue(metrics.getMaxNanos() > 0);
+        assertSame(metrics, ParseMetrics.getAll().get("list-clusters"));
+    }
+
+    public void testMaxAndMean() {
+        ParseMetrics metrics = new ParseMetrics("test");
+        metrics.record(2000000);
+        metrics.record(4000000);
+        assertEquals(4000000, metrics.getMaxNanos());
+        assertEquals(3.0, metrics.getMeanMillis(), 0.0001);
+    }
+}
@@ -0,0 +1,224 @@
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.DeltaObserver;
+import org.engineeringnotebook.glassfishmonitor.Observer;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceStatus;
+
+/**
+ * A slow observer behind a QueuedObserver must not hold up the publisher,
+ * and each overflow policy must leave it with the right statuses.
+ */
+public class QueuedObserverTest extends TestCase {
+    private ExecutorService executor;
+
+    protected void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    public void testDropOldest() throws Exception {
+        SlowObserver slow = new SlowObserver();
+        QueuedObserver queued = QueuedObserver.create(slow, 2, OverflowPolicy.DROP_OLDEST, executor);
+        publishWhileBlocked(queued, slow, 10);
+
+        assertEquals(7, queued.getDroppedCount());
+        assertEquals(3, slow.sequences.size());
+        assertEquals(Long.valueOf(1), slow.sequences.get(0));
+        assertEquals(Long.valueOf(10), slow.sequences.get(2));
+        assertTrue(queued.getMaxLagMillis() >= 50);
+    }
+
+    public void testLatest() throws Exception {
+        SlowObserver slow = new SlowObserver();
+        QueuedObserver queued = QueuedObserver.create(slow, 8, OverflowPolicy.LATEST, executor);
+        publishWhileBlocked(queued, slow, 10);
+
+        assertEquals(8, queued.getCoalescedCount());
+        assertEquals(2, slow.sequences.size());
+        assertEquals(Long.valueOf(10), slow.sequences.get(1));
+    }
+
+    public void testBlockWaitsForRoom() throws Exception {
+        final SlowObserver slow = new SlowObserver();
+        final QueuedObserver queued = QueuedObserver.create(slow, 1, OverflowPolicy.BLOCK, executor);
+        queued.update(snapshot(1, "RUNNING"));
+        assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+        queued.update(snapshot(2, "RUNNING"));
+
+        Thread publisher = new Thread() {
+            public void run() {
+                queued.update(snapshot(3, "RUNNING"));
+            }
+        };
+        publisher.start();
+        publisher.join(100);
+        assertTrue(publisher.isAlive());
+
+        slow.release.countDown();
+        publisher.join(5000);
+        assertFalse(publisher.isAlive());
+        awaitDelivered(queued, 3);
+        assertEquals(0, queued.getDroppedCount());
+    }
+
+    public void testBlockGivesUpWaiting() throws Exception {
+        SlowObserver slow = new SlowObserver();
+        QueuedObserver queued = QueuedObserver.create(slow, 1, OverflowPolicy.BLOCK, executor);
+        queued.update(snapshot(1, "RUNNING"));
+        assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+        queued.update(snapshot(2, "RUNNING"));
+
+        long start = System.currentTimeMillis();
+        queued.update(snapshot(3, "RUNNING"));
+        assertTrue(System.currentTimeMillis() - start >= QueuedObserver.MAX_BLOCK_MILLIS);
+        assertEquals(1, queued.getDroppedCount());
+
+        slow.release.countDown();
+        awaitDelivered(queued, 2);
+        assertEquals(Long.valueOf(3), slow.sequences.get(1));
+    }
+
+    public void testDeltaObserverSeesEveryChange() throws Exception {
+        final HashMap<String, StatusState> seen = new HashMap<String, StatusState>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        DeltaObserver observer = new DeltaObserver() {
+            public void updateDelta(StatusDelta delta) {
+                entered.countDown();
+                await(release);
+                for(Status status : delta.getAdded())
+                    seen.put(status.getName(), status.getState());
+                for(Status status : delta.getStateChanged())
+                    seen.put(status.getName(), status.getState());
+                for(Status status : delta.getRemoved())
+                    seen.remove(status.getName());
+            }
+            public void update(StatusSnapshot snapshot) {
+            }
+            public void setStatusWaitTime(long milliseconds) {
+            }
+        };
+        StatusPublisher publisher = new StatusPublisher();
+        QueuedObserver queued = QueuedObserver.create(observer, 1, OverflowPolicy.DROP_OLDEST, executor);
+        publisher.addObserver(queued);
+
+        publisher.publish(snapshot(1, "RUNNING", "in1"), false);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        publisher.publish(snapshot(2, "NOT_RUNNING", "in1", "in2"), false);
+        publisher.publish(snapshot(3, "RUNNING", "in2"), false);
+        publisher.publish(snapshot(4, "RUNNING", "in2", "in3"), false);
+        release.countDown();
+        awaitDelivered(queued, 2);
+
+        assertTrue(queued.getDroppedCount() > 0);
+        assertEquals(2, seen.size());
+        assertEquals(StatusState.RUNNING, seen.get("in2"));
+        assertEquals(StatusState.RUNNING, seen.get("in3"));
+    }
+
+    public void testLatestDeltaStaysFlatUnderBurst() throws Exception {
+        final HashMap<String, StatusState> seen = new HashMap<String, StatusState>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        DeltaObserver observer = new DeltaObserver() {
+            public void updateDelta(StatusDelta delta) {
+                entered.countDown();
+                await(release);
+                for(Status status : delta.getAdded())
+                    seen.put(status.getName(), status.getState());
+                for(Status status : delta.getStateChanged())
+                    seen.put(status.getName(), status.getState());
+                for(Status status : delta.getRemoved())
+                    seen.remove(status.getName());
+            }
+            public void update(StatusSnapshot snapshot) {
+            }
+            public void setStatusWaitTime(long milliseconds) {
+            }
+        };
+        StatusPublisher publisher = new StatusPublisher();
+        QueuedObserver queued = QueuedObserver.create(observer, 16, OverflowPolicy.LATEST, executor);
+        publisher.addObserver(queued);
+
+        publisher.publish(snapshot(1, "RUNNING", "in0"), false);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for(int i = 2; i <= 1000; i++) {
+            publisher.publish(snapshot(i, i % 2 == 0 ? "NOT_RUNNING" : "RUNNING", "in" + (i % 7), "in" + (i % 5)), false);
+            assertTrue(queued.getQueueSize() <= 1);
+        }
+        release.countDown();
+        awaitDelivered(queued, 2);
+
+        assertEquals(998, queued.getCoalescedCount());
+        assertEquals(0, queued.getQueueSize());
+        //1000 % 7 and 1000 % 5
+        assertEquals(2, seen.size());
+        assertEquals(StatusState.NOT_RUNNING, seen.get("in6"));
+        assertEquals(StatusState.NOT_RUNNING, seen.get("in0"));
+    }
+
+    /**
+     * Publishes the first snapshot, waits until the observer is busy with it,
+     * then publishes the rest without waiting
+     */
+    private void publishWhileBlocked(QueuedObserver queued, SlowObserver slow, int count) throws Exception {
+        queued.update(snapshot(1, "RUNNING"));
+        assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+        long start = System.currentTimeMillis();
+        for(int i = 2; i <= count; i++)
+            queued.update(snapshot(i, "RUNNING"));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        Thread.sleep(50);
+        slow.release.countDown();
+        awaitDelivered(queued, count - queued.getDroppedCount() - queued.getCoalescedCount());
+    }
+
+    private static void awaitDelivered(QueuedObserver queued, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(queued.getDeliveredCount() < count && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(count, queued.getDeliveredCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch(InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static StatusSnapshot snapshot(long sequence, String state, String... names) {
+        ArrayList<Status> statusList = new ArrayList<Status>();
+        for(String name : names) {
+            statusList.add(new InstanceStatus(name, StatusState.fromString(state), InstanceStatus.NO_UPTIME, null));
+        }
+        return new StatusSnapshot(statusList, sequence, System.currentTimeMillis());
+    }
+
+    private static class SlowObserver implements Observer {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Long> sequences = new ArrayList<Long>();
+
+        public void update(StatusSnapshot snapshot) {
+            entered.countDown();
+            await(release);
+            sequences.add(snapshot.getSequence());
+        }
+
+        public void setStatusWaitTime(long milliseconds) {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import com.sun.jersey.api.client.Client;
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.DeltaObserver;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListStaxStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceStatus;
+
+/**
+ * Checks the delta computed between two status lists, that a monitor
+ * skips parsing when the response has not changed, and that the snapshots
+ * it publishes are numbered and read-only.
+ */
+public class StatusDeltaTest extends TestCase {
+
+    public void testComputeDelta() {
+        ArrayList<Status> before = new ArrayList<Status>();
+        before.add(instance("in1", "RUNNING", "1000"));
+        before.add(instance("in2", "RUNNING", "1000"));
+        before.add(instance("in3", "RUNNING", "1000"));
+
+        ArrayList<Status> after = new ArrayList<Status>();
+        after.add(instance("in1", "RUNNING", "1000"));
+        after.add(instance("in2", "RUNNING", "6000"));
+        after.add(instance("in3", "NOT_RUNNING", "0"));
+        after.add(instance("in4", "RUNNING", "10"));
+
+        StatusDelta delta = StatusDelta.compute(before, snapshot(after));
+        assertEquals(1, delta.getAdded().size());
+        assertEquals("in4", delta.getAdded().get(0).getName());
+        assertEquals(0, delta.getRemoved().size());
+        assertEquals(1, delta.getStateChanged().size());
+        assertEquals("in3", delta.getStateChanged().get(0).getName());
+        assertEquals(1, delta.getUptimeChanged().size());
+        assertEquals("in2", delta.getUptimeChanged().get(0).getName());
+
+        delta = StatusDelta.compute(after, snapshot(before));
+        assertEquals(1, delta.getRemoved().size());
+        assertEquals("in4", delta.getRemoved().get(0).getName());
+
+        assertTrue(StatusDelta.compute(before, snapshot(before)).isEmpty());
+        assertEquals(3, StatusDelta.compute(null, snapshot(before)).getAdded().size());
+    }
+
+    public void testUnchangedResponseIsNotParsed() {
+        final String[] response = {Fixtures.load("list-instances.xml")};
+        final int[] parses = {0};
+        AbstractStatusMonitor monitor = new AbstractStatusMonitor() {
+            protected String queryResponse(Client client) {
+                return response[0];
+            }
+            protected ArrayList<Status> parseResponse(String data) {
+                parses[0]++;
+                return new InstanceListStaxStatusHandler().parseXMLData(data);
+            }
+        };
+        monitor.setClient(Client.create());
+
+        final ArrayList<StatusDelta> deltas = new ArrayList<StatusDelta>();
+        monitor.addObserver(new DeltaObserver() {
+            public void updateDelta(StatusDelta delta) {
+                deltas.add(delta);
+            }
+            public void update(StatusSnapshot snapshot) {
+                fail("DeltaObserver should not receive the full list");
+            }
+            public void setStatusWaitTime(long milliseconds) {
+            }
+        });
+
+        monitor.run();
+        monitor.run();
+        assertEquals(1, parses[0]);
+        assertEquals(2, deltas.size());
+        assertEquals(3, deltas.get(0).getAdded().size());
+        assertTrue(deltas.get(1).isEmpty());
+        assertEquals(2, deltas.get(1).getSnapshot().getSequence());
+        assertSame(monitor.getSnapshot(), deltas.get(1).getSnapshot());
+        try {
+            monitor.getStatusList().remove(0);
+            fail("published status lists are read-only");
+        } catch(UnsupportedOperationException e) {
+        }
+
+        response[0] = response[0].replace("REQUIRES_RESTART", "RUNNING");
+        monitor.run();
+        assertEquals(2, parses[0]);
+        assertEquals(1, deltas.get(2).getStateChanged().size());
+    }
+
+    private static StatusSnapshot snapshot(ArrayList<Status> statusList) {
+        return new StatusSnapshot(statusList, 1, System.currentTimeMillis());
+    }
+
+    private static InstanceStatus instance(String name, String state, String uptime) {
+        return new InstanceStatus(name, StatusState.fromString(state), InstanceStatus.parseUptime(uptime), null);
+    }
+}
@@ -0,0 +1,78 @@
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListJsonStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListStaxStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterStatus;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListJsonStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListStaxStatusHandler;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceStatus;
+
+/**
+ * Checks that every StatusHandler produces the same status list from the
+ * recorded GlassFish responses.  Each XML fixture has a JSON twin recorded
+ * from the same domain.
+ */
+public class StatusHandlerParityTest extends TestCase {
+
+    private static final String[] CLUSTER_FIXTURES = {
+        "list-clusters", "list-clusters-empty", "list-clusters-failure"
+    };
+
+    private static final String[] INSTANCE_FIXTURES = {
+        "list-instances", "list-instances-empty"
+    };
+
+    public void testClusterHandlersAgree() {
+        for(String fixture : CLUSTER_FIXTURES) {
+            String xml = Fixtures.load(fixture + ".xml");
+            String json = Fixtures.load(fixture + ".json");
+            ArrayList<String> expected = Fixtures.statusStrings(new ClusterListStatusHandler().parseXMLData(xml));
+            assertEquals(fixture, expected, Fixtures.statusStrings(new ClusterListStaxStatusHandler().parseXMLData(xml)));
+            assertEquals(fixture, expected, Fixtures.statusStrings(new ClusterListJsonStatusHandler().parseXMLData(json)));
+        }
+    }
+
+    public void testInstanceHandlersAgree() {
+        for(String fixture : INSTANCE_FIXTURES) {
+            String xml = Fixtures.load(fixture + ".xml");
+            String json = Fixtures.load(fixture + ".json");
+            ArrayList<String> expected = Fixtures.statusStrings(new InstanceListStatusHandler().parseXMLData(xml));
+            assertEquals(fixture, expected, Fixtures.statusStrings(new InstanceListStaxStatusHandler().parseXMLData(xml)));
+            assertEquals(fixture, expected, Fixtures.statusStrings(new InstanceListJsonStatusHandler().parseXMLData(json)));
+        }
+    }
+
+    public void testClusterList() {
+        ArrayList<Status> clusters = new ClusterListStaxStatusHandler().parseXMLData(Fixtures.load("list-clusters.xml"));
+        assertEquals(3, clusters.size());
+        ClusterStatus c2 = (ClusterStatus)clusters.get(1);
+        assertEquals("c2", c2.getClusterName());
+        assertEquals(StatusState.NOT_RUNNING, c2.getClusterStatus());
+
+        assertEquals(0, new ClusterListStaxStatusHandler().parseXMLData(Fixtures.load("list-clusters-empty.xml")).size());
+        assertNull(new ClusterListStaxStatusHandler().parseXMLData(Fixtures.load("list-clusters-failure.xml")));
+    }
+
+    public void testInstanceList() {
+        ArrayList<Status> instances = new InstanceListStaxStatusHandler().parseXMLData(Fixtures.load("list-instances.xml"));
+        assertEquals(3, instances.size());
+        InstanceStatus in3 = (InstanceStatus)instances.get(2);
+        assertEquals("in3", in3.getInstanceName());
+        assertEquals(StatusState.REQUIRES_RESTART, in3.getInstanceStatus());
+        assertEquals(86400000L, in3.getInstanceUptime());
+
+        assertEquals(0, new InstanceListStaxStatusHandler().parseXMLData(Fixtures.load("list-instances-empty.xml")).size());
+    }
+
+    public void testMalformedResponse() {
+        assertNull(new ClusterListStaxStatusHandler().parseXMLData("<map><entry key=\"properties\">"));
+        assertNull(new InstanceListStaxStatusHandler().parseXMLData("not xml"));
+        assertNull(new ClusterListJsonStatusHandler().parseXMLData("{\"properties\":{\"c1\""));
+        assertNull(new InstanceListJsonStatusHandler().parseXMLData("<map/>"));
+    }
+}
@@ -0,0 +1,66 @@
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import java.util.ArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterStatus;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceStatus;
+
+/**
+ * Checks the key=value line format and that nothing is built for a level
+ * the logger does not write.
+ */
+public class StatusLogTest extends TestCase {
+    private final Logger logger = Logger.getLogger(StatusLogTest.class.getName());
+    private final ArrayList<LogRecord> records = new ArrayList<LogRecord>();
+    private final Handler handler = new Handler() {
+        public void publish(LogRecord record) {
+            records.add(record);
+        }
+        public void flush() {
+        }
+        public void close() {
+        }
+    };
+
+    protected void setUp() {
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        logger.setLevel(Level.INFO);
+    }
+
+    protected void tearDown() {
+        logger.removeHandler(handler);
+    }
+
+    public void testLineFormat() {
+        InstanceStatus instance = new InstanceStatus("in1", StatusState.RUNNING, 3600125L, "c1");
+        ClusterStatus cluster = new ClusterStatus("c1", "PARTIALLY_RUNNING");
+
+        StatusLog.log(logger, Level.INFO, "Listener: ", instance);
+        StatusLog.log(logger, Level.INFO, "Listener: ", cluster);
+
+        assertEquals(2, records.size());
+        assertEquals("Listener: instance=in1 state=RUNNING uptime=3600125 cluster=c1", records.get(0).getMessage());
+        assertNull(records.get(0).getParameters());
+        assertEquals("Listener: cluster=c1 state=PARTIALLY_RUNNING", records.get(1).getMessage());
+    }
+
+    public void testDisabledLevelBuildsNothing() {
+        final int[] appended = new int[1];
+        Status status = new ClusterStatus("c1", StatusState.RUNNING) {
+            public StringBuilder appendTo(StringBuilder line) {
+                appended[0]++;
+                return super.appendTo(line);
+            }
+        };
+
+        StatusLog.log(logger, Level.FINE, "Listener: ", status);
+
+        assertEquals(0, appended[0]);
+        assertTrue(records.isEmpty());
+    }
+}
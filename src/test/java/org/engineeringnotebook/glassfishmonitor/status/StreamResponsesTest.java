@@ -0,0 +1,116 @@
+package org.engineeringnotebook.glassfishmonitor.status;
+
+import com.sun.jersey.api.client.Client;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.StubGlassFishServer;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
+import org.engineeringnotebook.glassfishmonitor.instance.InstanceListMonitor;
+import org.engineeringnotebook.glassfishmonitor.util.ResponseArchiveWriter;
+
+/**
+ * Monitors that parse the response stream must report what the String path
+ * reports, archive the whole response and still recognise an unchanged one.
+ */
+public class StreamResponsesTest extends TestCase {
+    private static final String CLUSTERS = "/management/domain/clusters/list-clusters";
+    private static final String INSTANCES = "/management/domain/clusters/cluster/c1/list-instances";
+    private StubGlassFishServer server;
+    private final Client client = Client.create();
+
+    protected void setUp() throws Exception {
+        server = new StubGlassFishServer().start();
+    }
+
+    protected void tearDown() {
+        server.stop();
+    }
+
+    public void testStreamedMatchesRead() {
+        for(ParserType parserType : ParserType.values()) {
+            String suffix = parserType == ParserType.JSON ? ".json" : ".xml";
+            server.setResponse(CLUSTERS, Fixtures.load("list-clusters" + suffix));
+            server.setResponse(INSTANCES, Fixtures.load("list-instances" + suffix));
+
+            assertEquals(parserType.toString(), readClusters(parserType, false), readClusters(parserType, true));
+            assertEquals(parserType.toString(), readInstances(parserType, false), readInstances(parserType, true));
+        }
+    }
+
+    public void testStreamedResponseIsArchivedWhole() throws Exception {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "stream-archive-" + System.nanoTime());
+        assertTrue(directory.mkdirs());
+        String response = Fixtures.load("list-clusters.xml");
+        server.setResponse(CLUSTERS, response);
+
+        ResponseArchiveWriter archive = new ResponseArchiveWriter(directory.getPath(), 16, 1.0, 1 << 20, 60000, 1);
+        archive.start();
+        ClusterListMonitor monitor = new ClusterListMonitor(server.getBaseURL());
+        monitor.setClient(client);
+        monitor.setParserType(ParserType.STAX);
+        monitor.setStreamResponses(true);
+        monitor.setResponseArchive(archive);
+        monitor.run();
+        archive.stop();
+
+        //the StAX handler stops reading at the end of the cluster map
+        assertEquals(1, archive.getWrittenCount());
+        assertTrue(readFile(new File(directory, "cluster-status.xml")).contains(response.trim()));
+        new File(directory, "cluster-status.xml").delete();
+        directory.delete();
+    }
+
+    public void testUnchangedStreamedResponseKeepsPreviousList() {
+        server.setResponse(INSTANCES, Fixtures.load("list-instances.xml"));
+        InstanceListMonitor monitor = new InstanceListMonitor("c1", server.getBaseURL());
+        monitor.setClient(client);
+        monitor.setParserType(ParserType.DOM);
+        monitor.setStreamResponses(true);
+
+        monitor.run();
+        List<Status> first = monitor.getStatusList();
+        monitor.run();
+
+        assertEquals(2, monitor.getParseCount());
+        assertEquals(1, monitor.getDigestMatchCount());
+        assertSame(first.get(0), monitor.getStatusList().get(0));
+    }
+
+    private ArrayList<String> readClusters(ParserType parserType, boolean stream) {
+        ClusterListMonitor monitor = new ClusterListMonitor(server.getBaseURL());
+        monitor.setParserType(parserType);
+        return read(monitor, stream);
+    }
+
+    private ArrayList<String> readInstances(ParserType parserType, boolean stream) {
+        InstanceListMonitor monitor = new InstanceListMonitor("c1", server.getBaseURL());
+        monitor.setParserType(parserType);
+        return read(monitor, stream);
+    }
+
+    private ArrayList<String> read(AbstractStatusMonitor monitor, boolean stream) {
+        monitor.setClient(client);
+        monitor.setStreamResponses(stream);
+        ArrayList<Status> statusList = monitor.queryGFStatus();
+        assertNotNull(statusList);
+        return Fixtures.statusStrings(statusList);
+    }
+
+    private static String readFile(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int)file.length()];
+            int n = 0;
+            while(n < bytes.length)
+                n += in.read(bytes, n, bytes.length - n);
+            return new String(bytes, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
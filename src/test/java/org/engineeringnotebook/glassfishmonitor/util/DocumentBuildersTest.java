@@ -0,0 +1,37 @@
+package org.engineeringnotebook.glassfishmonitor.util;
+
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListStatusHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * A pooled DocumentBuilder must survive a failed parse and must not
+ * resolve DTDs or external entities.
+ */
+public class DocumentBuildersTest extends TestCase {
+
+    public void testBuilderIsReusableAfterAFailedParse() throws Exception {
+        String xml = Fixtures.load("list-clusters.xml");
+        assertEquals("map", DocumentBuilders.parse(xml).getDocumentElement().getNodeName());
+        try {
+            DocumentBuilders.parse("<map><entry>");
+            fail("malformed XML parsed");
+        } catch(SAXException expected) {
+        }
+        assertEquals("map", DocumentBuilders.parse(xml).getDocumentElement().getNodeName());
+    }
+
+    public void testDoctypeIsRefused() throws Exception {
+        String xml = "<?xml version=\"1.0\"?><!DOCTYPE map [<!ENTITY x SYSTEM \"file:///etc/passwd\">]><map>&x;</map>";
+        try {
+            DocumentBuilders.parse(xml);
+            fail("DOCTYPE accepted");
+        } catch(SAXException expected) {
+        }
+    }
+
+    public void testHandlerReturnsNullForBadResponse() {
+        assertNull(new ClusterListStatusHandler().parseXMLData(""));
+    }
+}
@@ -0,0 +1,50 @@
+package org.engineeringnotebook.glassfishmonitor.util;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import junit.framework.TestCase;
+import org.engineeringnotebook.glassfishmonitor.Fixtures;
+import org.engineeringnotebook.glassfishmonitor.StubGlassFishServer;
+import org.engineeringnotebook.glassfishmonitor.cluster.ClusterListMonitor;
+
+/**
+ * Checks that the pooled transport reuses connections and bounds requests
+ * with its timeouts.
+ */
+public class HttpTransportTest extends TestCase {
+    private static final String LIST_CLUSTERS = "/management/domain/clusters/list-clusters";
+    private StubGlassFishServer server;
+    private HttpTransport transport;
+
+    protected void setUp() throws Exception {
+        server = new StubGlassFishServer().start();
+        server.setResponse(LIST_CLUSTERS, Fixtures.load("list-clusters.xml"));
+        transport = new HttpTransport(4, 2, 1000, 200, true);
+    }
+
+    protected void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    public void testConnectionsAreReused() {
+        ClusterListMonitor monitor = new ClusterListMonitor(server.getBaseURL());
+        monitor.setClient(transport.getClient());
+        for(int i = 0; i < 5; i++)
+            assertEquals(3, monitor.queryGFStatus().size());
+
+        assertEquals(5, server.getRequestCount());
+        assertEquals(1, transport.getConnectionsInPool(server.getBaseURL()));
+        assertEquals(2, transport.getMaxConnectionsPerRoute());
+    }
+
+    public void testReadTimeout() {
+        server.setDelay(1000);
+        long start = System.currentTimeMillis();
+        try {
+            transport.getClient().resource(server.getBaseURL() + LIST_CLUSTERS).get(String.class);
+            fail("Expected the read to time out");
+        } catch(ClientHandlerException che) {
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+    }
+}
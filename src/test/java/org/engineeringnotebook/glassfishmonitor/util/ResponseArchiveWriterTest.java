@@ -0,0 +1,110 @@
+package org.engineeringnotebook.glassfishmonitor.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the asynchronous response archive.
+ */
+public class ResponseArchiveWriterTest extends TestCase {
+    private File directory;
+
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("archive", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    protected void tearDown() {
+        for(File f : directory.listFiles())
+            f.delete();
+        directory.delete();
+    }
+
+    public void testSamplesAndRotates() throws Exception {
+        ResponseArchiveWriter writer = new ResponseArchiveWriter(directory.getPath(), 100, 0.5, 200, 3600000, 2);
+        writer.start();
+        StringBuilder body = new StringBuilder();
+        for(int i = 0; i < 60; i++)
+            body.append('x');
+        for(int i = 0; i < 20; i++)
+            writer.archive("cluster-status.xml", body.toString());
+        writer.stop();
+
+        assertEquals(10, writer.getWrittenCount());
+        assertTrue(new File(directory, "cluster-status.xml").exists());
+        assertTrue(new File(directory, "cluster-status.xml.1").exists());
+        assertTrue(new File(directory, "cluster-status.xml.2").exists());
+        assertFalse(new File(directory, "cluster-status.xml.3").exists());
+        assertTrue(new File(directory, "cluster-status.xml").length() <= 200);
+    }
+
+    public void testFullQueueDropsInsteadOfBlocking() {
+        ResponseArchiveWriter writer = new ResponseArchiveWriter(directory.getPath(), 1, 1.0, 1 << 20, 3600000, 1);
+        //not started: nothing is accepted, and nothing blocks
+        assertFalse(writer.archive("a.xml", "<map/>"));
+        writer.start();
+        int accepted = 0;
+        for(int i = 0; i < 10000; i++) {
+            if(writer.archive("a.xml", "<map/>"))
+                accepted++;
+        }
+        writer.stop();
+        assertEquals(10000, accepted + writer.getDroppedCount());
+        assertEquals(accepted, writer.getWrittenCount());
+    }
+
+    public void testStreamedEntryIsNotInterleaved() throws Exception {
+        ResponseArchiveWriter writer = new ResponseArchiveWriter(directory.getPath(), 100, 1.0, 1 << 20, 3600000, 1);
+        writer.start();
+        byte[] chunk = new byte[1000];
+        Arrays.fill(chunk, (byte)'x');
+        OutputStream entry = writer.openEntry("a.xml");
+        for(int i = 0; i < 50; i++) {
+            entry.write(chunk);
+            if(i == 10)
+                assertTrue(writer.archive("a.xml", "<map/>"));
+        }
+        entry.close();
+        writer.stop();
+
+        assertEquals(2, writer.getWrittenCount());
+        String archived = read(new File(directory, "a.xml"));
+        int body = archived.indexOf("###\n") + 4;
+        for(int i = body; i < body + 50000; i++)
+            assertEquals('x', archived.charAt(i));
+        assertTrue(archived.substring(body + 50000).startsWith("\n### "));
+        assertTrue(archived.endsWith("<map/>\n"));
+    }
+
+    public void testEntriesAfterStopAreDropped() throws Exception {
+        ResponseArchiveWriter writer = new ResponseArchiveWriter(directory.getPath(), 100, 1.0, 1 << 20, 3600000, 1);
+        writer.start();
+        OutputStream entry = writer.openEntry("a.xml");
+        entry.write(new byte[10000]);
+        writer.stop();
+        entry.write(new byte[10000]);
+        entry.close();
+
+        assertFalse(writer.archive("a.xml", "<map/>"));
+        assertEquals(0, writer.getWrittenCount());
+        assertEquals(1, writer.getDroppedCount());
+        assertTrue(read(new File(directory, "a.xml")).endsWith("### truncated ###\n"));
+    }
+
+    private static String read(File file) throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int)file.length()];
+            int n = 0;
+            while(n < bytes.length)
+                n += in.read(bytes, n, bytes.length - n);
+            return new String(bytes, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}